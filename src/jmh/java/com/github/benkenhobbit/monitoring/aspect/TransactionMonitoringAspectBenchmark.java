@@ -0,0 +1,269 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.aspect;
+
+import com.github.benkenhobbit.monitoring.config.TransactionMonitoringConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the monitoring advice per call, without Spring context nor web stack.
+ * <p>
+ * The benchmarked bean is proxied like in the application: a transaction interceptor (backed by a transaction manager
+ * that does nothing, so that only the propagation logic is measured) and the monitoring aspect. Run with
+ * <i>./gradlew jmh</i>, the GC profiler reports the allocation rate per call (gc.alloc.rate.norm, B/op).
+ *
+ * @author A. Aquila
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionMonitoringAspectBenchmark {
+
+    /**
+     * UNMONITORED: transaction interceptor only, DISABLED: aspect started then switched off at runtime with
+     * {@link TransactionMonitoringSwitch}, as by the /disable endpoint, ENABLED: aspect enabled.
+     */
+    @Param({"UNMONITORED", "DISABLED", "ENABLED"})
+    public String mode;
+
+    private TransactionMonitoringAspect aspect;
+
+    private BenchmarkService service;
+
+    @Setup
+    public void setup() {
+        BenchmarkService target = new BenchmarkService();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TransactionInterceptor(new NoOpTransactionManager(), new AnnotationTransactionAttributeSource()));
+        if (!"UNMONITORED".equals(mode)) {
+            TransactionMonitoringConfiguration configuration = newConfiguration(true);
+            aspect = new TransactionMonitoringAspect(configuration);
+            aspect.start();
+            proxyFactory.addAspect(aspect);
+            if ("DISABLED".equals(mode)) {
+                new TransactionMonitoringSwitch(configuration).disable();
+            }
+        }
+        service = proxyFactory.getProxy();
+        target.self = service;
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (aspect != null) {
+            aspect.stop();
+        }
+    }
+
+    @Benchmark
+    public long required() {
+        return service.required(1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long requiredContended8() {
+        return service.required(1);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long requiredContended64() {
+        return service.required(1);
+    }
+
+    /**
+     * REQUIRED -> REQUIRES_NEW -> REQUIRED, as in MonitorService: three advised calls and two transactions.
+     */
+    @Benchmark
+    public long nested() {
+        return service.nested(1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long nestedContended8() {
+        return service.nested(1);
+    }
+
+    @Benchmark
+    public Object error() {
+        try {
+            return service.failing(1);
+        } catch (BenchmarkFailure e) {
+            return e;
+        }
+    }
+
+    /**
+     * The defaults of the Spring properties, which are not resolved here: they are read from the <i>@Value</i>
+     * placeholders, so that the benchmark measures the configuration of an application which only enables the
+     * monitoring, including the features added since with their default state.
+     */
+    static TransactionMonitoringConfiguration newConfiguration(boolean enabled) {
+        TransactionMonitoringConfiguration configuration = new TransactionMonitoringConfiguration();
+        try {
+            for (Field field : TransactionMonitoringConfiguration.class.getDeclaredFields()) {
+                Value value = field.getAnnotation(Value.class);
+                if (value == null) {
+                    continue;
+                }
+                // ${property:default}
+                String placeholder = value.value();
+                String defaultValue = placeholder.substring(placeholder.indexOf(':') + 1, placeholder.length() - 1);
+                field.setAccessible(true);
+                field.set(configuration, parse(defaultValue, field.getType()));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        configuration.setEnabled(enabled);
+        return configuration;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object parse(String value, Class<?> type) {
+        if (type == boolean.class) {
+            return Boolean.parseBoolean(value);
+        } else if (type == int.class) {
+            return Integer.parseInt(value);
+        } else if (type == long.class) {
+            return Long.parseLong(value);
+        } else if (type == double.class) {
+            return Double.parseDouble(value);
+        } else if (type.isEnum()) {
+            return Enum.valueOf((Class) type, value);
+        }
+        return value;
+    }
+
+    public static class BenchmarkService {
+
+        /**
+         * Stack-less exception, so that the error path measures the monitoring and not the stack walk.
+         */
+        private static final RuntimeException FAILURE = new BenchmarkFailure();
+
+        /**
+         * Proxy of this bean, for the nested calls.
+         */
+        BenchmarkService self;
+
+        @Transactional
+        public long required(long value) {
+            return value + 1;
+        }
+
+        @Transactional(propagation = Propagation.REQUIRES_NEW)
+        public long requiresNew(long value) {
+            return self.required(value) + 1;
+        }
+
+        @Transactional
+        public long nested(long value) {
+            return self.requiresNew(value) + 1;
+        }
+
+        @Transactional
+        public long failing(long value) {
+            throw FAILURE;
+        }
+    }
+
+    private static class BenchmarkFailure extends RuntimeException {
+
+        BenchmarkFailure() {
+            super("benchmark failure", null, false, false);
+        }
+    }
+
+    /**
+     * Transaction manager without resources: it only drives the propagation and the synchronization.
+     */
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return TransactionSynchronizationManager.isActualTransactionActive();
+        }
+
+        @Override
+        protected boolean isExistingTransaction(Object transaction) {
+            return (Boolean) transaction;
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected Object doSuspend(Object transaction) {
+            return null;
+        }
+
+        @Override
+        protected void doResume(Object transaction, Object suspendedResources) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
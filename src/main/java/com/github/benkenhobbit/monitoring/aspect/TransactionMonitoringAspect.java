@@ -27,22 +27,61 @@
 package com.github.benkenhobbit.monitoring.aspect;
 
 import com.github.benkenhobbit.monitoring.config.TransactionMonitoringConfiguration;
+import com.github.benkenhobbit.monitoring.correlation.TimeOrderedTransactionIdGenerator;
+import com.github.benkenhobbit.monitoring.correlation.TransactionContext;
+import com.github.benkenhobbit.monitoring.correlation.TransactionIdGenerator;
+import com.github.benkenhobbit.monitoring.correlation.TransactionIdStrategy;
+import com.github.benkenhobbit.monitoring.correlation.UuidTransactionIdGenerator;
+import com.github.benkenhobbit.monitoring.journal.JournalReplayer;
+import com.github.benkenhobbit.monitoring.journal.SpanJournal;
+import com.github.benkenhobbit.monitoring.model.InFlightSpan;
+import com.github.benkenhobbit.monitoring.model.InFlightTransactions;
+import com.github.benkenhobbit.monitoring.model.LatencyPercentiles;
+import com.github.benkenhobbit.monitoring.model.MethodStats;
+import com.github.benkenhobbit.monitoring.model.PipelineStats;
+import com.github.benkenhobbit.monitoring.model.RollingStats;
+import com.github.benkenhobbit.monitoring.model.SpanNode;
+import com.github.benkenhobbit.monitoring.model.StackProfile;
 import com.github.benkenhobbit.monitoring.model.TransactionEvent;
+import com.github.benkenhobbit.monitoring.model.TransactionSpan;
 import com.github.benkenhobbit.monitoring.model.TransactionThreadStats;
+import com.github.benkenhobbit.monitoring.pipeline.EventPipeline;
+import com.github.benkenhobbit.monitoring.registry.MethodDescriptor;
+import com.github.benkenhobbit.monitoring.registry.MethodRegistry;
+import com.github.benkenhobbit.monitoring.registry.MonitoredThread;
+import com.github.benkenhobbit.monitoring.registry.ThreadRegistry;
+import com.github.benkenhobbit.monitoring.sampling.RateSampler;
+import com.github.benkenhobbit.monitoring.sampling.Sampler;
+import com.github.benkenhobbit.monitoring.sampling.SamplingStrategy;
+import com.github.benkenhobbit.monitoring.sampling.TokenBucketSampler;
+import com.github.benkenhobbit.monitoring.store.IndexedSpanStore;
+import com.github.benkenhobbit.monitoring.store.OffHeapSpanStore;
+import com.github.benkenhobbit.monitoring.store.SpanStore;
+import com.github.benkenhobbit.monitoring.store.StoreType;
+import com.github.benkenhobbit.monitoring.watchdog.SlowTransactionWatchdog;
 import com.sun.management.ThreadMXBean;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
-import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
 import java.lang.management.ClassLoadingMXBean;
 import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 /**
  * Transaction monitoring aspect.
@@ -51,6 +90,7 @@ import java.util.stream.Collectors;
  */
 @Aspect
 @Component
+@Slf4j
 public class TransactionMonitoringAspect {
 
     /**
@@ -60,17 +100,94 @@ public class TransactionMonitoringAspect {
         START, COMPLETE, ERROR
     }
 
-    private static final String TRANSACTION_ID_RESOURCE_KEY = "TRANSACTION_CORRELATION_ID";
+    private static final ClassLoadingMXBean CLASS_LOADING_BEAN = ManagementFactory.getClassLoadingMXBean();
+
+    private static final java.lang.management.ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    /**
+     * com.sun.management extension, null if the JVM does not provide it.
+     */
+    private static final ThreadMXBean EXTENDED_THREAD_BEAN =
+            THREAD_BEAN instanceof ThreadMXBean extendedThreadBean ? extendedThreadBean : null;
+
+    private static final boolean CPU_TIME_SUPPORTED = THREAD_BEAN.isCurrentThreadCpuTimeSupported();
+
+    private static final boolean ALLOCATED_BYTES_SUPPORTED =
+            EXTENDED_THREAD_BEAN != null && EXTENDED_THREAD_BEAN.isThreadAllocatedMemorySupported();
+
+    /**
+     * Statistics key under which the statistics of terminated threads are merged.
+     */
+    public static final String TERMINATED_THREADS_KEY = "terminated threads;-";
+
+    /**
+     * Number of spans replayed from the journal between two prunings of the event log.
+     */
+    private static final int REPLAY_PRUNE_INTERVAL = 65_536;
+
+    /**
+     * Windows of the rolling statistics in minutes, the longest last.
+     */
+    private static final int[] ROLLING_WINDOWS = {1, 5, 15};
+
+    /**
+     * Structure for storing transactions in chronological order (one span per invocation, in completion order),
+     * with its lookups by time, transaction, method and thread. Filled, pruned and cleared by the consumer only.
+     */
+    private final SpanStore transactionEventLog;
+
+    /**
+     * Sequence of the last stored span: assigned in storage order by the single writer of the event log, it is the
+     * cursor of the incremental reads (see {@link #getEventsSince(long, int)}). It is not reset with the statistics.
+     */
+    private volatile long lastSequence;
+
+    /**
+     * Has the retention limits of the event log enforced in background, by the pipeline consumer (see
+     * {@link #pruneEventLog()}).
+     */
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * Persists the captured spans, when enabled: written by the pipeline consumer as an exporter.
+     */
+    private SpanJournal spanJournal;
+
+    /**
+     * Samples the stacks of the slow running invocations, when enabled.
+     */
+    private SlowTransactionWatchdog watchdog;
+
+    /**
+     * Hands the completed spans over to a background consumer, which stores and prunes them in batches.
+     */
+    private final EventPipeline<TransactionSpan> eventPipeline;
+
+    /**
+     * Decides which root transactions have their spans captured.
+     */
+    private final Sampler sampler;
+
+    /**
+     * Generates the correlation ID of the root transactions.
+     */
+    private final TransactionIdGenerator transactionIdGenerator;
 
     /**
-     * Structure for storing transactions in chronological order.
+     * Map structure: ThreadId -> (Method -> Stats).
+     * Only filled when per-thread statistics are enabled, global statistics by method live in {@link MethodDescriptor}.
      */
-    private final List<TransactionEvent> transactionEventLog = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, Map<MethodDescriptor, TransactionThreadStats>> threadTransactionStats = new ConcurrentHashMap<>();
 
     /**
-     * Map structure: ThreadId -> (MethodName -> Stats).
+     * Caches the shrunk name and the id of each monitored method.
      */
-    private final Map<String, Map<String, TransactionThreadStats>> threadTransactionStats = new ConcurrentHashMap<>();
+    private final MethodRegistry methodRegistry = new MethodRegistry();
+
+    /**
+     * Resolves the identity (and the statistics key) of the calling thread.
+     */
+    private final ThreadRegistry threadRegistry;
 
     /**
      * Manages transaction monitor settings.
@@ -84,6 +201,135 @@ public class TransactionMonitoringAspect {
      */
     public TransactionMonitoringAspect(TransactionMonitoringConfiguration transactionMonitoringConfiguration) {
         this.transactionMonitoringConfiguration = transactionMonitoringConfiguration;
+        this.threadRegistry = new ThreadRegistry(this::retireThreadStats,
+                transactionMonitoringConfiguration.getVirtualThreadGrouping());
+        this.transactionEventLog = createSpanStore(transactionMonitoringConfiguration);
+        this.sampler = createSampler(transactionMonitoringConfiguration);
+        this.transactionIdGenerator = createTransactionIdGenerator(transactionMonitoringConfiguration);
+        this.eventPipeline = new EventPipeline<>("transaction-monitoring-pipeline",
+                transactionMonitoringConfiguration.getPipelineQueueCapacity(),
+                transactionMonitoringConfiguration.getPipelineBatchSize(),
+                transactionMonitoringConfiguration.getPipelineOverflowPolicy(),
+                this::consumeBatch);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (transactionMonitoringConfiguration.isJournalEnabled()) {
+            openJournal();
+        }
+        eventPipeline.start();
+        long sweepInterval = Math.max(1, transactionMonitoringConfiguration.getLogSweepInterval());
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transaction-monitoring-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::pruneEventLog, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+        if (transactionMonitoringConfiguration.isWatchdogEnabled()) {
+            watchdog = new SlowTransactionWatchdog(threadRegistry,
+                    id -> {
+                        MethodDescriptor method = methodRegistry.get(id);
+                        return method != null ? method.getName() : null;
+                    },
+                    transactionMonitoringConfiguration.getWatchdogThreshold(),
+                    SlowTransactionWatchdog.parseThresholds(transactionMonitoringConfiguration.getWatchdogMethodThresholds()),
+                    transactionMonitoringConfiguration.getWatchdogInterval(),
+                    transactionMonitoringConfiguration.getWatchdogStackDepth());
+            watchdog.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        if (watchdog != null) {
+            watchdog.close();
+        }
+        if (!eventPipeline.stop()) {
+            // The journal ignores the batches appended after it is closed
+            log.warn("Transaction monitoring pipeline still running after 5 s, closing the journal anyway");
+        }
+        if (spanJournal != null) {
+            spanJournal.close();
+        }
+    }
+
+    /**
+     * Replay the journal into the event log and the statistics by method, then append the new spans to it.
+     * Runs before the pipeline consumer is started, so the event log still has a single writer (this thread, which
+     * also runs the pruning).
+     * Statistics are rebuilt from the captured spans only: they are exact when every transaction is sampled.
+     */
+    private void openJournal() {
+        Path directory = Paths.get(transactionMonitoringConfiguration.getJournalDirectory());
+        try {
+            JournalReplayer replayer = new JournalReplayer(directory, methodRegistry,
+                    Thread.currentThread().getContextClassLoader());
+            long[] pending = new long[1];
+            long replayed = replayer.replay(span -> {
+                replaySpan(span);
+                // Keep the memory bounded while replaying large journals
+                if (++pending[0] % REPLAY_PRUNE_INTERVAL == 0) {
+                    pruneEventLog();
+                }
+            });
+            pruneEventLog();
+            log.info("Replayed {} spans from the transaction journal in {} ({} skipped)",
+                    replayed, directory.toAbsolutePath(), replayer.getSkippedSpans());
+
+            spanJournal = new SpanJournal(directory,
+                    (int) Math.min(Integer.MAX_VALUE, transactionMonitoringConfiguration.getJournalSegmentSize() * 1024L * 1024L),
+                    TimeUnit.MINUTES.toMillis(transactionMonitoringConfiguration.getJournalSegmentDuration()),
+                    transactionMonitoringConfiguration.getJournalMaxSegments(),
+                    transactionMonitoringConfiguration.getJournalForceInterval(),
+                    methodRegistry);
+            spanJournal.open();
+            eventPipeline.addExporter(spanJournal::append);
+        } catch (IOException e) {
+            log.warn("Transaction journal disabled: {} is not usable", directory.toAbsolutePath(), e);
+            spanJournal = null;
+        }
+    }
+
+    private void replaySpan(TransactionSpan span) {
+        span.setSequence(++lastSequence);
+        methodRegistry.get(span.getMethodId()).getStats().record(span.getEndNanos() - span.getStartNanos(),
+                span.getCpuTimeNanos(), span.getUserTimeNanos(), span.getAllocatedBytes(), span.getException() != null);
+        transactionEventLog.add(span);
+    }
+
+    private SpanStore createSpanStore(TransactionMonitoringConfiguration configuration) {
+        StoreType storeType = configuration.getStoreType() != null ? configuration.getStoreType() : StoreType.HEAP;
+        return switch (storeType) {
+            case HEAP -> new IndexedSpanStore(TimeUnit.SECONDS.toMillis(configuration.getLogSegmentDuration()));
+            case OFF_HEAP -> new OffHeapSpanStore(configuration.getMaxEventLogSize(), configuration.getOffHeapChunkSize(),
+                    id -> {
+                        MethodDescriptor method = methodRegistry.get(id);
+                        return method != null ? method.getName() : null;
+                    });
+        };
+    }
+
+    private static Sampler createSampler(TransactionMonitoringConfiguration configuration) {
+        SamplingStrategy strategy = configuration.getSamplingStrategy() != null
+                ? configuration.getSamplingStrategy() : SamplingStrategy.ALWAYS;
+        return switch (strategy) {
+            case ALWAYS -> method -> true;
+            case RATE -> new RateSampler(configuration.getSamplingRate());
+            case TOKEN_BUCKET -> new TokenBucketSampler(configuration.getSamplingPermitsPerSecond());
+        };
+    }
+
+    private static TransactionIdGenerator createTransactionIdGenerator(TransactionMonitoringConfiguration configuration) {
+        TransactionIdStrategy strategy = configuration.getIdStrategy() != null
+                ? configuration.getIdStrategy() : TransactionIdStrategy.TIME_ORDERED;
+        return switch (strategy) {
+            case TIME_ORDERED -> new TimeOrderedTransactionIdGenerator(configuration.getIdNodeId());
+            case UUID -> new UuidTransactionIdGenerator();
+        };
     }
 
     /**
@@ -96,39 +342,25 @@ public class TransactionMonitoringAspect {
     @Around("@annotation(org.springframework.transaction.annotation.Transactional)")
     public Object monitorTransactionalMethod(ProceedingJoinPoint joinPoint) throws Throwable {
 
+        // Switched at runtime (see TransactionMonitoringSwitch): a disabled call only pays this volatile read
         if (!transactionMonitoringConfiguration.isEnabled()) {
             return joinPoint.proceed();
         }
 
-        long threadId = Thread.currentThread().getId();
-        String threadName = Thread.currentThread().getName();
-        Signature signature = joinPoint.getSignature();
-
-        // Generate a unique ID only if one does not already exist for this transaction
-        if (!TransactionSynchronizationManager.hasResource(TRANSACTION_ID_RESOURCE_KEY)) {
-            String transactionId = generateTransactionId();
-            TransactionSynchronizationManager.bindResource(TRANSACTION_ID_RESOURCE_KEY, transactionId);
-        }
-
-        String currentTransactionId = (String) TransactionSynchronizationManager.getResource(TRANSACTION_ID_RESOURCE_KEY);
-        String methodName = getMethodName(signature);
+        MonitoredThread monitoredThread = threadRegistry.current();
+        long threadId = monitoredThread.getId();
+        String threadName = monitoredThread.getName();
+        MethodDescriptor method = methodRegistry.get(((MethodSignature) joinPoint.getSignature()).getMethod());
 
-        // Increment the counter for this thread and method
-        String threadKey = getThreadName(threadId) + ";" + threadId;
-        threadTransactionStats
-                .computeIfAbsent(threadKey, k -> new ConcurrentHashMap<>())
-                .computeIfAbsent(methodName, k -> new TransactionThreadStats())
-                .getCounter()
-                .incrementAndGet();
-
-        // Event start and creation timestamp
+        // Span start timestamp, also the time component of the transaction ID.
         long startTime = System.currentTimeMillis();
-        TransactionEvent event = new TransactionEvent();
-        event.setCurrentTransactionId(currentTransactionId);
-        event.setThreadId(threadId);
-        event.setThreadName(threadName);
-        event.setMethodName(methodName);
-        event.setStartTime(startTime);
+
+        // Generate a unique ID only for the outermost monitored invocation of the thread, nested ones inherit it.
+        // The sampling decision is taken once, together with the ID, so that nested spans stay coherent.
+        TransactionContext context = monitoredThread.getContext();
+        TransactionContext.Frame frame = context.isEmpty()
+                ? context.pushRoot(transactionIdGenerator.nextId(startTime), sampler.sample(method), startTime)
+                : context.pushNested(startTime);
 
 //        // Capture also stack trace if enabled (it gives us unnecessary secondary information).
 //        if (transactionMonitoringConfiguration.isStackTraceEnabled()) {
@@ -136,126 +368,146 @@ public class TransactionMonitoringAspect {
 //            // Skip first elements which concern this aspect and the AOP mechanism
 //            int startIndex = 3;
 //            int endIndex = Math.min(fullStack.length, startIndex + transactionMonitoringConfiguration.getStackTraceDepth());
-//            event.setStackTrace(Arrays.copyOfRange(fullStack, startIndex, endIndex));
+//            span.setStackTrace(Arrays.copyOfRange(fullStack, startIndex, endIndex));
 //        }
 
+        Exception error = null;
         try {
-            // Add event to log before execution
-            event.setEventType(TransactionEventType.START);
-            transactionEventLog.add(event);
+            // Snapshot the thread counters at START: the span records what the invocation cost, not the thread totals.
+            // The span itself is only built at the end, if it is captured. The counters of a virtual thread are not
+            // available (they would be those of its carrier at best), they stay negative.
+            if (!monitoredThread.isVirtual()) {
+                frame.setStartCounters(currentThreadCpuTime(), currentThreadUserTime(), currentThreadAllocatedBytes());
+            }
+            frame.setStartNanos(System.nanoTime());
+            frame.setMethodId(method.getId());
+            // Visible to the watchdog and to the in-flight snapshot from now on
+            threadRegistry.publishRunning(monitoredThread, frame);
 
             return joinPoint.proceed();
         } catch (Exception e) {
-            // Error event
-            TransactionEvent errorEvent = new TransactionEvent();
-            errorEvent.setCurrentTransactionId(currentTransactionId);
-            errorEvent.setThreadId(threadId);
-            errorEvent.setThreadName(threadName);
-            errorEvent.setMethodName(methodName);
-            errorEvent.setStartTime(System.currentTimeMillis());
-            errorEvent.setEventType(TransactionEventType.ERROR);
-            errorEvent.setException(e);
-            transactionEventLog.add(errorEvent);
+            // Error outcome
+            error = e;
             throw e;
         } finally {
             long endTime = System.currentTimeMillis();
+            long endNanos = System.nanoTime();
+            long startNanos = frame.getStartNanos();
             long executionTime = endTime - startTime;
+            long executionNanos = endNanos - startNanos;
+
+            // Resource deltas, read with the zero-allocation current thread variants. A virtual thread only gets a
+            // clock-based estimate of its CPU time: the execution time, an upper bound since it may have been unmounted.
+            long cpuTime;
+            long userTime;
+            long allocatedBytes;
+            if (monitoredThread.isVirtual()) {
+                cpuTime = executionNanos;
+                userTime = 0;
+                allocatedBytes = 0;
+            } else {
+                cpuTime = delta(frame.getStartCpuTime(), currentThreadCpuTime());
+                userTime = delta(frame.getStartUserTime(), currentThreadUserTime());
+                allocatedBytes = delta(frame.getStartAllocatedBytes(), currentThreadAllocatedBytes());
+            }
 
-            // Update time statistics
-            threadTransactionStats
-                    .computeIfAbsent(threadKey, k -> new ConcurrentHashMap<>())
-                    .computeIfAbsent(methodName, k -> new TransactionThreadStats())
-                    .getTimes()
-                    .addAndGet(executionTime);
-
-            // Completion event
-            TransactionEvent completeEvent = new TransactionEvent();
-
-            // Add JVM info
-            ClassLoadingMXBean classLoadingBean = ManagementFactory.getClassLoadingMXBean();
-            java.lang.management.ThreadMXBean standardThreadBean = ManagementFactory.getThreadMXBean();
-            ThreadMXBean extendedThreadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
-            if (standardThreadBean.isThreadCpuTimeSupported()) {
-                long cpuTime = standardThreadBean.getThreadCpuTime(threadId);
-                long userTime = standardThreadBean.getThreadUserTime(threadId);
-                completeEvent.setCpuTime(((float) cpuTime / 1_000_000));
-                completeEvent.setUserTime(((float) userTime / 1_000_000));
+            // Exclusive time: the callees report their execution time to their caller frame
+            long selfTimeNanos = Math.max(0, executionNanos - frame.getChildNanos());
+            TransactionContext.Frame parentFrame = context.peekParent();
+            if (parentFrame != null) {
+                parentFrame.addChildNanos(executionNanos);
             }
 
-            // CPU Usage per Thread (com.sun.management extension)
-            try {
-                long[] threadAllocatedBytes = extendedThreadBean.getThreadAllocatedBytes(new long[]{ threadId });
-                if (threadAllocatedBytes != null && threadAllocatedBytes.length > 0) {
-                    completeEvent.setAllocatedMemory(formatBytes(threadAllocatedBytes[0]));
-                }
-            } catch (Exception e) {
+            // Update the global statistics of the method through its cached handle (never sampled)
+            method.getStats().record(executionNanos, cpuTime, userTime, allocatedBytes, error != null);
+            if (transactionMonitoringConfiguration.isRollingStatsEnabled()) {
+                method.getRollingStats().record(endNanos, executionNanos, error != null);
             }
 
-            completeEvent.setCurrentTransactionId(currentTransactionId);
-            completeEvent.setThreadId(threadId);
-            completeEvent.setThreadName(threadName);
-            completeEvent.setMethodName(methodName);
-            completeEvent.setStartTime(endTime);
-            completeEvent.setEventType(TransactionEventType.COMPLETE);
-            completeEvent.setExecutionTime(executionTime);
-            completeEvent.setTotalLoadedClassCount(classLoadingBean.getTotalLoadedClassCount());
-            transactionEventLog.add(completeEvent);
-
-            if (!isNestedTransaction()) {
-                // Register a listener for transaction completion (old version)
-                //registerTransactionCompletionCallback(currentTransactionId);
-
-                // Remove transaction ID at the end
-                // For the monitoring operation it is sufficient to do it directly here
-                TransactionSynchronizationManager.unbindResourceIfPossible(TRANSACTION_ID_RESOURCE_KEY);
+            // Per-thread breakdown (opt-in): a single lookup per invocation. The entries of the virtual thread groups
+            // are shared, so they are read before computeIfAbsent, which may lock a bin and pin the carrier.
+            if (transactionMonitoringConfiguration.isPerThreadStatsEnabled()) {
+                String threadKey = monitoredThread.getKey();
+                Map<MethodDescriptor, TransactionThreadStats> mapStats = threadTransactionStats.get(threadKey);
+                if (mapStats == null) {
+                    mapStats = threadTransactionStats.computeIfAbsent(threadKey, k -> new ConcurrentHashMap<>());
+                }
+                TransactionThreadStats stats = mapStats.get(method);
+                if (stats == null) {
+                    stats = mapStats.computeIfAbsent(method, k -> new TransactionThreadStats());
+                }
+                stats.getCounter().incrementAndGet();
+                stats.getTimes().addAndGet(executionTime);
+                stats.getCpuTime().addAndGet(cpuTime);
+                stats.getUserTime().addAndGet(userTime);
+                stats.getAllocatedBytes().addAndGet(allocatedBytes);
+                stats.getLatency().record(executionNanos);
             }
 
-            if (transactionMonitoringConfiguration.isLogPruningEnabled()) {
-                pruneEventLog();
+            // Stack samples taken by the watchdog if the invocation was slow
+            StackProfile profile = monitoredThread.takeProfile(frame.getInvocation());
+
+            // Errors and slow calls are captured even when the transaction is not sampled.
+            // The span is only published here: storage and pruning happen on the pipeline consumer thread.
+            if (frame.isSampled() || isSampledError(error) || isSampledSlowCall(executionNanos) || profile != null) {
+                TransactionSpan span = newSpan(frame, threadId, threadName, method);
+                span.setException(error);
+                span.setProfile(profile);
+                span.setSelfTimeNanos(selfTimeNanos);
+                span.setCpuTimeNanos(cpuTime);
+                span.setUserTimeNanos(userTime);
+                span.setAllocatedBytes(allocatedBytes);
+                span.setEndTime(endTime);
+                span.setEndNanos(endNanos);
+                span.setExecutionTime(executionTime);
+                eventPipeline.publish(span);
             }
+
+            // The transaction ID goes away with the root frame
+            context.pop();
+            threadRegistry.publishRunning(monitoredThread, context.peek());
         }
     }
 
     /**
-     * Shrinks the package name (this makes logs more readable).
+     * Pipeline sink (consumer thread): enrich and store a batch of completed spans.
      *
-     * @param signature of the method.
-     * @return shrunk signature of the method.
-     */
-    private String getMethodName(Signature signature) {
-        String declaringTypeName = signature.getDeclaringTypeName();
-        StringBuilder sb = new StringBuilder();
-        if (declaringTypeName.contains(".")) {
-            String[] tokens = declaringTypeName.split("\\.");
-            for (int i = 0; i < tokens.length; i++) {
-                if (i < tokens.length - 1) {
-                    sb.append(tokens[i].charAt(0));
-                    sb.append(".");
-                } else {
-                    sb.append(tokens[i]);
-                }
-            }
+     * @param spans spans in publication order.
+     */
+    private void consumeBatch(List<TransactionSpan> spans) {
+        long totalLoadedClassCount = CLASS_LOADING_BEAN.getTotalLoadedClassCount();
+        for (TransactionSpan span : spans) {
+            span.setTotalLoadedClassCount(totalLoadedClassCount);
+            span.complete();
+            span.setSequence(lastSequence + 1);
+            transactionEventLog.add(span);
+            lastSequence = span.getSequence();
         }
-        return sb + "." + signature.getName();
     }
 
-    /**
-     * Create a random id.
-     *
-     * @return a randomly generated <i>UUID</i> as <i>String</i>.
-     */
-    private String generateTransactionId() {
-        return UUID.randomUUID().toString();
+    private static TransactionSpan newSpan(TransactionContext.Frame frame, long threadId, String threadName,
+                                           MethodDescriptor method) {
+        TransactionSpan span = new TransactionSpan();
+        span.setTransactionId(frame.getTransactionId());
+        span.setSpanId(frame.getSpanId());
+        span.setParentSpanId(frame.getParentSpanId());
+        span.setDepth(frame.getDepth());
+        span.setThreadId(threadId);
+        span.setThreadName(threadName);
+        span.setMethodName(method.getName());
+        span.setMethodId(method.getId());
+        span.setStartTime(frame.getStartTime());
+        span.setStartNanos(frame.getStartNanos());
+        return span;
     }
 
-    /**
-     * Implement logic to determine if it is a nested transaction.
-     *
-     * @return true if the transaction is nested, false otherwise.
-     */
-    private boolean isNestedTransaction() {
-        return TransactionSynchronizationManager.isActualTransactionActive() &&
-                TransactionSynchronizationManager.getCurrentTransactionName() != null;
+    private boolean isSampledError(Exception error) {
+        return error != null && transactionMonitoringConfiguration.isAlwaysSampleErrors();
+    }
+
+    private boolean isSampledSlowCall(long executionNanos) {
+        long slowThreshold = transactionMonitoringConfiguration.getSamplingSlowThreshold();
+        return slowThreshold > 0 && executionNanos >= TimeUnit.MILLISECONDS.toNanos(slowThreshold);
     }
 
     /**
@@ -288,49 +540,66 @@ public class TransactionMonitoringAspect {
 //    }
 
     /**
-     * Get thread name from ID.
+     * Merge the statistics of a terminated thread into the {@link #TERMINATED_THREADS_KEY} entry,
+     * so that method totals are preserved while the map does not grow with every pooled thread ever seen.
      *
-     * @param threadId key to get thread name from all stack traces.
-     * @return thread name.
+     * @param monitoredThread terminated thread.
      */
-    private String getThreadName(long threadId) {
-        for (Thread thread : Thread.getAllStackTraces().keySet()) {
-            if (thread.getId() == threadId) {
-                return thread.getName();
-            }
+    private void retireThreadStats(MonitoredThread monitoredThread) {
+        Map<MethodDescriptor, TransactionThreadStats> mapStats = threadTransactionStats.remove(monitoredThread.getKey());
+        if (mapStats == null) {
+            return;
         }
-        return "Unknown";
+        Map<MethodDescriptor, TransactionThreadStats> retiredStats =
+                threadTransactionStats.computeIfAbsent(TERMINATED_THREADS_KEY, k -> new ConcurrentHashMap<>());
+        mapStats.forEach((method, stats) -> {
+            TransactionThreadStats retired = retiredStats.computeIfAbsent(method, k -> new TransactionThreadStats());
+            retired.getCounter().addAndGet(stats.getCounter().get());
+            retired.getTimes().addAndGet(stats.getTimes().get());
+            retired.getCpuTime().addAndGet(stats.getCpuTime().get());
+            retired.getUserTime().addAndGet(stats.getUserTime().get());
+            retired.getAllocatedBytes().addAndGet(stats.getAllocatedBytes().get());
+            retired.getLatency().add(stats.getLatency());
+        });
+    }
+
+    private static long currentThreadCpuTime() {
+        return CPU_TIME_SUPPORTED ? THREAD_BEAN.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long currentThreadUserTime() {
+        return CPU_TIME_SUPPORTED ? THREAD_BEAN.getCurrentThreadUserTime() : -1;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        return ALLOCATED_BYTES_SUPPORTED ? EXTENDED_THREAD_BEAN.getCurrentThreadAllocatedBytes() : -1;
     }
 
     /**
-     * Format bytes with unit of measurement.
+     * Difference between two counter readings.
      *
-     * @param bytes to be measured.
-     * @return bytes with the unit of measure.
+     * @param start counter at START (negative if not available).
+     * @param end counter at COMPLETE (negative if not available).
+     * @return the consumed amount, 0 if the counter is not available.
      */
-    private static String formatBytes(long bytes) {
-        if (bytes < 1024) return bytes + " B";
-        int exp = (int) (Math.log(bytes) / Math.log(1024));
-        String pre = "KMGTPE".charAt(exp-1) + "";
-        return String.format("%.2f %sB", bytes / Math.pow(1024, exp), pre);
+    private static long delta(long start, long end) {
+        return start >= 0 && end >= start ? end - start : 0;
     }
 
     /**
-     * Keep only the last <i>transactionMonitoringConfiguration.getMaxEventLogSize()</i> events or
-     * events from the last <i>transactionMonitoringConfiguration.getMaxEventLogTime()</i> hours.
+     * Keep only the last <i>transactionMonitoringConfiguration.getMaxEventLogSize()</i> spans and, if pruning is
+     * enabled, the segments of the last <i>transactionMonitoringConfiguration.getMaxEventLogTime()</i> hours.
+     * It is run periodically by the background sweeper, never by the monitored threads: the pruning itself is handed to
+     * the pipeline consumer, the single writer of the event log.
      */
     public void pruneEventLog() {
-        synchronized(transactionEventLog) {
-            long timeExceed = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(transactionMonitoringConfiguration.getMaxEventLogTime());
-
-            int size = transactionMonitoringConfiguration.getMaxEventLogSize();
-            if (transactionEventLog.size() > size) {
-                int limit = transactionEventLog.size() - size;
-                transactionEventLog.subList(0, limit).clear();
-            } else {
-                transactionEventLog.removeIf(event -> event.getStartTime() < timeExceed);
+        eventPipeline.execute(() -> {
+            if (transactionMonitoringConfiguration.isLogPruningEnabled()) {
+                long timeExceed = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(transactionMonitoringConfiguration.getMaxEventLogTime());
+                transactionEventLog.expireBefore(timeExceed);
             }
-        }
+            transactionEventLog.trimTo(transactionMonitoringConfiguration.getMaxEventLogSize());
+        });
     }
 
     /**
@@ -339,23 +608,47 @@ public class TransactionMonitoringAspect {
      * @return all events without filters.
      */
     public List<TransactionEvent> getAllEvents() {
-        synchronized(transactionEventLog) {
-            return new ArrayList<>(transactionEventLog);
-        }
+        return TransactionSpan.toTimeline(transactionEventLog.snapshot());
     }
 
     /**
-     * Get at most counter events.
+     * Get at most counter events, those of the oldest stored spans: no more spans than events are read.
      *
      * @param counter maximum number of events to retrieve.
      * @return counter events.
      */
     public List<TransactionEvent> getEvents(int counter) {
-        synchronized(transactionEventLog) {
-            return transactionEventLog.stream()
-                    .limit(counter)
-                    .collect(Collectors.toList());
-        }
+        List<TransactionEvent> events = TransactionSpan.toTimeline(transactionEventLog.snapshotAfter(0, Math.max(0, counter)));
+        return events.size() > counter ? new ArrayList<>(events.subList(0, counter)) : events;
+    }
+
+    /**
+     * Get the events of the spans stored after a sequence: reading again from the highest sequence returned
+     * gives the events captured since then. Spans already pruned from the event log are skipped.
+     *
+     * @param sequence sequence of the last span already read (0 to start from the oldest span).
+     * @param maxSpans maximum number of spans to read.
+     * @return the events of the spans in chronological order, each carrying the sequence of its span.
+     */
+    public List<TransactionEvent> getEventsSince(long sequence, int maxSpans) {
+        return TransactionSpan.toTimeline(transactionEventLog.snapshotAfter(sequence, maxSpans));
+    }
+
+    /**
+     * Get the events of the latest stored spans.
+     *
+     * @param count maximum number of spans.
+     * @return the events of the spans with the highest sequences, in chronological order.
+     */
+    public List<TransactionEvent> getLatest(int count) {
+        return TransactionSpan.toTimeline(transactionEventLog.snapshotLatest(count));
+    }
+
+    /**
+     * @return sequence of the last span stored in the event log, 0 if none.
+     */
+    public long getLastSequence() {
+        return lastSequence;
     }
 
     /**
@@ -366,33 +659,111 @@ public class TransactionMonitoringAspect {
      * @return the list of events of the selected period.
      */
     public List<TransactionEvent> getEventsInTimeRange(long startTime, long endTime) {
-        synchronized(transactionEventLog) {
-            return transactionEventLog.stream()
-                    .filter(event -> event.getStartTime() >= startTime && event.getStartTime() <= endTime)
-                    .collect(Collectors.toList());
+        // The time index skips the spans ending before the range and after the longest span running at its end
+        return TransactionSpan.toTimeline(transactionEventLog.snapshotOverlapping(startTime, endTime), startTime, endTime);
+    }
+
+    /**
+     * Get all the events of a transaction (index lookup).
+     *
+     * @param transactionId correlation ID of the transaction.
+     * @return the events of the transaction in chronological order.
+     */
+    public List<TransactionEvent> getEventsByTransaction(long transactionId) {
+        return TransactionSpan.toTimeline(transactionEventLog.getByTransaction(transactionId));
+    }
+
+    /**
+     * Get the events of a method for a specific period (index lookup).
+     *
+     * @param methodName shrunk name of the method, as displayed in the events (overloads are merged).
+     * @param startTime start time of range.
+     * @param endTime end time of range.
+     * @param errorsOnly true to keep only the invocations ending with an exception.
+     * @return the list of events of the method in the selected period.
+     */
+    public List<TransactionEvent> getEventsByMethod(String methodName, long startTime, long endTime, boolean errorsOnly) {
+        List<TransactionSpan> spans = new ArrayList<>();
+        for (MethodDescriptor method : methodRegistry.getByName(methodName)) {
+            spans.addAll(transactionEventLog.getByMethod(method.getId(), startTime, endTime,
+                    span -> !errorsOnly || span.getException() != null));
         }
+        return TransactionSpan.toTimeline(spans, startTime, endTime);
+    }
+
+    /**
+     * Get the events of a thread for a specific period (index lookup).
+     *
+     * @param threadId id of the thread.
+     * @param startTime start time of range.
+     * @param endTime end time of range.
+     * @return the list of events of the thread in the selected period.
+     */
+    public List<TransactionEvent> getEventsByThread(long threadId, long startTime, long endTime) {
+        return TransactionSpan.toTimeline(transactionEventLog.getByThread(threadId, startTime, endTime), startTime, endTime);
+    }
+
+    /**
+     * Get the call tree of a transaction, with the self time of each span.
+     * Only the captured spans still in the event log are part of the tree.
+     *
+     * @param transactionId correlation ID of the transaction.
+     * @return the root spans of the transaction (more than one only if the root span is not available).
+     */
+    public List<SpanNode> getCallTree(long transactionId) {
+        return TransactionSpan.toCallTree(transactionEventLog.getByTransaction(transactionId));
     }
 
     /**
-     * Returns aggregate statistics by thread.
+     * Returns the monitored invocations still running, read from what each thread publishes when it enters or exits a
+     * monitored method: nothing is recorded for this, and the snapshot costs one pass over the live threads.
+     *
+     * @return the running invocations of all threads, the oldest first, and their number by method.
+     */
+    public InFlightTransactions getInFlight() {
+        long now = System.nanoTime();
+        List<InFlightSpan> spans = new ArrayList<>();
+        Map<String, Integer> countByMethod = new HashMap<>();
+        threadRegistry.forEach(thread -> {
+            for (MonitoredThread.Running running : thread.getOpenSpans()) {
+                MethodDescriptor method = methodRegistry.get(running.methodId());
+                if (method == null) {
+                    continue;
+                }
+                spans.add(new InFlightSpan(thread.getId(), thread.getName(), running.transactionId(), method.getName(),
+                        running.depth(), running.startNanos(),
+                        TimeUnit.NANOSECONDS.toMillis(now - running.startNanos())));
+                countByMethod.merge(method.getName(), 1, Integer::sum);
+            }
+        });
+        spans.sort(Comparator.comparingLong(InFlightSpan::getStartNanos));
+        return new InFlightTransactions(spans, countByMethod);
+    }
+
+    /**
+     * Returns aggregate statistics by thread (empty unless per-thread statistics are enabled).
      * NB: if there is only one thread the method statistics and thread statistics are the same.
      *
-     * @return aggregatedThreadStats.
+     * @return aggregatedThreadStats, values are [count, totalTime ms, avgTime ms, cpuTime ns, userTime ns, allocatedBytes].
      */
     public Map<String, Map<String, long[]>> getStatsByThread() {
-        // Map to hold thread -> [count, totalTime]
+        // Map to hold thread -> [count, totalTime, avgTime, cpuTime, userTime, allocatedBytes]
         Map<String, Map<String, long[]>> aggregatedThreadStats = new HashMap<>();
 
         // Aggregate counts from all threads
         threadTransactionStats.forEach((threadKey, mapStats) -> {
-            mapStats.forEach((methodName, stats) -> {
+            mapStats.forEach((method, stats) -> {
+                String methodName = method.getName();
                 Map<String, long[]> threadStats = aggregatedThreadStats.computeIfAbsent(threadKey, k -> new HashMap<>());
-                threadStats.computeIfAbsent(methodName, k -> new long[3])[0] += stats.getCounter().get();
-                threadStats.computeIfAbsent(methodName, k -> new long[3])[1] += stats.getTimes().get();
-                long totalCount = threadStats.computeIfAbsent(methodName, k -> new long[3])[0];
-                long totalTime = threadStats.computeIfAbsent(methodName, k -> new long[3])[1];
+                threadStats.computeIfAbsent(methodName, k -> new long[6])[0] += stats.getCounter().get();
+                threadStats.computeIfAbsent(methodName, k -> new long[6])[1] += stats.getTimes().get();
+                long totalCount = threadStats.computeIfAbsent(methodName, k -> new long[6])[0];
+                long totalTime = threadStats.computeIfAbsent(methodName, k -> new long[6])[1];
                 long avgTime = totalCount > 0 ? totalTime / totalCount : 0;
-                threadStats.computeIfAbsent(methodName, k -> new long[3])[2] = avgTime;
+                threadStats.computeIfAbsent(methodName, k -> new long[6])[2] = avgTime;
+                threadStats.computeIfAbsent(methodName, k -> new long[6])[3] += stats.getCpuTime().get();
+                threadStats.computeIfAbsent(methodName, k -> new long[6])[4] += stats.getUserTime().get();
+                threadStats.computeIfAbsent(methodName, k -> new long[6])[5] += stats.getAllocatedBytes().get();
             });
         });
 
@@ -401,35 +772,142 @@ public class TransactionMonitoringAspect {
 
     /**
      * Returns aggregate statistics by method.
-     * NB: if there is only one thread the method statistics and thread statistics are the same.
      *
-     * @return aggregatedMethodStats.
+     * @return aggregatedMethodStats, values are [count, totalTime ms, avgTime ms, cpuTime ns, userTime ns,
+     * allocatedBytes, minTime ns, maxTime ns, errors].
      */
     public Map<String, long[]> getStatsByMethod() {
-        // Map to hold method -> [count, totalTime]
         Map<String, long[]> aggregatedMethodStats = new HashMap<>();
-
-        // Aggregate counts from all threads
-        threadTransactionStats.forEach((threadId, mapStats) -> {
-            mapStats.forEach((methodName, stats) -> {
-                aggregatedMethodStats.computeIfAbsent(methodName, k -> new long[3])[0] += stats.getCounter().get();
-                aggregatedMethodStats.computeIfAbsent(methodName, k -> new long[3])[1] += stats.getTimes().get();
-                long totalCount = aggregatedMethodStats.computeIfAbsent(methodName, k -> new long[3])[0];
-                long totalTime = aggregatedMethodStats.computeIfAbsent(methodName, k -> new long[3])[1];
-                long avgTime = totalCount > 0 ? totalTime / totalCount : 0;
-                aggregatedMethodStats.computeIfAbsent(methodName, k -> new long[3])[2] = avgTime;
+        for (MethodDescriptor method : methodRegistry.getAll()) {
+            MethodStats stats = method.getStats();
+            long totalCount = stats.getCounter();
+            if (totalCount == 0) {
+                continue;
+            }
+            long totalTime = TimeUnit.NANOSECONDS.toMillis(stats.getTotalTime());
+            aggregatedMethodStats.put(method.getName(), new long[]{
+                    totalCount,
+                    totalTime,
+                    totalTime / totalCount,
+                    stats.getCpuTime(),
+                    stats.getUserTime(),
+                    stats.getAllocatedBytes(),
+                    stats.getMinTime(),
+                    stats.getMaxTime(),
+                    stats.getErrors()
             });
+        }
+        return aggregatedMethodStats;
+    }
+
+    /**
+     * Returns the latency percentiles by thread and method.
+     *
+     * @return thread -> (method -> percentiles in nanoseconds).
+     */
+    public Map<String, Map<String, LatencyPercentiles>> getLatencyByThread() {
+        Map<String, Map<String, LatencyPercentiles>> latencyByThread = new HashMap<>();
+        threadTransactionStats.forEach((threadKey, mapStats) -> {
+            Map<String, LatencyPercentiles> threadLatency = latencyByThread.computeIfAbsent(threadKey, k -> new HashMap<>());
+            mapStats.forEach((method, stats) -> threadLatency.put(method.getName(), stats.getLatency().getPercentiles()));
         });
+        return latencyByThread;
+    }
 
-        return aggregatedMethodStats;
+    /**
+     * Returns the latency percentiles by method.
+     *
+     * @return method -> percentiles in nanoseconds.
+     */
+    public Map<String, LatencyPercentiles> getLatencyByMethod() {
+        Map<String, LatencyPercentiles> latencyByMethod = new HashMap<>();
+        for (MethodDescriptor method : methodRegistry.getAll()) {
+            if (method.getStats().getCounter() > 0) {
+                latencyByMethod.put(method.getName(), method.getStats().getLatency().getPercentiles());
+            }
+        }
+        return latencyByMethod;
     }
 
+    /**
+     * Returns the statistics by method over the last 1, 5 and 15 minutes (empty unless rolling statistics are enabled).
+     * Unlike the other statistics they are never mixed with older invocations, so they show a regression as it happens.
+     *
+     * @return method -> (window -> statistics), for the methods called in the last 15 minutes.
+     */
+    public Map<String, Map<String, RollingStats>> getRollingStatsByMethod() {
+        long now = System.nanoTime();
+        Map<String, Map<String, RollingStats>> rollingStatsByMethod = new HashMap<>();
+        for (MethodDescriptor method : methodRegistry.getAll()) {
+            Map<String, RollingStats> windows = new LinkedHashMap<>();
+            RollingStats longest = null;
+            for (int minutes : ROLLING_WINDOWS) {
+                longest = method.getRollingStats().snapshot(now, TimeUnit.MINUTES.toNanos(minutes));
+                windows.put(minutes + "m", longest);
+            }
+            if (longest.getCount() > 0) {
+                rollingStatsByMethod.put(method.getName(), windows);
+            }
+        }
+        return rollingStatsByMethod;
+    }
 
     /**
-     * Reset statistics if needed.
+     * @return the monitored methods in id order, with their global statistics (updated in place, never copied).
+     */
+    public List<MethodDescriptor> getMethods() {
+        return methodRegistry.getAll();
+    }
+
+    /**
+     * @return read-only view of the statistics by thread key and method (empty unless per-thread statistics are
+     * enabled): the map of a thread is replaced when the thread is retired or the statistics are reset.
+     */
+    public Map<String, Map<MethodDescriptor, TransactionThreadStats>> getThreadStats() {
+        return Collections.unmodifiableMap(threadTransactionStats);
+    }
+
+    /**
+     * Wait (up to one second) until the spans published so far are visible in the event log.
+     *
+     * @return false on timeout.
+     */
+    public boolean flush() {
+        return eventPipeline.flush(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Add an exporter, called on the pipeline consumer thread with every batch of completed spans.
+     *
+     * @param exporter batch consumer, it must not keep the list after the call.
+     */
+    public void addExporter(Consumer<List<TransactionSpan>> exporter) {
+        eventPipeline.addExporter(exporter);
+    }
+
+    /**
+     * @return queue depth, published, processed and dropped spans of the event pipeline.
+     */
+    public PipelineStats getPipelineStats() {
+        return eventPipeline.getStats();
+    }
+
+    /**
+     * Reset statistics if needed. The event log is cleared by the pipeline consumer, its single writer: this waits (up
+     * to one second) until it is done.
      */
     public void resetStats() {
-        transactionEventLog.clear();
+        try {
+            eventPipeline.execute(transactionEventLog::clear).get(1, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("The transaction event log has not been cleared", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         threadTransactionStats.clear();
+        methodRegistry.getAll().forEach(method -> {
+            method.getStats().reset();
+            method.getRollingStats().reset();
+        });
     }
 }
@@ -0,0 +1,75 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.aspect;
+
+import com.github.benkenhobbit.monitoring.config.TransactionMonitoringConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Enables and disables transaction monitoring at runtime.
+ * <p>
+ * The monitoring advice stays in the advisor chain of every proxy, whatever its scope or creation time: switching only
+ * flips the volatile <i>enabled</i> flag of {@link TransactionMonitoringConfiguration}, which the advice reads first.
+ * While monitoring is disabled a call goes straight to the next advisor (one volatile read), and no advisor list is
+ * ever changed under the calls running through the proxies.
+ *
+ * @author A. Aquila
+ */
+@Component
+@Slf4j
+public class TransactionMonitoringSwitch {
+
+    private final TransactionMonitoringConfiguration transactionMonitoringConfiguration;
+
+    public TransactionMonitoringSwitch(TransactionMonitoringConfiguration transactionMonitoringConfiguration) {
+        this.transactionMonitoringConfiguration = transactionMonitoringConfiguration;
+    }
+
+    /**
+     * Enable monitoring: the next calls are monitored.
+     */
+    public void enable() {
+        transactionMonitoringConfiguration.setEnabled(true);
+        log.info("Transaction monitoring enabled");
+    }
+
+    /**
+     * Disable monitoring: the next calls go straight through the monitoring advice, the running ones complete normally.
+     */
+    public void disable() {
+        transactionMonitoringConfiguration.setEnabled(false);
+        log.info("Transaction monitoring disabled");
+    }
+
+    /**
+     * @return true if the calls are monitored.
+     */
+    public boolean isEnabled() {
+        return transactionMonitoringConfiguration.isEnabled();
+    }
+}
@@ -26,6 +26,11 @@
  */
 package com.github.benkenhobbit.monitoring.config;
 
+import com.github.benkenhobbit.monitoring.correlation.TransactionIdStrategy;
+import com.github.benkenhobbit.monitoring.pipeline.OverflowPolicy;
+import com.github.benkenhobbit.monitoring.registry.VirtualThreadGrouping;
+import com.github.benkenhobbit.monitoring.sampling.SamplingStrategy;
+import com.github.benkenhobbit.monitoring.store.StoreType;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.beans.factory.annotation.Value;
@@ -39,19 +44,21 @@ import org.springframework.stereotype.Component;
 public class TransactionMonitoringConfiguration {
 
     /**
-     * Enable transaction monitoring (dafault: false)
+     * Enable transaction monitoring (dafault: false).
+     * Volatile: read by the monitoring advice on every call and switched at runtime (see TransactionMonitoringSwitch).
      */
     @Value("${app.monitoring.transaction.enabled:false}")
-    private boolean enabled;
+    private volatile boolean enabled;
 
     /**
-     * Defines whether logs should be pruned (dafault: true)
+     * Defines whether logs should be pruned by age (dafault: true)
      */
     @Value("${app.monitoring.transaction.log-pruning.enabled:true}")
     private boolean logPruningEnabled;
 
     /**
-     * Defines how many log events should be kept (dafault: 1000)
+     * Defines how many log events should be kept (dafault: 1000).
+     * This limit is enforced by the background sweeper even when pruning is disabled, the log can exceed it between two sweeps.
      */
     @Value("${app.monitoring.transaction.log-pruning.max-event-log.size:1000}")
     private int maxEventLogSize;
@@ -61,4 +68,222 @@ public class TransactionMonitoringConfiguration {
      */
     @Value("${app.monitoring.transaction.log-pruning.max-event-log.time:24}")
     private int maxEventLogTime;
+
+    /**
+     * Time span of each event log segment in seconds, the granularity of the expiry by age (default: 60)
+     */
+    @Value("${app.monitoring.transaction.log-pruning.segment-duration:60}")
+    private int logSegmentDuration;
+
+    /**
+     * Interval between two runs of the background sweeper in milliseconds (default: 1000)
+     */
+    @Value("${app.monitoring.transaction.log-pruning.sweep-interval:1000}")
+    private long logSweepInterval;
+
+    /**
+     * Storage of the captured spans: HEAP or OFF_HEAP (default: HEAP).
+     * OFF_HEAP keeps up to max-event-log.size spans in direct memory (64 bytes each), for retentions of millions of
+     * spans. It has no index: the call tree and the lookups by method or thread scan all the spans (O(n)) on each
+     * request, so those endpoints should not be polled with this store.
+     */
+    @Value("${app.monitoring.transaction.store.type:HEAP}")
+    private StoreType storeType;
+
+    /**
+     * Spans per direct buffer of the OFF_HEAP store, allocated when first needed (default: 65536)
+     */
+    @Value("${app.monitoring.transaction.store.off-heap.chunk-size:65536}")
+    private int offHeapChunkSize;
+
+    /**
+     * Append the captured spans to a memory-mapped journal, replayed at startup to rebuild the event log and the
+     * statistics by method (default: false)
+     */
+    @Value("${app.monitoring.transaction.journal.enabled:false}")
+    private boolean journalEnabled;
+
+    /**
+     * Directory of the journal segment files (default: transaction-journal)
+     */
+    @Value("${app.monitoring.transaction.journal.directory:transaction-journal}")
+    private String journalDirectory;
+
+    /**
+     * Size of each journal segment file in megabytes (default: 64)
+     */
+    @Value("${app.monitoring.transaction.journal.segment-size:64}")
+    private int journalSegmentSize;
+
+    /**
+     * Maximum time span of a journal segment in minutes, 0 to roll by size only (default: 60)
+     */
+    @Value("${app.monitoring.transaction.journal.segment-duration:60}")
+    private int journalSegmentDuration;
+
+    /**
+     * Number of journal segment files to be kept (default: 16)
+     */
+    @Value("${app.monitoring.transaction.journal.max-segments:16}")
+    private int journalMaxSegments;
+
+    /**
+     * Interval between two forces of the journal to the disk in milliseconds, 0 to leave it to the OS (default: 1000)
+     */
+    @Value("${app.monitoring.transaction.journal.force-interval:1000}")
+    private long journalForceInterval;
+
+    /**
+     * Sample the stacks of the slow running invocations and attach them to their span (default: false)
+     */
+    @Value("${app.monitoring.transaction.watchdog.enabled:false}")
+    private boolean watchdogEnabled;
+
+    /**
+     * Running time in milliseconds after which an invocation is slow and its stack is sampled (default: 1000)
+     */
+    @Value("${app.monitoring.transaction.watchdog.threshold:1000}")
+    private long watchdogThreshold;
+
+    /**
+     * Thresholds by method, as comma separated method=milliseconds pairs using the method names of the events (default: none)
+     */
+    @Value("${app.monitoring.transaction.watchdog.method-thresholds:}")
+    private String watchdogMethodThresholds;
+
+    /**
+     * Interval between two scans of the running invocations, and two samples of a slow one, in milliseconds (default: 50)
+     */
+    @Value("${app.monitoring.transaction.watchdog.interval:50}")
+    private long watchdogInterval;
+
+    /**
+     * Maximum number of frames of a stack sample, innermost first (default: 64)
+     */
+    @Value("${app.monitoring.transaction.watchdog.stack-depth:64}")
+    private int watchdogStackDepth;
+
+    /**
+     * Keep statistics by thread and method in addition to the global ones by method (default: false)
+     */
+    @Value("${app.monitoring.transaction.stats.per-thread.enabled:false}")
+    private boolean perThreadStatsEnabled;
+
+    /**
+     * Group of the virtual threads in the statistics by thread and in the spans: TASK (thread name without its trailing
+     * number) or CARRIER_POOL (all together) (default: TASK)
+     */
+    @Value("${app.monitoring.transaction.stats.virtual-threads.grouping:TASK}")
+    private VirtualThreadGrouping virtualThreadGrouping;
+
+    /**
+     * Keep the statistics by method of the last 1, 5 and 15 minutes (default: false).
+     * Each method keeps a 2.7 KB bucket per 15 s period it is called in: up to 165 KB for a method called all the time.
+     */
+    @Value("${app.monitoring.transaction.stats.rolling.enabled:false}")
+    private boolean rollingStatsEnabled;
+
+    /**
+     * Generator of the transaction correlation IDs: TIME_ORDERED or UUID, 63-bit random values (default: TIME_ORDERED)
+     */
+    @Value("${app.monitoring.transaction.id.strategy:TIME_ORDERED}")
+    private TransactionIdStrategy idStrategy;
+
+    /**
+     * Node id (0-63) embedded in the TIME_ORDERED IDs, negative to pick a random one at startup (default: -1)
+     */
+    @Value("${app.monitoring.transaction.id.node-id:-1}")
+    private int idNodeId;
+
+    /**
+     * Defines which root transactions have their events captured: ALWAYS, RATE or TOKEN_BUCKET (default: ALWAYS).
+     * Statistics and histograms are always exact, only the event capture is sampled.
+     */
+    @Value("${app.monitoring.transaction.sampling.strategy:ALWAYS}")
+    private SamplingStrategy samplingStrategy;
+
+    /**
+     * Fraction of root transactions captured by the RATE strategy (default: 1.0)
+     */
+    @Value("${app.monitoring.transaction.sampling.rate:1.0}")
+    private double samplingRate;
+
+    /**
+     * Root transactions captured per second and per method by the TOKEN_BUCKET strategy (default: 10)
+     */
+    @Value("${app.monitoring.transaction.sampling.permits-per-second:10}")
+    private double samplingPermitsPerSecond;
+
+    /**
+     * Always capture invocations ending with an exception, even if not sampled (default: true)
+     */
+    @Value("${app.monitoring.transaction.sampling.always-sample-errors:true}")
+    private boolean alwaysSampleErrors;
+
+    /**
+     * Always capture invocations slower than this threshold in milliseconds, even if not sampled, 0 to disable (default: 1000)
+     */
+    @Value("${app.monitoring.transaction.sampling.slow-threshold:1000}")
+    private long samplingSlowThreshold;
+
+    /**
+     * Capacity of the queue between the monitored threads and the event consumer, rounded up to a power of two (default: 8192)
+     */
+    @Value("${app.monitoring.transaction.pipeline.queue-capacity:8192}")
+    private int pipelineQueueCapacity;
+
+    /**
+     * Maximum number of events stored by the consumer at once (default: 256)
+     */
+    @Value("${app.monitoring.transaction.pipeline.batch-size:256}")
+    private int pipelineBatchSize;
+
+    /**
+     * What to do with an event when the queue is full: DROP, DROP_AND_COUNT or BLOCK (default: DROP_AND_COUNT)
+     */
+    @Value("${app.monitoring.transaction.pipeline.overflow-policy:DROP_AND_COUNT}")
+    private OverflowPolicy pipelineOverflowPolicy;
+
+    /**
+     * Interval between two pushes of the new events to the live timeline subscribers in milliseconds (default: 250)
+     */
+    @Value("${app.monitoring.transaction.stream.push-interval:250}")
+    private long streamPushInterval;
+
+    /**
+     * Maximum number of spans sent at once to a stream client, older pending spans are dropped (default: 1024)
+     */
+    @Value("${app.monitoring.transaction.stream.max-batch:1024}")
+    private int streamMaxBatch;
+
+    /**
+     * Maximum number of concurrent live timeline subscribers (default: 16)
+     */
+    @Value("${app.monitoring.transaction.stream.max-subscribers:16}")
+    private int streamMaxSubscribers;
+
+    /**
+     * Time after which a live timeline subscription ends in milliseconds, freeing the slot of a client gone silently;
+     * an EventSource reconnects from its last event id (default: 1800000)
+     */
+    @Value("${app.monitoring.transaction.stream.timeout:1800000}")
+    private long streamTimeout;
+
+    /**
+     * Maximum number of method tag values of the metrics, the other methods are merged in one series (default: 200)
+     */
+    @Value("${app.monitoring.transaction.metrics.max-methods:200}")
+    private int metricsMaxMethods;
+
+    /**
+     * Maximum number of thread tag values of the per-thread metrics (default: 32)
+     */
+    @Value("${app.monitoring.transaction.metrics.max-threads:32}")
+    private int metricsMaxThreads;
+
+    /**
+     * Interval between two registrations of the meters of the new methods and threads in milliseconds (default: 10000)
+     */
+    @Value("${app.monitoring.transaction.metrics.refresh-interval:10000}")
+    private long metricsRefreshInterval;
 }
@@ -0,0 +1,125 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.correlation;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Time-ordered 64-bit IDs, generated without locks.
+ * <p>
+ * Layout (from the most significant bit): 1 bit always 0, 41 bits of milliseconds since {@link #EPOCH}, 6 bits of
+ * node id, 10 bits of lane and 6 bits of sequence. Threads are assigned one of the 1024 lanes round-robin, each lane
+ * keeps its last timestamp and sequence and advances them by CAS; when the sequence is exhausted the lane moves on to
+ * the next millisecond. A lane reused by a later thread (or shared by more than 1024 live threads) therefore goes on
+ * from where its previous owner stopped: IDs are sortable by start time and always unique within the node.
+ */
+public class TimeOrderedTransactionIdGenerator implements TransactionIdGenerator {
+
+    /**
+     * 2025-01-01T00:00:00Z, the 41 bits of timestamp last about 69 years from it.
+     */
+    public static final long EPOCH = 1_735_689_600_000L;
+
+    private static final int NODE_BITS = 6;
+
+    private static final int LANE_BITS = 10;
+
+    private static final int SEQUENCE_BITS = 6;
+
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + LANE_BITS + SEQUENCE_BITS;
+
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final int LANE_MASK = (1 << LANE_BITS) - 1;
+
+    private static final int MAX_SEQUENCE = (1 << SEQUENCE_BITS) - 1;
+
+    private final long nodeBits;
+
+    /**
+     * Lane states are spaced one cache line apart, so that threads on different lanes do not contend.
+     */
+    private static final int LANE_STRIDE = 8;
+
+    private final AtomicInteger nextLane = new AtomicInteger();
+
+    private final ThreadLocal<Integer> lanes = ThreadLocal.withInitial(() -> nextLane.getAndIncrement() & LANE_MASK);
+
+    /**
+     * Last timestamp and sequence of each lane, as <i>timestamp &lt;&lt; SEQUENCE_BITS | sequence</i> (-1 if unused).
+     */
+    private final AtomicLongArray laneStates;
+
+    /**
+     * @param nodeId id of this node, between 0 and {@link #MAX_NODE_ID}, or negative to pick a random one.
+     */
+    public TimeOrderedTransactionIdGenerator(int nodeId) {
+        if (nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        int node = nodeId >= 0 ? nodeId : ThreadLocalRandom.current().nextInt(MAX_NODE_ID + 1);
+        this.nodeBits = (long) node << (LANE_BITS + SEQUENCE_BITS);
+        long[] states = new long[(LANE_MASK + 1) * LANE_STRIDE];
+        Arrays.fill(states, -1);
+        this.laneStates = new AtomicLongArray(states);
+    }
+
+    @Override
+    public long nextId(long timestamp) {
+        int lane = lanes.get();
+        long first = Math.max(timestamp - EPOCH, 0) << SEQUENCE_BITS;
+        long previous;
+        long state;
+        do {
+            previous = laneStates.get(lane * LANE_STRIDE);
+            // A later millisecond restarts the sequence, otherwise (same millisecond or clock moved backwards) the
+            // sequence goes on, overflowing into the next millisecond when exhausted
+            state = Math.max(first, previous + 1);
+        } while (!laneStates.compareAndSet(lane * LANE_STRIDE, previous, state));
+        return (state >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT | nodeBits | (long) lane << SEQUENCE_BITS
+                | (state & MAX_SEQUENCE);
+    }
+
+    /**
+     * @param transactionId ID generated by this strategy.
+     * @return the start time (milliseconds) encoded in the ID.
+     */
+    public static long timestampOf(long transactionId) {
+        return (transactionId >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+
+    /**
+     * @param timestamp time in milliseconds.
+     * @return the lowest ID generated at or after the timestamp, for range queries on IDs.
+     */
+    public static long lowestIdAt(long timestamp) {
+        return Math.max(timestamp - EPOCH, 0) << TIMESTAMP_SHIFT;
+    }
+}
@@ -0,0 +1,316 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.correlation;
+
+import com.github.benkenhobbit.monitoring.model.StackProfile;
+
+import java.util.Arrays;
+
+/**
+ * Stack of the monitored invocations running on one thread, pushed and popped by the monitoring aspect.
+ * <p>
+ * The root frame carries the correlation ID and the sampling decision of the transaction, nested frames inherit them.
+ * The ID is therefore scoped exactly to the outermost monitored invocation, whatever the propagation of the nested ones
+ * (REQUIRES_NEW, NOT_SUPPORTED...). Frames are reused, so a push does not allocate once the stack has grown.
+ * Only the owning thread may use it.
+ */
+public class TransactionContext {
+
+    /**
+     * State of one monitored invocation.
+     */
+    public static final class Frame {
+
+        private int depth;
+
+        private Frame parent;
+
+        /**
+         * Number of the invocation on its thread (from 1): unlike the frame, it is never reused.
+         */
+        private long invocation;
+
+        private int methodId;
+
+        private int spanId;
+
+        private int parentSpanId;
+
+        private long transactionId;
+
+        private boolean sampled;
+
+        private long startTime;
+
+        private long startNanos;
+
+        private long startCpuTime;
+
+        private long startUserTime;
+
+        private long startAllocatedBytes;
+
+        /**
+         * Time spent in the monitored invocations called by this one, in nanoseconds.
+         */
+        private long childNanos;
+
+        /**
+         * Profile of the invocation once slow, attached by another thread: tagged with the invocation, since the frame
+         * may have been reused meanwhile.
+         */
+        private volatile Profiling profiling;
+
+        private record Profiling(long invocation, StackProfile profile) {
+        }
+
+        /**
+         * @return 0 for the root invocation, 1 for the invocations it calls and so on.
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return the frame of the calling invocation, null for the root invocation.
+         */
+        public Frame getParent() {
+            return parent;
+        }
+
+        public long getInvocation() {
+            return invocation;
+        }
+
+        public int getMethodId() {
+            return methodId;
+        }
+
+        public void setMethodId(int methodId) {
+            this.methodId = methodId;
+        }
+
+        /**
+         * @return id of the span, unique within the transaction (the root span is 1).
+         */
+        public int getSpanId() {
+            return spanId;
+        }
+
+        /**
+         * @return id of the calling span, 0 for the root span.
+         */
+        public int getParentSpanId() {
+            return parentSpanId;
+        }
+
+        public long getTransactionId() {
+            return transactionId;
+        }
+
+        /**
+         * @return true if the spans of the transaction are captured.
+         */
+        public boolean isSampled() {
+            return sampled;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        public void setStartNanos(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        public long getStartCpuTime() {
+            return startCpuTime;
+        }
+
+        public long getStartUserTime() {
+            return startUserTime;
+        }
+
+        public long getStartAllocatedBytes() {
+            return startAllocatedBytes;
+        }
+
+        public long getChildNanos() {
+            return childNanos;
+        }
+
+        /**
+         * @param nanos execution time of a monitored invocation called by this one.
+         */
+        public void addChildNanos(long nanos) {
+            childNanos += nanos;
+        }
+
+        /**
+         * Attach the stack profile of a slow invocation (any thread).
+         *
+         * @param invocation invocation being profiled, ignored if the frame has been reused since.
+         */
+        public void attachProfile(long invocation, StackProfile profile) {
+            profiling = new Profiling(invocation, profile);
+        }
+
+        /**
+         * Take the profile attached to the invocation (owning thread only).
+         *
+         * @return the profile, null if the invocation was not slow.
+         */
+        public StackProfile takeProfile() {
+            Profiling current = profiling;
+            if (current == null) {
+                return null;
+            }
+            profiling = null;
+            return current.invocation() == invocation ? current.profile() : null;
+        }
+
+        /**
+         * Thread counters at START (negative if not available).
+         */
+        public void setStartCounters(long startCpuTime, long startUserTime, long startAllocatedBytes) {
+            this.startCpuTime = startCpuTime;
+            this.startUserTime = startUserTime;
+            this.startAllocatedBytes = startAllocatedBytes;
+        }
+    }
+
+    private Frame[] frames = new Frame[8];
+
+    private int size;
+
+    /**
+     * Last span id given in the running transaction.
+     */
+    private int lastSpanId;
+
+    /**
+     * Last invocation number given on the thread.
+     */
+    private long lastInvocation;
+
+    /**
+     * @return true if no monitored invocation is running on the thread.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of monitored invocations running on the thread.
+     */
+    public int depth() {
+        return size;
+    }
+
+    /**
+     * @return the innermost running invocation, null if none.
+     */
+    public Frame peek() {
+        return size > 0 ? frames[size - 1] : null;
+    }
+
+    /**
+     * @return the caller of the innermost running invocation, null if none.
+     */
+    public Frame peekParent() {
+        return size > 1 ? frames[size - 2] : null;
+    }
+
+    /**
+     * Push the frame of a root invocation.
+     *
+     * @param transactionId correlation ID of the new transaction.
+     * @param sampled sampling decision of the new transaction.
+     * @param startTime start time in milliseconds.
+     * @return the new frame.
+     */
+    public Frame pushRoot(long transactionId, boolean sampled, long startTime) {
+        if (size != 0) {
+            throw new IllegalStateException("A transaction is already running on this thread");
+        }
+        lastSpanId = 0;
+        return push(transactionId, sampled, startTime);
+    }
+
+    /**
+     * Push the frame of a nested invocation, which inherits the correlation of the running transaction.
+     *
+     * @param startTime start time in milliseconds.
+     * @return the new frame.
+     */
+    public Frame pushNested(long startTime) {
+        Frame parent = peek();
+        if (parent == null) {
+            throw new IllegalStateException("No transaction is running on this thread");
+        }
+        return push(parent.transactionId, parent.sampled, startTime);
+    }
+
+    /**
+     * Pop the innermost frame.
+     */
+    public void pop() {
+        if (size == 0) {
+            throw new IllegalStateException("No transaction is running on this thread");
+        }
+        size--;
+    }
+
+    private Frame push(long transactionId, boolean sampled, long startTime) {
+        if (size == frames.length) {
+            frames = Arrays.copyOf(frames, size * 2);
+        }
+        Frame frame = frames[size];
+        if (frame == null) {
+            frame = new Frame();
+            frames[size] = frame;
+        }
+        frame.depth = size;
+        frame.parent = size > 0 ? frames[size - 1] : null;
+        frame.invocation = ++lastInvocation;
+        frame.methodId = -1;
+        frame.spanId = ++lastSpanId;
+        frame.parentSpanId = frame.parent != null ? frame.parent.spanId : 0;
+        frame.childNanos = 0;
+        frame.transactionId = transactionId;
+        frame.sampled = sampled;
+        frame.startTime = startTime;
+        frame.startNanos = 0;
+        frame.setStartCounters(-1, -1, -1);
+        size++;
+        return frame;
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.correlation;
+
+/**
+ * Generates the correlation ID of the root transactions.
+ * IDs are primitive longs, stored as such in spans and events: they are only rendered as text when displayed.
+ */
+@FunctionalInterface
+public interface TransactionIdGenerator {
+
+    /**
+     * @param timestamp start time of the root transaction in milliseconds.
+     * @return a new correlation ID.
+     */
+    long nextId(long timestamp);
+
+    /**
+     * Text form of an ID: 16 hexadecimal digits, so that the text sorts like the number.
+     *
+     * @param transactionId correlation ID.
+     * @return the ID as text.
+     */
+    static String format(long transactionId) {
+        String hex = Long.toHexString(transactionId);
+        return hex.length() < 16 ? "0".repeat(16 - hex.length()) + hex : hex;
+    }
+
+    /**
+     * @param text ID rendered by {@link #format(long)}.
+     * @return the ID.
+     * @throws NumberFormatException if the text is not a valid ID.
+     */
+    static long parse(String text) {
+        return Long.parseUnsignedLong(text, 16);
+    }
+}
@@ -27,15 +27,27 @@
 package com.github.benkenhobbit.monitoring.demo.rest;
 
 import com.github.benkenhobbit.monitoring.demo.service.MonitorService;
+import com.github.benkenhobbit.monitoring.demo.service.TimelineStreamService;
+import com.github.benkenhobbit.monitoring.model.InFlightTransactions;
+import com.github.benkenhobbit.monitoring.model.PipelineStats;
+import com.github.benkenhobbit.monitoring.model.RollingStats;
+import com.github.benkenhobbit.monitoring.model.SpanNode;
 import com.github.benkenhobbit.monitoring.model.TransactionEvent;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("private/transaction-monitor")
@@ -44,8 +56,11 @@ public class MonitorController {
 
     private final MonitorService transactionMonitorService;
 
-    public MonitorController(MonitorService transactionMonitorService) {
+    private final TimelineStreamService timelineStreamService;
+
+    public MonitorController(MonitorService transactionMonitorService, TimelineStreamService timelineStreamService) {
         this.transactionMonitorService = transactionMonitorService;
+        this.timelineStreamService = timelineStreamService;
     }
 
     @GetMapping("/run-test")
@@ -64,6 +79,82 @@ public class MonitorController {
         return transactionMonitorService.getEvents(count);
     }
 
+    @GetMapping(value = "/timeline/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamTimeline(@RequestParam(defaultValue = "0") long after,
+                                                @RequestParam(defaultValue = "" + Long.MAX_VALUE) long limit) {
+        return out -> timelineStreamService.writeEvents(after, limit, out);
+    }
+
+    @GetMapping(value = "/timeline/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> liveTimeline(@RequestParam(required = false) Long after,
+                                                   @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+        // A reconnecting EventSource resumes from the id of the last message received
+        SseEmitter emitter = timelineStreamService.subscribe(lastEventId != null ? lastEventId : after);
+        return emitter != null ? ResponseEntity.ok(emitter) : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+
+    @GetMapping("/events")
+    public List<TransactionEvent> getEvents(@RequestParam(defaultValue = "0") long from,
+                                            @RequestParam(defaultValue = "" + Long.MAX_VALUE) long to) {
+        return transactionMonitorService.getEventsInTimeRange(from, to);
+    }
+
+    @GetMapping("/events/since/{sequence}")
+    public List<TransactionEvent> getEventsSince(@PathVariable long sequence,
+                                                 @RequestParam(defaultValue = "1000") int max) {
+        return transactionMonitorService.getEventsSince(sequence, max);
+    }
+
+    @GetMapping("/events/latest/{count}")
+    public List<TransactionEvent> getLatest(@PathVariable int count) {
+        return transactionMonitorService.getLatest(count);
+    }
+
+    @GetMapping("/events/transaction/{transactionId}")
+    public ResponseEntity<List<TransactionEvent>> getEventsByTransaction(@PathVariable String transactionId) {
+        try {
+            return ResponseEntity.ok(transactionMonitorService.getEventsByTransaction(transactionId));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/events/method")
+    public List<TransactionEvent> getEventsByMethod(@RequestParam String name,
+                                                    @RequestParam(defaultValue = "0") long from,
+                                                    @RequestParam(defaultValue = "" + Long.MAX_VALUE) long to,
+                                                    @RequestParam(defaultValue = "false") boolean errors) {
+        return transactionMonitorService.getEventsByMethod(name, from, to, errors);
+    }
+
+    @GetMapping("/events/thread/{threadId}")
+    public List<TransactionEvent> getEventsByThread(@PathVariable long threadId,
+                                                    @RequestParam(defaultValue = "0") long from,
+                                                    @RequestParam(defaultValue = "" + Long.MAX_VALUE) long to) {
+        return transactionMonitorService.getEventsByThread(threadId, from, to);
+    }
+
+    @GetMapping("/transaction/{transactionId}")
+    public ResponseEntity<List<SpanNode>> getCallTree(@PathVariable String transactionId) {
+        List<SpanNode> callTree;
+        try {
+            callTree = transactionMonitorService.getCallTree(transactionId);
+        } catch (NumberFormatException e) {
+            return ResponseEntity.notFound().build();
+        }
+        return callTree.isEmpty() ? ResponseEntity.notFound().build() : ResponseEntity.ok(callTree);
+    }
+
+    @GetMapping("/in-flight")
+    public InFlightTransactions getInFlight() {
+        return transactionMonitorService.getInFlight();
+    }
+
+    @GetMapping("/stats/rolling")
+    public Map<String, Map<String, RollingStats>> getRollingStats() {
+        return transactionMonitorService.getRollingStatsByMethod();
+    }
+
     @GetMapping("/print-log")
     public ResponseEntity<Void> printLog() {
         transactionMonitorService.printLog();
@@ -76,6 +167,11 @@ public class MonitorController {
         return ResponseEntity.ok().build(); // Returns 200 OK
     }
 
+    @GetMapping("/pipeline")
+    public PipelineStats getPipelineStats() {
+        return transactionMonitorService.getPipelineStats();
+    }
+
     @GetMapping("/enable")
     public ResponseEntity<Void> enable() {
         transactionMonitorService.enable();
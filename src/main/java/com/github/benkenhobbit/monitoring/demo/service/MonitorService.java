@@ -27,9 +27,16 @@
 package com.github.benkenhobbit.monitoring.demo.service;
 
 import com.github.benkenhobbit.monitoring.aspect.TransactionMonitoringAspect;
+import com.github.benkenhobbit.monitoring.aspect.TransactionMonitoringSwitch;
 import com.github.benkenhobbit.monitoring.config.TransactionMonitoringConfiguration;
+import com.github.benkenhobbit.monitoring.correlation.TransactionIdGenerator;
 import com.github.benkenhobbit.monitoring.demo.controller.DatabaseInterface;
 import com.github.benkenhobbit.monitoring.demo.model.Instrument;
+import com.github.benkenhobbit.monitoring.model.InFlightTransactions;
+import com.github.benkenhobbit.monitoring.model.LatencyPercentiles;
+import com.github.benkenhobbit.monitoring.model.PipelineStats;
+import com.github.benkenhobbit.monitoring.model.RollingStats;
+import com.github.benkenhobbit.monitoring.model.SpanNode;
 import com.github.benkenhobbit.monitoring.model.TransactionEvent;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -63,6 +70,8 @@ public class MonitorService {
 
     private final TransactionMonitoringAspect monitoringAspect;
 
+    private final TransactionMonitoringSwitch monitoringSwitch;
+
     private final NestedMonitorService nestedMonitorService;
 
     /**
@@ -70,15 +79,18 @@ public class MonitorService {
      * @param monitoringConfiguration
      * @param databaseInterface
      * @param monitoringAspect
+     * @param monitoringSwitch
      */
     @Autowired
     public MonitorService(TransactionMonitoringConfiguration monitoringConfiguration,
                           DatabaseInterface databaseInterface,
                           TransactionMonitoringAspect monitoringAspect,
+                          TransactionMonitoringSwitch monitoringSwitch,
                           NestedMonitorService nestedMonitorService) {
         this.monitoringConfiguration = monitoringConfiguration;
         this.databaseInterface = databaseInterface;
         this.monitoringAspect = monitoringAspect;
+        this.monitoringSwitch = monitoringSwitch;
         this.nestedMonitorService = nestedMonitorService;
     }
 
@@ -278,10 +290,29 @@ public class MonitorService {
         return monitoringAspect.getEvents(count);
     }
 
+    /**
+     * Get the events of the spans stored after a sequence.
+     *
+     * @param sequence highest sequence already read.
+     */
+    public List<TransactionEvent> getEventsSince(long sequence, int maxSpans) {
+        monitoringAspect.flush();
+        return monitoringAspect.getEventsSince(sequence, maxSpans);
+    }
+
+    /**
+     * Get the events of the latest spans.
+     */
+    public List<TransactionEvent> getLatest(int count) {
+        monitoringAspect.flush();
+        return monitoringAspect.getLatest(count);
+    }
+
     /**
      * Print timeline info.
      */
     public void printLog() {
+        monitoringAspect.flush();
         printTransactionTimeline();
     }
 
@@ -289,21 +320,87 @@ public class MonitorService {
      * Print short timeline info.
      */
     public void printShortLog() {
+        monitoringAspect.flush();
         printShortTransactionTimeline();
     }
 
+    /**
+     * Get the events of a transaction.
+     *
+     * @param transactionId correlation ID as displayed in the events.
+     */
+    public List<TransactionEvent> getEventsByTransaction(String transactionId) {
+        monitoringAspect.flush();
+        return monitoringAspect.getEventsByTransaction(TransactionIdGenerator.parse(transactionId));
+    }
+
+    /**
+     * Get the events of a method in a period, optionally only the failed invocations.
+     */
+    public List<TransactionEvent> getEventsByMethod(String methodName, long startTime, long endTime, boolean errorsOnly) {
+        monitoringAspect.flush();
+        return monitoringAspect.getEventsByMethod(methodName, startTime, endTime, errorsOnly);
+    }
+
+    /**
+     * Get the events of a thread in a period.
+     */
+    public List<TransactionEvent> getEventsByThread(long threadId, long startTime, long endTime) {
+        monitoringAspect.flush();
+        return monitoringAspect.getEventsByThread(threadId, startTime, endTime);
+    }
+
+    /**
+     * Get the events of a period.
+     */
+    public List<TransactionEvent> getEventsInTimeRange(long startTime, long endTime) {
+        monitoringAspect.flush();
+        return monitoringAspect.getEventsInTimeRange(startTime, endTime);
+    }
+
+    /**
+     * Get the call tree of a transaction.
+     *
+     * @param transactionId correlation ID as displayed in the events.
+     */
+    public List<SpanNode> getCallTree(String transactionId) {
+        monitoringAspect.flush();
+        return monitoringAspect.getCallTree(TransactionIdGenerator.parse(transactionId));
+    }
+
+    /**
+     * Get the monitored invocations still running.
+     */
+    public InFlightTransactions getInFlight() {
+        return monitoringAspect.getInFlight();
+    }
+
+    /**
+     * Get the statistics by method over the last 1, 5 and 15 minutes.
+     */
+    public Map<String, Map<String, RollingStats>> getRollingStatsByMethod() {
+        return monitoringAspect.getRollingStatsByMethod();
+    }
+
+    /**
+     * Get the event pipeline counters.
+     */
+    public PipelineStats getPipelineStats() {
+        return monitoringAspect.getPipelineStats();
+    }
+
     /**
      * Enable transaction monitoring.
      */
     public void enable() {
-        monitoringConfiguration.setEnabled(true);
+        monitoringSwitch.enable();
     }
 
     /**
      * Disable transaction monitoring.
      */
     public void disable() {
-        monitoringConfiguration.setEnabled(false);
+        monitoringSwitch.disable();
     }
 
     /**
@@ -320,18 +417,15 @@ public class MonitorService {
         List<TransactionEvent> sortedEvents = new ArrayList<>(eventsList);
         sortedEvents.sort(Comparator.comparing(TransactionEvent::getStartTime));
 
-        int logIndent = 0;
-
         StringBuilder sb = new StringBuilder();
         sb.append(String.format("%s\n=== Transaction Timeline ===", LOG_PREFIX));
         for (TransactionEvent event : sortedEvents) {
             String timestamp = sdf.format(new Date(event.getStartTime()));
             String eventType = event.getEventType().toString();
 
-            if (event.getEventType() == TransactionMonitoringAspect.TransactionEventType.START) {
-                logIndent++;
-                eventType += "   ";
-            } else if (event.getEventType() == TransactionMonitoringAspect.TransactionEventType.ERROR) {
+            // Nesting comes from the span depth, so interleaved threads do not break the indentation
+            int logIndent = event.getDepth() + 1;
+            if (event.getEventType() != TransactionMonitoringAspect.TransactionEventType.COMPLETE) {
                 eventType += "   ";
             }
 
@@ -344,17 +438,15 @@ public class MonitorService {
 
             // Informazioni aggiuntive in base al tipo di evento
             if (event.getEventType() == TransactionMonitoringAspect.TransactionEventType.COMPLETE) {
-                message = String.format("%s | Execution time: %d ms", message, event.getExecutionTime());
+                message = String.format("%s | Execution time: %d ms | Self time: %f ms", message, event.getExecutionTime(), event.getSelfTime());
                 String jvmInfo = String.format("| CPU Time: %f ms | User Time: %f ms | Allocated Memory: %s | Total Loaded Classes: %d |",
-                        event.getCpuTime(), event.getUserTime(), event.getAllocatedMemory(), event.getTotalLoadedClassCount());
+                        event.getCpuTime(), event.getUserTime(), formatBytes(event.getAllocatedBytes()), event.getTotalLoadedClassCount());
                 String sep = "-".repeat(jvmInfo.length());
                 message = String.format("%s\n%s                                       %s", message, prefix2, sep);
                 message = String.format("%s\n%s                                       %s", message, prefix2, jvmInfo);
                 message = String.format("%s\n%s                                       %s", message, prefix2, sep);
-                logIndent--;
             } else if (event.getEventType() == TransactionMonitoringAspect.TransactionEventType.ERROR) {
                 message = String.format("%s | Exception: %s", message, event.getException().getMessage());
-                logIndent--;
             }
 
             sb.append(message);
@@ -380,8 +472,6 @@ public class MonitorService {
             // (actually they should already be in order, but just to be safe)
             eventsList.sort(Comparator.comparing(TransactionEvent::getStartTime));
 
-            int logIndent = 0;
-
             StringBuilder sb = new StringBuilder();
             sb.append(String.format("%s\n=== Transaction Timeline ===", LOG_PREFIX));
             for (TransactionEvent event : eventsList) {
@@ -399,9 +489,7 @@ public class MonitorService {
                         break;
                 }
 
-                if (event.getEventType() == TransactionMonitoringAspect.TransactionEventType.START) {
-                    logIndent++;
-                }
+                int logIndent = event.getDepth() + 1;
 
                 String prefix1 = logIndent > 1 ? " ".repeat((logIndent - 1)*2 + 1) + "└>" : "";
                 String prefix2 = logIndent > 1 ? " ".repeat((logIndent - 1)*2 + 3) : "";
@@ -412,17 +500,15 @@ public class MonitorService {
 
                 // Additional information based on the type of event
                 if (event.getEventType() == TransactionMonitoringAspect.TransactionEventType.COMPLETE) {
-                    message = String.format("%s | Et: %d ms", message, event.getExecutionTime());
+                    message = String.format("%s | Et: %d ms | St: %f ms", message, event.getExecutionTime(), event.getSelfTime());
                     String jvmInfo = String.format("| CT: %f ms | UT: %f ms | AM: %s | TLC: %d |",
-                            event.getCpuTime(), event.getUserTime(), event.getAllocatedMemory(), event.getTotalLoadedClassCount());
+                            event.getCpuTime(), event.getUserTime(), formatBytes(event.getAllocatedBytes()), event.getTotalLoadedClassCount());
                     String sep = "-".repeat(jvmInfo.length());
                     message = String.format("%s\n%s                                %s", message, prefix2, sep);
                     message = String.format("%s\n%s                                %s", message, prefix2, jvmInfo);
                     message = String.format("%s\n%s                                %s", message, prefix2, sep);
-                    logIndent--;
                 } else if (event.getEventType() == TransactionMonitoringAspect.TransactionEventType.ERROR) {
                     message = String.format("%s | Et: %s", message, event.getException().getMessage());
-                    logIndent--;
                 }
 
                 sb.append(message);
@@ -442,6 +528,7 @@ public class MonitorService {
 
     public void printStatsByThread() {
         Map<String, Map<String, long[]>> statsMap = monitoringAspect.getStatsByThread();
+        Map<String, Map<String, LatencyPercentiles>> latencyMap = monitoringAspect.getLatencyByThread();
         StringBuilder sb = new StringBuilder();
         sb.append(String.format("[STM]\n=== Transaction Statistics ==="));
 
@@ -499,7 +586,12 @@ public class MonitorService {
                     String prefix4 = " ".repeat(maxLength4.get() - num3.length());
                     num3 = String.format("%s%d", prefix4, avgTime);
                 }
-                sb.append(String.format("\n    %s%s : Count = %s, Tot Time = %s ms, Avg Time = %s ms", methodName, prefix1, num1, num2, num3));
+                sb.append(String.format("\n    %s%s : Count = %s, Tot Time = %s ms, Avg Time = %s ms, CPU Time = %d ms, User Time = %d ms, Allocated = %s",
+                        methodName, prefix1, num1, num2, num3, stats[3] / 1_000_000, stats[4] / 1_000_000, formatBytes(stats[5])));
+                LatencyPercentiles latency = latencyMap.getOrDefault(threadNameId, Map.of()).get(methodName);
+                if (latency != null) {
+                    sb.append(formatLatency(latency));
+                }
             });
         });
 
@@ -513,6 +605,7 @@ public class MonitorService {
     public void printStatsByMethod() {
         // Map to hold method -> [count, totalTime]
         Map<String, long[]> statsMap = monitoringAspect.getStatsByMethod();
+        Map<String, LatencyPercentiles> latencyMap = monitoringAspect.getLatencyByMethod();
 
         StringBuilder sb = new StringBuilder();
         sb.append(String.format("[STM]\n=== Aggregated Transaction Statistics By Method ==="));
@@ -565,11 +658,41 @@ public class MonitorService {
                 String prefix4 = " ".repeat(maxLength4.get() - num3.length());
                 num3 = String.format("%s%d", prefix4, avgTime);
             }
-            sb.append(String.format("\n    %s%s : Tot Count = %s, Tot Time = %s ms, Overall Avg Time = %s ms", methodName, prefix1, num1, num2, num3));
+            sb.append(String.format("\n    %s%s : Tot Count = %s, Tot Time = %s ms, Overall Avg Time = %s ms, Errors = %d, Tot CPU Time = %d ms, Tot User Time = %d ms, Tot Allocated = %s",
+                    methodName, prefix1, num1, num2, num3, stats[8], stats[3] / 1_000_000, stats[4] / 1_000_000, formatBytes(stats[5])));
+            LatencyPercentiles latency = latencyMap.get(methodName);
+            if (latency != null) {
+                sb.append(formatLatency(latency));
+            }
         });
 
         if (!sb.isEmpty()) {
             log.info(sb.toString());
         }
     }
+
+    /**
+     * Format latency percentiles (recorded in nanoseconds) in milliseconds.
+     *
+     * @param latency percentiles to be printed.
+     * @return the percentiles as text.
+     */
+    private static String formatLatency(LatencyPercentiles latency) {
+        return String.format(", p50 = %.3f ms, p90 = %.3f ms, p99 = %.3f ms, p99.9 = %.3f ms, Max = %.3f ms",
+                latency.getP50() / 1_000_000.0, latency.getP90() / 1_000_000.0, latency.getP99() / 1_000_000.0,
+                latency.getP999() / 1_000_000.0, latency.getMax() / 1_000_000.0);
+    }
+
+    /**
+     * Format bytes with unit of measurement.
+     *
+     * @param bytes to be measured.
+     * @return bytes with the unit of measure.
+     */
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        int exp = (int) (Math.log(bytes) / Math.log(1024));
+        String pre = "KMGTPE".charAt(exp-1) + "";
+        return String.format("%.2f %sB", bytes / Math.pow(1024, exp), pre);
+    }
 }
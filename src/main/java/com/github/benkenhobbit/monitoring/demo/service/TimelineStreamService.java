@@ -0,0 +1,267 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benkenhobbit.monitoring.aspect.TransactionMonitoringAspect;
+import com.github.benkenhobbit.monitoring.config.TransactionMonitoringConfiguration;
+import com.github.benkenhobbit.monitoring.model.TransactionEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams the timeline incrementally, following the sequence of the stored spans instead of copying the whole event
+ * log: NDJSON pages for catching up and Server-Sent Events for the live tail.
+ * <p>
+ * Live subscribers are served by a periodic pusher which reads the spans stored since the last push of each subscriber
+ * and sends them as a single "events" message. A client still busy with the previous message is skipped, so its backlog
+ * grows instead of blocking the others; a backlog larger than a batch is coalesced to its newest spans and the number
+ * of skipped spans is sent as a "dropped" message.
+ */
+@Service
+@Slf4j
+public class TimelineStreamService {
+
+    private final TransactionMonitoringAspect monitoringAspect;
+
+    private final TransactionMonitoringConfiguration monitoringConfiguration;
+
+    private final ObjectMapper objectMapper;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Checks the subscribers every push interval.
+     */
+    private ScheduledExecutorService pusher;
+
+    /**
+     * Writes to the clients: at most one task per subscriber at a time.
+     */
+    private ExecutorService senders;
+
+    /**
+     * Constructor injection
+     * @param monitoringAspect
+     * @param monitoringConfiguration
+     * @param objectMapper
+     */
+    public TimelineStreamService(TransactionMonitoringAspect monitoringAspect,
+                                 TransactionMonitoringConfiguration monitoringConfiguration,
+                                 ObjectMapper objectMapper) {
+        this.monitoringAspect = monitoringAspect;
+        this.monitoringConfiguration = monitoringConfiguration;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void start() {
+        pusher = Executors.newSingleThreadScheduledExecutor(runnable -> newDaemonThread(runnable, "transaction-monitoring-stream-pusher"));
+        senders = Executors.newCachedThreadPool(runnable -> newDaemonThread(runnable, "transaction-monitoring-stream-sender"));
+        long pushInterval = Math.max(1, monitoringConfiguration.getStreamPushInterval());
+        pusher.scheduleWithFixedDelay(this::push, pushInterval, pushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pusher.shutdownNow();
+        senders.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    private static Thread newDaemonThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Write the events stored after a sequence as NDJSON (one event per line), reading the event log page by page.
+     * The stream ends at the last span stored when it starts: the client continues from the highest sequence received.
+     *
+     * @param after sequence of the last span already read (0 to start from the oldest span).
+     * @param maxSpans maximum number of spans to write.
+     * @param out response body.
+     * @throws IOException if the client is gone.
+     */
+    public void writeEvents(long after, long maxSpans, OutputStream out) throws IOException {
+        monitoringAspect.flush();
+        long last = monitoringAspect.getLastSequence();
+        int pageSize = Math.max(1, monitoringConfiguration.getStreamMaxBatch());
+        long cursor = after;
+        long remaining = maxSpans;
+        while (cursor < last && remaining > 0) {
+            long pageStart = cursor;
+            List<TransactionEvent> events = monitoringAspect.getEventsSince(cursor, (int) Math.min(pageSize, remaining));
+            for (TransactionEvent event : events) {
+                if (event.getSequence() > last) {
+                    continue;
+                }
+                out.write(objectMapper.writeValueAsBytes(event));
+                out.write('\n');
+                cursor = Math.max(cursor, event.getSequence());
+                // Each span ends with exactly one COMPLETE event
+                if (event.getEventType() == TransactionMonitoringAspect.TransactionEventType.COMPLETE) {
+                    remaining--;
+                }
+            }
+            out.flush();
+            if (cursor == pageStart) {
+                // Nothing left up to the last sequence (pruned meanwhile)
+                break;
+            }
+        }
+    }
+
+    /**
+     * Subscribe to the live timeline.
+     *
+     * @param after sequence of the last span already received, null to receive only the spans stored from now on.
+     * @return the emitter of the subscriber, null if the maximum number of subscribers is reached.
+     */
+    public SseEmitter subscribe(Long after) {
+        synchronized (subscribers) {
+            if (subscribers.size() >= monitoringConfiguration.getStreamMaxSubscribers()) {
+                return null;
+            }
+            // A client gone without closing the connection only frees its slot on the timeout
+            Subscriber subscriber = new Subscriber(newEmitter(Math.max(1, monitoringConfiguration.getStreamTimeout())),
+                    after != null ? after : monitoringAspect.getLastSequence());
+            subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+            subscriber.emitter.onTimeout(() -> {
+                subscribers.remove(subscriber);
+                subscriber.emitter.complete();
+            });
+            subscriber.emitter.onError(error -> subscribers.remove(subscriber));
+            subscribers.add(subscriber);
+            return subscriber.emitter;
+        }
+    }
+
+    /**
+     * @param timeout duration of the subscription in milliseconds.
+     * @return the emitter of a new subscriber.
+     */
+    SseEmitter newEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    /**
+     * @return number of live subscribers.
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void push() {
+        long last = monitoringAspect.getLastSequence();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.cursor < last && subscriber.busy.compareAndSet(false, true)) {
+                try {
+                    senders.execute(() -> send(subscriber, last));
+                } catch (RejectedExecutionException e) {
+                    subscriber.busy.set(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Send the spans stored after the cursor of a subscriber, up to a given sequence (sender thread).
+     */
+    private void send(Subscriber subscriber, long last) {
+        try {
+            int maxBatch = Math.max(1, monitoringConfiguration.getStreamMaxBatch());
+            long cursor = subscriber.cursor;
+            long dropped = 0;
+            // Coalesce the backlog of a slow client: only the newest batch is sent
+            if (last - cursor > maxBatch) {
+                dropped = last - maxBatch - cursor;
+                cursor = last - maxBatch;
+            }
+            List<TransactionEvent> events = monitoringAspect.getEventsSince(cursor, maxBatch);
+            long first = last + 1;
+            long sequence = cursor;
+            for (TransactionEvent event : events) {
+                first = Math.min(first, event.getSequence());
+                sequence = Math.max(sequence, event.getSequence());
+            }
+            // Spans pruned from the event log before being sent
+            dropped += first - cursor - 1;
+            if (dropped > 0) {
+                subscriber.emitter.send(SseEmitter.event().name("dropped").data(dropped));
+            }
+            if (!events.isEmpty()) {
+                subscriber.emitter.send(SseEmitter.event()
+                        .id(Long.toString(sequence))
+                        .name("events")
+                        .data(events, MediaType.APPLICATION_JSON));
+            }
+            subscriber.cursor = events.isEmpty() ? last : sequence;
+        } catch (IOException | IllegalStateException e) {
+            // The client is gone or the emitter is already completed
+            log.debug("Timeline subscriber removed: {}", e.getMessage());
+            subscribers.remove(subscriber);
+        } finally {
+            subscriber.busy.set(false);
+        }
+    }
+
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+
+        /**
+         * Sequence of the last span sent, only updated by the sender holding the busy flag.
+         */
+        private volatile long cursor;
+
+        private final AtomicBoolean busy = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Binary layout of the span journal.
+ * <p>
+ * A journal is a directory of segment files named by an increasing sequence. Each segment starts with a header
+ * (magic, version) followed by records: <i>length</i> (int), <i>CRC32</i> (int) and <i>length</i> bytes made of the
+ * record type and its payload. The length is written last, so the zero-filled tail of a segment reads as its end,
+ * while the CRC detects records torn by a crash. Dictionary records (methods, threads, exception types) are local to
+ * their segment, so that every segment can be read and deleted on its own.
+ */
+final class JournalFormat {
+
+    static final int MAGIC = 0x534A524E;
+
+    static final int VERSION = 1;
+
+    static final int FILE_HEADER_SIZE = 8;
+
+    static final int RECORD_HEADER_SIZE = 8;
+
+    /**
+     * Method dictionary entry: ref, declaring class, name, parameter types.
+     */
+    static final byte METHOD = 1;
+
+    /**
+     * Thread dictionary entry: ref, thread id, thread name.
+     */
+    static final byte THREAD = 2;
+
+    /**
+     * Exception type dictionary entry: ref, class name.
+     */
+    static final byte EXCEPTION_TYPE = 3;
+
+    /**
+     * Completed span, referencing the dictionary entries written before it in the same segment.
+     */
+    static final byte SPAN = 4;
+
+    /**
+     * Size of a span record without its type: 11 longs and 6 ints.
+     */
+    static final int SPAN_PAYLOAD_SIZE = 11 * Long.BYTES + 6 * Integer.BYTES;
+
+    private static final String FILE_PREFIX = "spans-";
+
+    private static final String FILE_SUFFIX = ".journal";
+
+    private JournalFormat() {
+    }
+
+    static String fileName(long sequence) {
+        return String.format("%s%020d%s", FILE_PREFIX, sequence, FILE_SUFFIX);
+    }
+
+    /**
+     * @return sequence of a segment file, -1 if the file is not a segment.
+     */
+    static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param directory journal directory.
+     * @return the segment files, oldest first (empty if the directory does not exist).
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> sequenceOf(file) >= 0)
+                    .sorted((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)))
+                    .toList();
+        }
+    }
+
+    static int sizeOf(String value) {
+        return Integer.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
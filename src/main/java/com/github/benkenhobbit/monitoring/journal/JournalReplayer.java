@@ -0,0 +1,241 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.journal;
+
+import com.github.benkenhobbit.monitoring.model.StoredException;
+import com.github.benkenhobbit.monitoring.model.TransactionSpan;
+import com.github.benkenhobbit.monitoring.registry.MethodDescriptor;
+import com.github.benkenhobbit.monitoring.registry.MethodRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Reads back the spans of a {@link SpanJournal}, oldest segment first.
+ * <p>
+ * Methods are resolved again by reflection and registered in the {@link MethodRegistry}, so that the replayed spans
+ * share the descriptors (and the statistics) of the running application: spans of methods that no longer exist are
+ * skipped. A segment is read up to its first empty or corrupted record, which is where the writer stopped.
+ * <p>
+ * The nanosecond timestamps of the journaled spans come from the {@link System#nanoTime()} of the JVM that wrote them,
+ * which has an arbitrary origin. They are rebased on the nanoTime of the running JVM from the wall-clock end time of the
+ * first span of each segment (a segment is written by a single JVM), so that replayed and live spans share one
+ * timeline while keeping their durations and their order within the segment.
+ */
+@Slf4j
+public class JournalReplayer {
+
+    private static final Map<String, Class<?>> PRIMITIVE_TYPES = Map.of(
+            "boolean", boolean.class, "byte", byte.class, "char", char.class, "short", short.class,
+            "int", int.class, "long", long.class, "float", float.class, "double", double.class, "void", void.class);
+
+    private final Path directory;
+
+    private final MethodRegistry methodRegistry;
+
+    private final ClassLoader classLoader;
+
+    private final CRC32 crc = new CRC32();
+
+    private long skippedSpans;
+
+    /**
+     * @param directory directory of the segment files.
+     * @param methodRegistry registry where the journaled methods are resolved.
+     * @param classLoader loader of the monitored classes.
+     */
+    public JournalReplayer(Path directory, MethodRegistry methodRegistry, ClassLoader classLoader) {
+        this.directory = directory;
+        this.methodRegistry = methodRegistry;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * @param consumer called with each replayed span, in journal order.
+     * @return number of replayed spans.
+     */
+    public long replay(Consumer<TransactionSpan> consumer) throws IOException {
+        // nanoTime of the wall-clock epoch in this JVM
+        long nanoOrigin = System.nanoTime() - System.currentTimeMillis() * 1_000_000;
+        long replayed = 0;
+        for (Path file : JournalFormat.segments(directory)) {
+            replayed += replaySegment(file, nanoOrigin, consumer);
+        }
+        return replayed;
+    }
+
+    /**
+     * @return number of spans skipped because their method could not be resolved.
+     */
+    public long getSkippedSpans() {
+        return skippedSpans;
+    }
+
+    private long replaySegment(Path file, long nanoOrigin, Consumer<TransactionSpan> consumer) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = Math.min(channel.size(), Integer.MAX_VALUE);
+            if (size < JournalFormat.FILE_HEADER_SIZE) {
+                return 0;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buffer.getInt() != JournalFormat.MAGIC || buffer.getInt() != JournalFormat.VERSION) {
+            log.warn("Skipping {}: not a transaction journal segment of version {}", file, JournalFormat.VERSION);
+            return 0;
+        }
+
+        // Dictionaries of the segment
+        Map<Integer, MethodDescriptor> methods = new HashMap<>();
+        Map<Integer, ThreadRef> threads = new HashMap<>();
+        Map<Integer, String> exceptionTypes = new HashMap<>();
+        long nanoShift = 0;
+        long replayed = 0;
+        while (buffer.remaining() >= JournalFormat.RECORD_HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            ByteBuffer record = buffer.slice(buffer.position(), length);
+            crc.reset();
+            crc.update(record.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Transaction journal {} is corrupted at offset {}, the rest of the segment is ignored", file, start);
+                break;
+            }
+            buffer.position(buffer.position() + length);
+
+            switch (record.get()) {
+                case JournalFormat.METHOD -> {
+                    int ref = record.getInt();
+                    MethodDescriptor method = resolve(record);
+                    if (method != null) {
+                        methods.put(ref, method);
+                    }
+                }
+                case JournalFormat.THREAD -> threads.put(record.getInt(),
+                        new ThreadRef(record.getLong(), JournalFormat.getString(record)));
+                case JournalFormat.EXCEPTION_TYPE -> exceptionTypes.put(record.getInt(), JournalFormat.getString(record));
+                case JournalFormat.SPAN -> {
+                    TransactionSpan span = readSpan(record, methods, threads, exceptionTypes);
+                    if (span != null) {
+                        if (replayed == 0) {
+                            nanoShift = nanoOrigin + span.getEndTime() * 1_000_000 - span.getEndNanos();
+                        }
+                        span.setStartNanos(span.getStartNanos() + nanoShift);
+                        span.setEndNanos(span.getEndNanos() + nanoShift);
+                        consumer.accept(span);
+                        replayed++;
+                    } else {
+                        skippedSpans++;
+                    }
+                }
+                default -> {
+                    // Unknown record type: written by a newer version, skipped
+                }
+            }
+        }
+        return replayed;
+    }
+
+    private static TransactionSpan readSpan(ByteBuffer record, Map<Integer, MethodDescriptor> methods,
+                                            Map<Integer, ThreadRef> threads, Map<Integer, String> exceptionTypes) {
+        TransactionSpan span = new TransactionSpan();
+        span.setTransactionId(record.getLong());
+        span.setSpanId(record.getInt());
+        span.setParentSpanId(record.getInt());
+        span.setDepth(record.getInt());
+        MethodDescriptor method = methods.get(record.getInt());
+        ThreadRef thread = threads.get(record.getInt());
+        int exceptionRef = record.getInt();
+        if (method == null) {
+            return null;
+        }
+        span.setMethodId(method.getId());
+        span.setMethodName(method.getName());
+        if (thread != null) {
+            span.setThreadId(thread.id());
+            span.setThreadName(thread.name());
+        }
+        if (exceptionRef >= 0) {
+            span.setException(new StoredException(exceptionTypes.getOrDefault(exceptionRef, Exception.class.getName())));
+        }
+        span.setStartTime(record.getLong());
+        span.setStartNanos(record.getLong());
+        span.setEndTime(record.getLong());
+        span.setEndNanos(record.getLong());
+        span.setExecutionTime(record.getLong());
+        span.setSelfTimeNanos(record.getLong());
+        span.setCpuTimeNanos(record.getLong());
+        span.setUserTimeNanos(record.getLong());
+        span.setAllocatedBytes(record.getLong());
+        span.setTotalLoadedClassCount(record.getLong());
+        span.complete();
+        return span;
+    }
+
+    /**
+     * @return the descriptor of the journaled method, null if it does not exist anymore.
+     */
+    private MethodDescriptor resolve(ByteBuffer record) {
+        String className = JournalFormat.getString(record);
+        String methodName = JournalFormat.getString(record);
+        String[] parameterTypeNames = new String[record.getInt()];
+        for (int i = 0; i < parameterTypeNames.length; i++) {
+            parameterTypeNames[i] = JournalFormat.getString(record);
+        }
+        try {
+            Class<?>[] parameterTypes = new Class<?>[parameterTypeNames.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                parameterTypes[i] = loadClass(parameterTypeNames[i]);
+            }
+            return methodRegistry.get(loadClass(className).getDeclaredMethod(methodName, parameterTypes));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.debug("Journaled method {}.{} not found, its spans are skipped", className, methodName);
+            return null;
+        }
+    }
+
+    private Class<?> loadClass(String name) throws ClassNotFoundException {
+        Class<?> primitiveType = PRIMITIVE_TYPES.get(name);
+        return primitiveType != null ? primitiveType : Class.forName(name, false, classLoader);
+    }
+
+    private record ThreadRef(long id, String name) {
+    }
+}
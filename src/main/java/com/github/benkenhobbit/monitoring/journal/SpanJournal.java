@@ -0,0 +1,382 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.journal;
+
+import com.github.benkenhobbit.monitoring.model.StoredException;
+import com.github.benkenhobbit.monitoring.model.TransactionSpan;
+import com.github.benkenhobbit.monitoring.registry.MethodDescriptor;
+import com.github.benkenhobbit.monitoring.registry.MethodRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the completed spans in rolling memory-mapped files (see {@link JournalFormat}).
+ * <p>
+ * It is meant to be an exporter of the event pipeline: spans are only written by the consumer thread, as plain
+ * stores into the mapped segment, so that request threads never wait for the disk. Written records survive a crash of
+ * the process as soon as they are in the mapping; a background thread forces the current segment to the disk
+ * periodically, which bounds what an operating system crash can lose. A new segment is started when the current one
+ * is full or too old, and the oldest segments beyond the limit are deleted.
+ */
+@Slf4j
+public class SpanJournal implements Closeable {
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final long segmentMillis;
+
+    private final int maxSegments;
+
+    private final long forceIntervalMillis;
+
+    private final MethodRegistry methodRegistry;
+
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Current segment, read by the flusher. Its position is the end of the written records.
+     */
+    private volatile MappedByteBuffer segment;
+
+    private long segmentSequence;
+
+    private long segmentOpenedAt;
+
+    // Dictionaries of the current segment (consumer thread only)
+
+    private final BitSet writtenMethods = new BitSet();
+
+    private final Map<ThreadKey, Integer> threadRefs = new HashMap<>();
+
+    private final Map<String, Integer> exceptionTypeRefs = new HashMap<>();
+
+    private final CRC32 crc = new CRC32();
+
+    private ByteBuffer scratch = ByteBuffer.allocate(512);
+
+    /**
+     * @param directory directory of the segment files, created if needed.
+     * @param segmentSize size of each segment file in bytes.
+     * @param segmentMillis maximum time span of a segment in milliseconds, 0 to roll by size only.
+     * @param maxSegments number of segment files to be kept.
+     * @param forceIntervalMillis interval between two forces of the current segment to the disk, 0 to leave it to the
+     *                            operating system.
+     * @param methodRegistry registry of the methods referenced by the spans.
+     */
+    public SpanJournal(Path directory, int segmentSize, long segmentMillis, int maxSegments, long forceIntervalMillis,
+                       MethodRegistry methodRegistry) {
+        if (segmentSize < 4096) {
+            throw new IllegalArgumentException("Journal segment size too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.segmentMillis = segmentMillis;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.forceIntervalMillis = forceIntervalMillis;
+        this.methodRegistry = methodRegistry;
+    }
+
+    /**
+     * Start a new segment after the existing ones: the last segment of a previous run is never appended to, since its
+     * tail may have been torn by a crash.
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = JournalFormat.segments(directory);
+        segmentSequence = segments.isEmpty() ? 0 : JournalFormat.sequenceOf(segments.get(segments.size() - 1));
+        roll();
+        if (forceIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "transaction-monitoring-journal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::forceCurrent, forceIntervalMillis, forceIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Append a batch of completed spans (pipeline consumer thread). Ignored once the journal is closed: the lock,
+     * uncontended but for the closing, keeps the segment mapped until the batch is written.
+     *
+     * @param spans spans to be journaled.
+     */
+    public synchronized void append(List<TransactionSpan> spans) {
+        if (segment == null) {
+            return;
+        }
+        try {
+            for (TransactionSpan span : spans) {
+                append(span);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void append(TransactionSpan span) throws IOException {
+        if (segmentMillis > 0 && System.currentTimeMillis() - segmentOpenedAt >= segmentMillis
+                && segment.position() > JournalFormat.FILE_HEADER_SIZE) {
+            roll();
+        }
+        if (!tryAppend(span)) {
+            // The dictionary records of the span may be left in the full segment, the new one gets its own
+            roll();
+            if (!tryAppend(span)) {
+                throw new IllegalStateException("Span too large for a journal segment of " + segmentSize + " bytes");
+            }
+        }
+    }
+
+    /**
+     * @return false if the current segment is full.
+     */
+    private boolean tryAppend(TransactionSpan span) {
+        MethodDescriptor method = methodRegistry.get(span.getMethodId());
+        if (method == null) {
+            return true;
+        }
+        if (!writtenMethods.get(method.getId())) {
+            if (!writeMethod(method)) {
+                return false;
+            }
+            writtenMethods.set(method.getId());
+        }
+
+        ThreadKey threadKey = new ThreadKey(span.getThreadId(), span.getThreadName());
+        Integer threadRef = threadRefs.get(threadKey);
+        if (threadRef == null) {
+            threadRef = threadRefs.size();
+            if (!writeThread(threadRef, threadKey)) {
+                return false;
+            }
+            threadRefs.put(threadKey, threadRef);
+        }
+
+        int exceptionRef = -1;
+        if (span.getException() != null) {
+            String exceptionType = StoredException.typeOf(span.getException());
+            Integer ref = exceptionTypeRefs.get(exceptionType);
+            if (ref == null) {
+                ref = exceptionTypeRefs.size();
+                if (!writeExceptionType(ref, exceptionType)) {
+                    return false;
+                }
+                exceptionTypeRefs.put(exceptionType, ref);
+            }
+            exceptionRef = ref;
+        }
+
+        ByteBuffer record = startRecord(JournalFormat.SPAN, JournalFormat.SPAN_PAYLOAD_SIZE);
+        record.putLong(span.getTransactionId());
+        record.putInt(span.getSpanId());
+        record.putInt(span.getParentSpanId());
+        record.putInt(span.getDepth());
+        record.putInt(method.getId());
+        record.putInt(threadRef);
+        record.putInt(exceptionRef);
+        record.putLong(span.getStartTime());
+        record.putLong(span.getStartNanos());
+        record.putLong(span.getEndTime());
+        record.putLong(span.getEndNanos());
+        record.putLong(span.getExecutionTime());
+        record.putLong(span.getSelfTimeNanos());
+        record.putLong(span.getCpuTimeNanos());
+        record.putLong(span.getUserTimeNanos());
+        record.putLong(span.getAllocatedBytes());
+        record.putLong(span.getTotalLoadedClassCount());
+        return commitRecord();
+    }
+
+    private boolean writeMethod(MethodDescriptor method) {
+        Method reflectedMethod = method.getMethod();
+        Class<?>[] parameterTypes = reflectedMethod.getParameterTypes();
+        int size = 2 * Integer.BYTES + JournalFormat.sizeOf(reflectedMethod.getDeclaringClass().getName())
+                + JournalFormat.sizeOf(reflectedMethod.getName());
+        for (Class<?> parameterType : parameterTypes) {
+            size += JournalFormat.sizeOf(parameterType.getName());
+        }
+        ByteBuffer record = startRecord(JournalFormat.METHOD, size);
+        record.putInt(method.getId());
+        JournalFormat.putString(record, reflectedMethod.getDeclaringClass().getName());
+        JournalFormat.putString(record, reflectedMethod.getName());
+        record.putInt(parameterTypes.length);
+        for (Class<?> parameterType : parameterTypes) {
+            JournalFormat.putString(record, parameterType.getName());
+        }
+        return commitRecord();
+    }
+
+    private boolean writeThread(int ref, ThreadKey thread) {
+        String name = thread.name() != null ? thread.name() : "";
+        ByteBuffer record = startRecord(JournalFormat.THREAD, Integer.BYTES + Long.BYTES + JournalFormat.sizeOf(name));
+        record.putInt(ref);
+        record.putLong(thread.id());
+        JournalFormat.putString(record, name);
+        return commitRecord();
+    }
+
+    private boolean writeExceptionType(int ref, String exceptionType) {
+        ByteBuffer record = startRecord(JournalFormat.EXCEPTION_TYPE, Integer.BYTES + JournalFormat.sizeOf(exceptionType));
+        record.putInt(ref);
+        JournalFormat.putString(record, exceptionType);
+        return commitRecord();
+    }
+
+    private ByteBuffer startRecord(byte type, int payloadSize) {
+        if (scratch.capacity() < payloadSize + 1) {
+            scratch = ByteBuffer.allocate(Math.max(payloadSize + 1, scratch.capacity() * 2));
+        }
+        scratch.clear();
+        scratch.put(type);
+        return scratch;
+    }
+
+    /**
+     * Copy the record to the segment: CRC and body first, the length last, so that a reader never sees a length
+     * before its record.
+     *
+     * @return false if the record does not fit in the current segment.
+     */
+    private boolean commitRecord() {
+        scratch.flip();
+        int length = scratch.remaining();
+        MappedByteBuffer current = segment;
+        int position = current.position();
+        if (position + JournalFormat.RECORD_HEADER_SIZE + length > current.capacity()) {
+            return false;
+        }
+        crc.reset();
+        crc.update(scratch.duplicate());
+        current.put(position + JournalFormat.RECORD_HEADER_SIZE, scratch, 0, length);
+        current.putInt(position + Integer.BYTES, (int) crc.getValue());
+        current.putInt(position, length);
+        current.position(position + JournalFormat.RECORD_HEADER_SIZE + length);
+        return true;
+    }
+
+    /**
+     * Close the current segment and map a new one.
+     */
+    private void roll() throws IOException {
+        MappedByteBuffer previous = segment;
+        if (previous != null) {
+            forceLater(previous);
+        }
+        segmentSequence++;
+        Path file = directory.resolve(JournalFormat.fileName(segmentSequence));
+        MappedByteBuffer next;
+        // The mapping stays valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            next = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        next.putInt(JournalFormat.MAGIC);
+        next.putInt(JournalFormat.VERSION);
+        segment = next;
+        segmentOpenedAt = System.currentTimeMillis();
+        writtenMethods.clear();
+        threadRefs.clear();
+        exceptionTypeRefs.clear();
+        deleteOldSegments();
+    }
+
+    private void deleteOldSegments() throws IOException {
+        List<Path> segments = JournalFormat.segments(directory);
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /**
+     * Force a closed segment on the flusher thread, or leave it to the operating system.
+     */
+    private void forceLater(MappedByteBuffer closedSegment) {
+        ScheduledExecutorService executor = flusher;
+        if (executor != null) {
+            executor.execute(closedSegment::force);
+        }
+    }
+
+    private void forceCurrent() {
+        MappedByteBuffer current = segment;
+        if (current != null) {
+            try {
+                current.force();
+            } catch (UncheckedIOException e) {
+                log.warn("Transaction journal force failed", e);
+            }
+        }
+    }
+
+    /**
+     * @return directory of the segment files.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Stop appending and force the current segment. A batch being appended is written first, later ones are ignored.
+     */
+    @Override
+    public synchronized void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        forceCurrent();
+        segment = null;
+    }
+
+    private record ThreadKey(long id, String name) {
+    }
+}
@@ -0,0 +1,338 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.metrics;
+
+import com.github.benkenhobbit.monitoring.aspect.TransactionMonitoringAspect;
+import com.github.benkenhobbit.monitoring.config.TransactionMonitoringConfiguration;
+import com.github.benkenhobbit.monitoring.model.MethodStats;
+import com.github.benkenhobbit.monitoring.model.TransactionThreadStats;
+import com.github.benkenhobbit.monitoring.registry.MethodDescriptor;
+import com.github.benkenhobbit.monitoring.stats.LatencyHistogram;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes the statistics of the monitoring aspect as Micrometer meters (scraped by Prometheus through the actuator).
+ * <p>
+ * The meters are functions of the aggregates the aspect already keeps: nothing is recorded twice on the monitored
+ * threads, and a scrape only reads {@link java.util.concurrent.atomic.LongAdder}s, atomics and the counters of the
+ * {@link LatencyHistogram}s, without any lock. By method:
+ * <ul>
+ * <li><i>transaction.calls</i>, <i>transaction.errors</i>: counters of the completed and failed invocations;</li>
+ * <li><i>transaction.duration</i>: timer (count and total time), with the <i>transaction.duration.percentile</i>
+ * gauges (quantile tag 0.5, 0.9, 0.99, 0.999) and <i>transaction.duration.max</i> computed from the histogram;</li>
+ * <li><i>transaction.cpu.time</i>, <i>transaction.user.time</i>, <i>transaction.allocated</i>: counters of the
+ * consumed resources, their rate gives the CPU and allocation deltas.</li>
+ * </ul>
+ * With per-thread statistics, <i>transaction.thread.calls</i> and <i>transaction.thread.duration</i> are tagged by
+ * thread and method.
+ * <p>
+ * Methods and threads appear at runtime, so the meters are registered by a periodic refresh. The number of tag values
+ * is bounded: methods beyond <i>maxMethods</i> names are merged in the {@value #OTHER} series, threads beyond
+ * <i>maxThreads</i> are not published. The meters of a thread are removed once its statistics are retired.
+ */
+@Component
+@Slf4j
+public class TransactionMetricsBinder implements MeterBinder, Closeable {
+
+    /**
+     * Method tag of the methods beyond the cardinality limit.
+     */
+    public static final String OTHER = "OTHER";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Supplier<List<MethodDescriptor>> methods;
+
+    private final Supplier<Map<String, Map<MethodDescriptor, TransactionThreadStats>>> threadStats;
+
+    private final int maxMethods;
+
+    private final int maxThreads;
+
+    private final long refreshInterval;
+
+    /**
+     * Method tag -> statistics of the methods sharing it (overloads, or all the methods beyond the limit).
+     */
+    private final Map<String, MethodSeries> methodSeries = new HashMap<>();
+
+    /**
+     * Number of methods (in id order) already assigned to a series.
+     */
+    private int boundMethods;
+
+    /**
+     * Thread key -> published statistics map and meters: a new map for the same key (after a reset) replaces the meters.
+     */
+    private final Map<String, ThreadMeters> threadMeters = new HashMap<>();
+
+    private MeterRegistry registry;
+
+    private ScheduledExecutorService refresher;
+
+    /**
+     * Constructor injection
+     * @param monitoringAspect
+     * @param monitoringConfiguration
+     */
+    @Autowired
+    public TransactionMetricsBinder(TransactionMonitoringAspect monitoringAspect,
+                                    TransactionMonitoringConfiguration monitoringConfiguration) {
+        this(monitoringAspect::getMethods, monitoringAspect::getThreadStats,
+                monitoringConfiguration.getMetricsMaxMethods(),
+                monitoringConfiguration.getMetricsMaxThreads(),
+                monitoringConfiguration.getMetricsRefreshInterval());
+    }
+
+    /**
+     * @param methods registered methods, in id order (a method keeps its position).
+     * @param threadStats thread key -> (method -> statistics).
+     * @param maxMethods maximum number of method tag values, {@value #OTHER} included.
+     * @param maxThreads maximum number of thread tag values.
+     * @param refreshInterval interval between two registrations of the new methods and threads in milliseconds, 0 to
+     *                        refresh only on demand.
+     */
+    TransactionMetricsBinder(Supplier<List<MethodDescriptor>> methods,
+                             Supplier<Map<String, Map<MethodDescriptor, TransactionThreadStats>>> threadStats,
+                             int maxMethods, int maxThreads, long refreshInterval) {
+        this.methods = methods;
+        this.threadStats = threadStats;
+        this.maxMethods = Math.max(1, maxMethods);
+        this.maxThreads = Math.max(0, maxThreads);
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Bind to a single registry (further registries are ignored) and start the periodic refresh.
+     */
+    @Override
+    public synchronized void bindTo(MeterRegistry registry) {
+        if (this.registry != null) {
+            log.warn("Transaction metrics are already bound to {}, {} is ignored", this.registry, registry);
+            return;
+        }
+        this.registry = registry;
+        refresh();
+        if (refreshInterval > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "transaction-monitoring-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Register the meters of the new methods and threads, remove those of the retired threads.
+     */
+    public synchronized void refresh() {
+        if (registry == null) {
+            return;
+        }
+        refreshMethods();
+        refreshThreads();
+    }
+
+    private void refreshMethods() {
+        List<MethodDescriptor> registered = methods.get();
+        for (int i = boundMethods; i < registered.size(); i++) {
+            MethodDescriptor method = registered.get(i);
+            String tag = method.getName();
+            // The last tag value is kept for the overflow series
+            if (!methodSeries.containsKey(tag) && methodSeries.size() >= maxMethods - 1) {
+                tag = OTHER;
+            }
+            methodSeries.computeIfAbsent(tag, this::registerMethodSeries).stats.add(method.getStats());
+        }
+        boundMethods = registered.size();
+    }
+
+    private MethodSeries registerMethodSeries(String method) {
+        MethodSeries series = new MethodSeries();
+        FunctionCounter.builder("transaction.calls", series, s -> s.sum(MethodStats::getCounter))
+                .tag("method", method)
+                .description("Completed invocations of the monitored method")
+                .register(registry);
+        FunctionCounter.builder("transaction.errors", series, s -> s.sum(MethodStats::getErrors))
+                .tag("method", method)
+                .description("Invocations of the monitored method ending with an exception")
+                .register(registry);
+        FunctionTimer.builder("transaction.duration", series,
+                        s -> s.sum(MethodStats::getCounter), s -> s.sum(MethodStats::getTotalTime), TimeUnit.NANOSECONDS)
+                .tag("method", method)
+                .description("Execution time of the monitored method")
+                .register(registry);
+        for (double quantile : QUANTILES) {
+            TimeGauge.builder("transaction.duration.percentile", series, TimeUnit.NANOSECONDS,
+                            s -> s.percentile(quantile * 100))
+                    .tags("method", method, "quantile", Double.toString(quantile))
+                    .description("Execution time percentile of the monitored method")
+                    .register(registry);
+        }
+        TimeGauge.builder("transaction.duration.max", series, TimeUnit.NANOSECONDS, s -> s.max())
+                .tag("method", method)
+                .description("Highest execution time of the monitored method")
+                .register(registry);
+        FunctionCounter.builder("transaction.cpu.time", series, s -> s.sum(MethodStats::getCpuTime) / 1e9)
+                .tag("method", method)
+                .baseUnit(BaseUnits.SECONDS)
+                .description("CPU time consumed by the monitored method")
+                .register(registry);
+        FunctionCounter.builder("transaction.user.time", series, s -> s.sum(MethodStats::getUserTime) / 1e9)
+                .tag("method", method)
+                .baseUnit(BaseUnits.SECONDS)
+                .description("User-mode CPU time consumed by the monitored method")
+                .register(registry);
+        FunctionCounter.builder("transaction.allocated", series, s -> s.sum(MethodStats::getAllocatedBytes))
+                .tag("method", method)
+                .baseUnit(BaseUnits.BYTES)
+                .description("Memory allocated by the monitored method")
+                .register(registry);
+        return series;
+    }
+
+    private void refreshThreads() {
+        Map<String, Map<MethodDescriptor, TransactionThreadStats>> current = threadStats.get();
+        // Retired threads, or threads whose statistics were reset
+        threadMeters.entrySet().removeIf(entry -> {
+            if (current.get(entry.getKey()) == entry.getValue().stats) {
+                return false;
+            }
+            entry.getValue().meters.forEach(registry::remove);
+            return true;
+        });
+        for (Map.Entry<String, Map<MethodDescriptor, TransactionThreadStats>> entry : current.entrySet()) {
+            ThreadMeters meters = threadMeters.get(entry.getKey());
+            if (meters == null) {
+                if (threadMeters.size() >= maxThreads) {
+                    continue;
+                }
+                meters = new ThreadMeters(entry.getValue());
+                threadMeters.put(entry.getKey(), meters);
+            }
+            for (Map.Entry<MethodDescriptor, TransactionThreadStats> methodEntry : entry.getValue().entrySet()) {
+                MethodDescriptor method = methodEntry.getKey();
+                // Methods beyond the limit and overloads are not published by thread
+                MethodSeries series = methodSeries.get(method.getName());
+                if (series != null && meters.methodNames.add(method.getName())) {
+                    registerThreadMeters(meters, entry.getKey(), method.getName(), methodEntry.getValue());
+                }
+            }
+        }
+    }
+
+    private void registerThreadMeters(ThreadMeters meters, String thread, String method, TransactionThreadStats stats) {
+        meters.meters.add(FunctionCounter.builder("transaction.thread.calls", stats, s -> s.getCounter().get())
+                .tags("thread", thread, "method", method)
+                .description("Completed invocations of the monitored method by thread")
+                .register(registry));
+        meters.meters.add(FunctionTimer.builder("transaction.thread.duration", stats,
+                        s -> s.getCounter().get(), s -> s.getTimes().get(), TimeUnit.MILLISECONDS)
+                .tags("thread", thread, "method", method)
+                .description("Execution time of the monitored method by thread")
+                .register(registry));
+    }
+
+    /**
+     * Statistics of the methods sharing a tag value: read on scrape, appended to by the refresh only.
+     */
+    private static final class MethodSeries {
+
+        private final List<MethodStats> stats = new CopyOnWriteArrayList<>();
+
+        long sum(ToLongFunction<MethodStats> value) {
+            long sum = 0;
+            for (MethodStats methodStats : stats) {
+                sum += value.applyAsLong(methodStats);
+            }
+            return sum;
+        }
+
+        double percentile(double percentile) {
+            if (stats.size() == 1) {
+                return stats.get(0).getLatency().getValueAtPercentile(percentile);
+            }
+            LatencyHistogram merged = new LatencyHistogram();
+            for (MethodStats methodStats : stats) {
+                merged.add(methodStats.getLatency());
+            }
+            return merged.getValueAtPercentile(percentile);
+        }
+
+        double max() {
+            long max = 0;
+            for (MethodStats methodStats : stats) {
+                max = Math.max(max, methodStats.getMaxTime());
+            }
+            return max;
+        }
+    }
+
+    private static final class ThreadMeters {
+
+        private final Map<MethodDescriptor, TransactionThreadStats> stats;
+
+        private final Set<String> methodNames = new HashSet<>();
+
+        private final List<Meter> meters = new ArrayList<>();
+
+        private ThreadMeters(Map<MethodDescriptor, TransactionThreadStats> stats) {
+            this.stats = stats;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.github.benkenhobbit.monitoring.correlation.TransactionIdGenerator;
+
+/**
+ * Snapshot of a monitored invocation still running.
+ */
+public class InFlightSpan {
+
+    private final long threadId;
+
+    private final String threadName;
+
+    private final long transactionId;
+
+    private final String methodName;
+
+    private final int depth;
+
+    private final long startNanos;
+
+    private final long runningMillis;
+
+    public InFlightSpan(long threadId, String threadName, long transactionId, String methodName, int depth,
+                        long startNanos, long runningMillis) {
+        this.threadId = threadId;
+        this.threadName = threadName;
+        this.transactionId = transactionId;
+        this.methodName = methodName;
+        this.depth = depth;
+        this.startNanos = startNanos;
+        this.runningMillis = runningMillis;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    @JsonIgnore
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * @return the correlation ID rendered as text.
+     */
+    public String getCurrentTransactionId() {
+        return TransactionIdGenerator.format(transactionId);
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * @return 0 for the root invocation, 1 for the invocations it calls and so on.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return start of the invocation ({@link System#nanoTime()}).
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * @return time elapsed since the start of the invocation when the snapshot was taken.
+     */
+    public long getRunningMillis() {
+        return runningMillis;
+    }
+}
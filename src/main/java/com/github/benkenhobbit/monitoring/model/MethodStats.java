@@ -0,0 +1,152 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.model;
+
+import com.github.benkenhobbit.monitoring.stats.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Global statistics of a method, shared by all the threads.
+ * Sums are striped {@link LongAdder}s, so that popular methods called by many threads do not turn into CAS hot spots.
+ */
+public class MethodStats {
+
+    private final LongAdder counter = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Total execution time in nanoseconds.
+     */
+    private final LongAdder totalTime = new LongAdder();
+
+    /**
+     * Total CPU time in nanoseconds.
+     */
+    private final LongAdder cpuTime = new LongAdder();
+
+    /**
+     * Total user-mode CPU time in nanoseconds.
+     */
+    private final LongAdder userTime = new LongAdder();
+
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    private final AtomicLong minTime = new AtomicLong(Long.MAX_VALUE);
+
+    private final AtomicLong maxTime = new AtomicLong();
+
+    /**
+     * Execution time distribution in nanoseconds.
+     */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Record a completed invocation.
+     *
+     * @param executionTime execution time in nanoseconds.
+     * @param cpuTime CPU time in nanoseconds.
+     * @param userTime user-mode CPU time in nanoseconds.
+     * @param allocatedBytes allocated bytes.
+     * @param error true if the invocation ended with an exception.
+     */
+    public void record(long executionTime, long cpuTime, long userTime, long allocatedBytes, boolean error) {
+        counter.increment();
+        if (error) {
+            errors.increment();
+        }
+        this.totalTime.add(executionTime);
+        this.cpuTime.add(cpuTime);
+        this.userTime.add(userTime);
+        this.allocatedBytes.add(allocatedBytes);
+        // Min and max rarely change: read first to avoid useless CAS
+        if (executionTime < minTime.get()) {
+            minTime.accumulateAndGet(executionTime, Math::min);
+        }
+        if (executionTime > maxTime.get()) {
+            maxTime.accumulateAndGet(executionTime, Math::max);
+        }
+        latency.record(executionTime);
+    }
+
+    /**
+     * Clear all the statistics.
+     */
+    public void reset() {
+        counter.reset();
+        errors.reset();
+        totalTime.reset();
+        cpuTime.reset();
+        userTime.reset();
+        allocatedBytes.reset();
+        minTime.set(Long.MAX_VALUE);
+        maxTime.set(0);
+        latency.reset();
+    }
+
+    public long getCounter() {
+        return counter.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getTotalTime() {
+        return totalTime.sum();
+    }
+
+    public long getCpuTime() {
+        return cpuTime.sum();
+    }
+
+    public long getUserTime() {
+        return userTime.sum();
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    /**
+     * @return the fastest execution time in nanoseconds, 0 if nothing was recorded.
+     */
+    public long getMinTime() {
+        long min = minTime.get();
+        return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    public long getMaxTime() {
+        return maxTime.get();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.github.benkenhobbit.monitoring.correlation.TransactionIdGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Node of the call tree of a transaction: one monitored invocation and the monitored invocations it called.
+ */
+public class SpanNode {
+
+    private final long transactionId;
+
+    private final int spanId;
+
+    private final int parentSpanId;
+
+    private final int depth;
+
+    private final long threadId;
+
+    private final String threadName;
+
+    private final String methodName;
+
+    private final long startTime;
+
+    private final long executionTimeNanos;
+
+    private final long selfTimeNanos;
+
+    private final String exception;
+
+    /**
+     * Share of the execution time of the parent span spent in this one, in percent (100 for a root).
+     */
+    private float parentShare = 100;
+
+    private final List<SpanNode> children = new ArrayList<>();
+
+    SpanNode(TransactionSpan span) {
+        this.transactionId = span.getTransactionId();
+        this.spanId = span.getSpanId();
+        this.parentSpanId = span.getParentSpanId();
+        this.depth = span.getDepth();
+        this.threadId = span.getThreadId();
+        this.threadName = span.getThreadName();
+        this.methodName = span.getMethodName();
+        this.startTime = span.getStartTime();
+        this.executionTimeNanos = span.getEndNanos() - span.getStartNanos();
+        this.selfTimeNanos = span.getSelfTimeNanos();
+        this.exception = span.getException() != null ? span.getException().toString() : null;
+    }
+
+    void addChild(SpanNode child) {
+        child.parentShare = executionTimeNanos > 0 ? (float) child.executionTimeNanos * 100 / executionTimeNanos : 0;
+        children.add(child);
+    }
+
+    @JsonIgnore
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * @return the correlation ID rendered as text.
+     */
+    public String getCurrentTransactionId() {
+        return TransactionIdGenerator.format(transactionId);
+    }
+
+    public int getSpanId() {
+        return spanId;
+    }
+
+    public int getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getExecutionTimeNanos() {
+        return executionTimeNanos;
+    }
+
+    /**
+     * @return execution time minus the time spent in the monitored invocations called by this one, in nanoseconds.
+     */
+    public long getSelfTimeNanos() {
+        return selfTimeNanos;
+    }
+
+    /**
+     * @return the exception thrown by the invocation, null if it succeeded.
+     */
+    public String getException() {
+        return exception;
+    }
+
+    public float getParentShare() {
+        return parentShare;
+    }
+
+    public List<SpanNode> getChildren() {
+        return children;
+    }
+}
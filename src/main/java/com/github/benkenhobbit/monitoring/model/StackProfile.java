@@ -0,0 +1,92 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mini flame profile of one slow invocation: the stack samples taken by the watchdog while it was running, merged in
+ * the collapsed stack format (frames from the outermost to the innermost separated by ';', with their sample count),
+ * which flame graph tools read as is.
+ * <p>
+ * Filled by the watchdog thread and read by anyone: the accessors return copies.
+ */
+public class StackProfile {
+
+    private final long intervalMillis;
+
+    private int samples;
+
+    private final Map<String, Integer> stacks = new HashMap<>();
+
+    /**
+     * @param intervalMillis sampling interval in milliseconds.
+     */
+    public StackProfile(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Add a sample.
+     *
+     * @param stack stack of the thread, innermost frame first (as returned by the JVM).
+     */
+    public synchronized void add(StackTraceElement[] stack) {
+        StringBuilder sb = new StringBuilder(stack.length * 48);
+        for (int i = stack.length - 1; i >= 0; i--) {
+            sb.append(stack[i].getClassName()).append('.').append(stack[i].getMethodName());
+            if (i > 0) {
+                sb.append(';');
+            }
+        }
+        stacks.merge(sb.toString(), 1, Integer::sum);
+        samples++;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public synchronized int getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return collapsed stack -> number of samples, the most sampled stack first.
+     */
+    public synchronized Map<String, Integer> getStacks() {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(stacks.entrySet());
+        entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        Map<String, Integer> sorted = new LinkedHashMap<>();
+        entries.forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+}
@@ -26,11 +26,18 @@
  */
 package com.github.benkenhobbit.monitoring.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.github.benkenhobbit.monitoring.aspect.TransactionMonitoringAspect;
+import com.github.benkenhobbit.monitoring.correlation.TransactionIdGenerator;
 
 public class TransactionEvent {
 
-    private String currentTransactionId;
+    private long transactionId;
+
+    /**
+     * Sequence of the span of the event: the events of a span share it (see {@link TransactionSpan#getSequence()}).
+     */
+    private long sequence;
 
     private long threadId;
 
@@ -38,10 +45,23 @@ public class TransactionEvent {
 
     private String methodName;
 
+    private int methodId;
+
+    private int spanId;
+
+    private int parentSpanId;
+
+    private int depth;
+
     private long startTime;
 
     private long executionTime;
 
+    /**
+     * Execution time minus the time spent in nested monitored invocations, in milliseconds.
+     */
+    private float selfTime;
+
     private TransactionMonitoringAspect.TransactionEventType eventType;
 
     private Exception exception;
@@ -51,20 +71,41 @@ public class TransactionEvent {
      */
     private StackTraceElement[] stackTrace;
 
+    /**
+     * Stack samples of a slow invocation (COMPLETE event only), null otherwise.
+     */
+    private StackProfile profile;
+
     private long totalLoadedClassCount;
 
     private float cpuTime;
 
     private float userTime;
 
-    private String allocatedMemory;
+    private long allocatedBytes;
+
+    @JsonIgnore
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    public void setTransactionId(long transactionId) {
+        this.transactionId = transactionId;
+    }
 
+    /**
+     * @return the correlation ID rendered as text.
+     */
     public String getCurrentTransactionId() {
-        return currentTransactionId;
+        return TransactionIdGenerator.format(transactionId);
+    }
+
+    public long getSequence() {
+        return sequence;
     }
 
-    public void setCurrentTransactionId(String currentTransactionId) {
-        this.currentTransactionId = currentTransactionId;
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
     }
 
     public long getThreadId() {
@@ -91,6 +132,38 @@ public class TransactionEvent {
         this.methodName = methodName;
     }
 
+    public int getMethodId() {
+        return methodId;
+    }
+
+    public void setMethodId(int methodId) {
+        this.methodId = methodId;
+    }
+
+    public int getSpanId() {
+        return spanId;
+    }
+
+    public void setSpanId(int spanId) {
+        this.spanId = spanId;
+    }
+
+    public int getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public void setParentSpanId(int parentSpanId) {
+        this.parentSpanId = parentSpanId;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
     public long getStartTime() {
         return startTime;
     }
@@ -107,6 +180,14 @@ public class TransactionEvent {
         this.executionTime = executionTime;
     }
 
+    public float getSelfTime() {
+        return selfTime;
+    }
+
+    public void setSelfTime(float selfTime) {
+        this.selfTime = selfTime;
+    }
+
     public TransactionMonitoringAspect.TransactionEventType getEventType() {
         return eventType;
     }
@@ -131,6 +212,14 @@ public class TransactionEvent {
         this.stackTrace = stackTrace;
     }
 
+    public StackProfile getProfile() {
+        return profile;
+    }
+
+    public void setProfile(StackProfile profile) {
+        this.profile = profile;
+    }
+
     public long getTotalLoadedClassCount() {
         return totalLoadedClassCount;
     }
@@ -155,11 +244,11 @@ public class TransactionEvent {
         this.userTime = userTime;
     }
 
-    public String getAllocatedMemory() {
-        return allocatedMemory;
+    public long getAllocatedBytes() {
+        return allocatedBytes;
     }
 
-    public void setAllocatedMemory(String allocatedMemory) {
-        this.allocatedMemory = allocatedMemory;
+    public void setAllocatedBytes(long allocatedBytes) {
+        this.allocatedBytes = allocatedBytes;
     }
 }
\ No newline at end of file
@@ -0,0 +1,445 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.model;
+
+import com.github.benkenhobbit.monitoring.aspect.TransactionMonitoringAspect;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact record of one monitored invocation.
+ * <p>
+ * A single span is allocated per invocation and filled in place: the START, COMPLETE and ERROR
+ * {@link TransactionEvent}s are only derived from it when somebody reads the timeline.
+ * Fields are written by the invoking thread only; {@link #complete()} publishes them to readers.
+ */
+public class TransactionSpan {
+
+    /**
+     * Correlation ID of the root transaction (see {@link com.github.benkenhobbit.monitoring.correlation.TransactionIdGenerator}).
+     */
+    private long transactionId;
+
+    /**
+     * Position of the span in the capture order, assigned by the pipeline consumer when the span is stored (from 1).
+     * It is the cursor of the incremental reads.
+     */
+    private long sequence;
+
+    private long threadId;
+
+    private String threadName;
+
+    private String methodName;
+
+    private int methodId;
+
+    /**
+     * Id of the span within its transaction (the root span is 1).
+     */
+    private int spanId;
+
+    /**
+     * Id of the calling span, 0 for the root span.
+     */
+    private int parentSpanId;
+
+    /**
+     * Nesting level of the invocation, 0 for the root span.
+     */
+    private int depth;
+
+    private long startTime;
+
+    private long startNanos;
+
+    private long endTime;
+
+    private long endNanos;
+
+    private long executionTime;
+
+    private Exception exception;
+
+    /**
+     * Not used yet. This could be used in the future if needed.
+     */
+    private StackTraceElement[] stackTrace;
+
+    /**
+     * Stack samples taken by the watchdog while the invocation was slow, null otherwise.
+     */
+    private StackProfile profile;
+
+    private long totalLoadedClassCount;
+
+    /**
+     * CPU time consumed by the invocation (delta of the thread counter), in nanoseconds.
+     */
+    private long cpuTimeNanos;
+
+    /**
+     * User-mode CPU time consumed by the invocation (delta of the thread counter), in nanoseconds.
+     */
+    private long userTimeNanos;
+
+    /**
+     * Bytes allocated by the invocation (delta of the thread counter).
+     */
+    private long allocatedBytes;
+
+    /**
+     * Execution time minus the time spent in the monitored invocations called by this one, in nanoseconds.
+     */
+    private long selfTimeNanos;
+
+    private volatile boolean completed;
+
+    /**
+     * Mark the span as completed. Must be called after all end-of-invocation fields have been set.
+     */
+    public void complete() {
+        completed = true;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * @param startTime start of the range in milliseconds (inclusive).
+     * @param endTime end of the range in milliseconds (inclusive).
+     * @return true if the invocation was running at some point of the range.
+     */
+    public boolean overlaps(long startTime, long endTime) {
+        return this.startTime <= endTime && this.endTime >= startTime;
+    }
+
+    /**
+     * Derive the events of this span: START, then ERROR and COMPLETE once the span is completed.
+     *
+     * @return the events of the span in chronological order.
+     */
+    public List<TransactionEvent> toEvents() {
+        List<TransactionEvent> events = new ArrayList<>(3);
+        boolean ended = completed;
+        events.add(toEvent(TransactionMonitoringAspect.TransactionEventType.START));
+        if (ended) {
+            if (exception != null) {
+                events.add(toEvent(TransactionMonitoringAspect.TransactionEventType.ERROR));
+            }
+            events.add(toEvent(TransactionMonitoringAspect.TransactionEventType.COMPLETE));
+        }
+        return events;
+    }
+
+    /**
+     * Derive the events of several spans and merge them in chronological order.
+     * The order uses the nanosecond clock, so nested spans keep their nesting even within the same millisecond.
+     *
+     * @param spans spans to be expanded.
+     * @return the events of all the spans in chronological order.
+     */
+    public static List<TransactionEvent> toTimeline(Collection<TransactionSpan> spans) {
+        List<TimedEvent> timedEvents = new ArrayList<>(spans.size() * 2);
+        for (TransactionSpan span : spans) {
+            for (TransactionEvent event : span.toEvents()) {
+                long nanos = event.getEventType() == TransactionMonitoringAspect.TransactionEventType.START
+                        ? span.startNanos : span.endNanos;
+                timedEvents.add(new TimedEvent(nanos, event));
+            }
+        }
+        timedEvents.sort(Comparator.comparingLong(TimedEvent::nanos)
+                .thenComparing(timedEvent -> timedEvent.event().getEventType() == TransactionMonitoringAspect.TransactionEventType.COMPLETE));
+        List<TransactionEvent> timeline = new ArrayList<>(timedEvents.size());
+        for (TimedEvent timedEvent : timedEvents) {
+            timeline.add(timedEvent.event());
+        }
+        return timeline;
+    }
+
+    /**
+     * Derive the events of several spans within a time range, in chronological order. A span overlapping the range
+     * may contribute only some of its events (e.g. its START but not its COMPLETE), so the range applies to the events.
+     *
+     * @param spans spans overlapping the range.
+     * @param startTime start time of the range (inclusive), in milliseconds.
+     * @param endTime end time of the range (inclusive), in milliseconds.
+     * @return the events of the spans which happened within the range.
+     */
+    public static List<TransactionEvent> toTimeline(Collection<TransactionSpan> spans, long startTime, long endTime) {
+        List<TransactionEvent> events = toTimeline(spans);
+        events.removeIf(event -> event.getStartTime() < startTime || event.getStartTime() > endTime);
+        return events;
+    }
+
+    /**
+     * Build the call tree of the spans of one transaction in O(spans).
+     * Spans whose parent is not available (evicted or not captured) become roots themselves.
+     *
+     * @param spans spans of a single transaction.
+     * @return the root nodes, in start order.
+     */
+    public static List<SpanNode> toCallTree(Collection<TransactionSpan> spans) {
+        List<TransactionSpan> sortedSpans = new ArrayList<>(spans);
+        sortedSpans.sort(Comparator.comparingLong(span -> span.startNanos));
+        Map<Integer, SpanNode> nodes = new HashMap<>(sortedSpans.size() * 2);
+        for (TransactionSpan span : sortedSpans) {
+            nodes.put(span.spanId, new SpanNode(span));
+        }
+        List<SpanNode> roots = new ArrayList<>();
+        for (TransactionSpan span : sortedSpans) {
+            SpanNode node = nodes.get(span.spanId);
+            SpanNode parent = span.parentSpanId != 0 ? nodes.get(span.parentSpanId) : null;
+            if (parent != null) {
+                parent.addChild(node);
+            } else {
+                roots.add(node);
+            }
+        }
+        return roots;
+    }
+
+    private TransactionEvent toEvent(TransactionMonitoringAspect.TransactionEventType eventType) {
+        TransactionEvent event = new TransactionEvent();
+        event.setTransactionId(transactionId);
+        event.setSequence(sequence);
+        event.setThreadId(threadId);
+        event.setThreadName(threadName);
+        event.setMethodName(methodName);
+        event.setMethodId(methodId);
+        event.setSpanId(spanId);
+        event.setParentSpanId(parentSpanId);
+        event.setDepth(depth);
+        event.setEventType(eventType);
+        switch (eventType) {
+            case START -> {
+                event.setStartTime(startTime);
+                event.setStackTrace(stackTrace);
+            }
+            case ERROR -> {
+                event.setStartTime(endTime);
+                event.setException(exception);
+            }
+            case COMPLETE -> {
+                event.setStartTime(endTime);
+                event.setExecutionTime(executionTime);
+                event.setSelfTime((float) selfTimeNanos / 1_000_000);
+                event.setCpuTime((float) cpuTimeNanos / 1_000_000);
+                event.setUserTime((float) userTimeNanos / 1_000_000);
+                event.setAllocatedBytes(allocatedBytes);
+                event.setTotalLoadedClassCount(totalLoadedClassCount);
+                event.setProfile(profile);
+            }
+        }
+        return event;
+    }
+
+    private record TimedEvent(long nanos, TransactionEvent event) {
+    }
+
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    public void setTransactionId(long transactionId) {
+        this.transactionId = transactionId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public void setThreadId(long threadId) {
+        this.threadId = threadId;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public void setThreadName(String threadName) {
+        this.threadName = threadName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public void setMethodName(String methodName) {
+        this.methodName = methodName;
+    }
+
+    public int getMethodId() {
+        return methodId;
+    }
+
+    public void setMethodId(int methodId) {
+        this.methodId = methodId;
+    }
+
+    public int getSpanId() {
+        return spanId;
+    }
+
+    public void setSpanId(int spanId) {
+        this.spanId = spanId;
+    }
+
+    public int getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public void setParentSpanId(int parentSpanId) {
+        this.parentSpanId = parentSpanId;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public long getSelfTimeNanos() {
+        return selfTimeNanos;
+    }
+
+    public void setSelfTimeNanos(long selfTimeNanos) {
+        this.selfTimeNanos = selfTimeNanos;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public void setStartNanos(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(long endTime) {
+        this.endTime = endTime;
+    }
+
+    public long getEndNanos() {
+        return endNanos;
+    }
+
+    public void setEndNanos(long endNanos) {
+        this.endNanos = endNanos;
+    }
+
+    public long getExecutionTime() {
+        return executionTime;
+    }
+
+    public void setExecutionTime(long executionTime) {
+        this.executionTime = executionTime;
+    }
+
+    public Exception getException() {
+        return exception;
+    }
+
+    public void setException(Exception exception) {
+        this.exception = exception;
+    }
+
+    public StackTraceElement[] getStackTrace() {
+        return stackTrace;
+    }
+
+    public void setStackTrace(StackTraceElement[] stackTrace) {
+        this.stackTrace = stackTrace;
+    }
+
+    public StackProfile getProfile() {
+        return profile;
+    }
+
+    public void setProfile(StackProfile profile) {
+        this.profile = profile;
+    }
+
+    public long getTotalLoadedClassCount() {
+        return totalLoadedClassCount;
+    }
+
+    public void setTotalLoadedClassCount(long totalLoadedClassCount) {
+        this.totalLoadedClassCount = totalLoadedClassCount;
+    }
+
+    public long getCpuTimeNanos() {
+        return cpuTimeNanos;
+    }
+
+    public void setCpuTimeNanos(long cpuTimeNanos) {
+        this.cpuTimeNanos = cpuTimeNanos;
+    }
+
+    public long getUserTimeNanos() {
+        return userTimeNanos;
+    }
+
+    public void setUserTimeNanos(long userTimeNanos) {
+        this.userTimeNanos = userTimeNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public void setAllocatedBytes(long allocatedBytes) {
+        this.allocatedBytes = allocatedBytes;
+    }
+}
@@ -26,6 +26,8 @@
  */
 package com.github.benkenhobbit.monitoring.model;
 
+import com.github.benkenhobbit.monitoring.stats.LatencyHistogram;
+
 import java.util.concurrent.atomic.AtomicLong;
 
 public class TransactionThreadStats {
@@ -34,6 +36,23 @@ public class TransactionThreadStats {
 
     private AtomicLong times = new AtomicLong();
 
+    /**
+     * Total CPU time in nanoseconds.
+     */
+    private AtomicLong cpuTime = new AtomicLong();
+
+    /**
+     * Total user-mode CPU time in nanoseconds.
+     */
+    private AtomicLong userTime = new AtomicLong();
+
+    private AtomicLong allocatedBytes = new AtomicLong();
+
+    /**
+     * Execution time distribution in nanoseconds.
+     */
+    private LatencyHistogram latency = new LatencyHistogram();
+
     public AtomicLong getCounter() {
         return counter;
     }
@@ -41,4 +60,20 @@ public class TransactionThreadStats {
     public AtomicLong getTimes() {
         return times;
     }
+
+    public AtomicLong getCpuTime() {
+        return cpuTime;
+    }
+
+    public AtomicLong getUserTime() {
+        return userTime;
+    }
+
+    public AtomicLong getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
 }
@@ -0,0 +1,290 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.pipeline;
+
+import com.github.benkenhobbit.monitoring.model.PipelineStats;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Capture -> queue -> consumer pipeline.
+ * <p>
+ * Calling threads only {@link #publish(Object)} events into a bounded {@link MpscBoundedQueue}. A background consumer
+ * thread drains the queue in batches and hands each batch to the sink (storage, pruning...) and then to the exporters,
+ * so that none of that work adds to business latency. Other changes to the state of the sink (pruning, clearing...) are
+ * handed to the same thread with {@link #execute(Runnable)}, so that it stays the single writer of that state.
+ *
+ * @param <E> type of the events.
+ */
+@Slf4j
+public class EventPipeline<E> {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final String name;
+
+    private final MpscBoundedQueue<E> queue;
+
+    private final int batchSize;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final Consumer<List<E>> sink;
+
+    private final List<Consumer<List<E>>> exporters = new CopyOnWriteArrayList<>();
+
+    /**
+     * Tasks to be run on the consumer thread between two batches.
+     */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder published = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Written by the consumer thread only.
+     */
+    private volatile long processed;
+
+    private volatile int maxQueueDepth;
+
+    private volatile boolean running;
+
+    private volatile boolean consumerParked;
+
+    private volatile Thread consumer;
+
+    /**
+     * @param name name of the consumer thread.
+     * @param queueCapacity capacity of the queue (rounded up to a power of two).
+     * @param batchSize maximum number of events handed to the sink at once.
+     * @param overflowPolicy what to do when the queue is full.
+     * @param sink first consumer of each batch, called on the consumer thread.
+     */
+    public EventPipeline(String name, int queueCapacity, int batchSize, OverflowPolicy overflowPolicy, Consumer<List<E>> sink) {
+        this.name = name;
+        this.queue = new MpscBoundedQueue<>(queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.DROP_AND_COUNT;
+        this.sink = sink;
+    }
+
+    /**
+     * Start the consumer thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::consume, name);
+        thread.setDaemon(true);
+        consumer = thread;
+        thread.start();
+    }
+
+    /**
+     * Stop the consumer thread once the queued events have been consumed.
+     *
+     * @return false if the consumer thread is still running after 5 seconds.
+     */
+    public synchronized boolean stop() {
+        Thread thread = consumer;
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return !thread.isAlive();
+        }
+        return true;
+    }
+
+    /**
+     * Queue an event (calling thread). Never blocks, unless the policy is {@link OverflowPolicy#BLOCK}.
+     *
+     * @param event event to be consumed.
+     * @return false if the event has been dropped.
+     */
+    public boolean publish(E event) {
+        boolean queued = queue.offer(event);
+        while (!queued && overflowPolicy == OverflowPolicy.BLOCK && running) {
+            LockSupport.parkNanos(this, 10_000);
+            queued = queue.offer(event);
+        }
+        if (!queued) {
+            if (overflowPolicy != OverflowPolicy.DROP) {
+                dropped.increment();
+            }
+            return false;
+        }
+        published.increment();
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Run a task on the consumer thread, between two batches. Before the consumer is started or once it has
+     * terminated, the task is run by the calling thread, which is then the only one left.
+     *
+     * @param task task to be run (it must not block).
+     * @return completed once the task has run, exceptionally if it failed.
+     */
+    public CompletableFuture<Void> execute(Runnable task) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        tasks.add(() -> {
+            try {
+                task.run();
+                done.complete(null);
+            } catch (RuntimeException e) {
+                log.warn("{} task failed", name, e);
+                done.completeExceptionally(e);
+            }
+        });
+        Thread thread = consumer;
+        if (thread == null || !thread.isAlive()) {
+            runTasks();
+        } else {
+            LockSupport.unpark(thread);
+        }
+        return done;
+    }
+
+    /**
+     * Add a consumer called with every batch, after the sink.
+     *
+     * @param exporter batch consumer (the batch must not be kept after the call).
+     */
+    public void addExporter(Consumer<List<E>> exporter) {
+        exporters.add(exporter);
+    }
+
+    public void removeExporter(Consumer<List<E>> exporter) {
+        exporters.remove(exporter);
+    }
+
+    /**
+     * Wait until the events published so far have been consumed.
+     *
+     * @param timeout maximum time to wait.
+     * @param unit unit of the timeout.
+     * @return true if everything has been consumed, false on timeout or if the pipeline is not running.
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        long target = published.sum();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (processed < target) {
+            if (!running || System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(this, 100_000);
+        }
+        return true;
+    }
+
+    /**
+     * @return current counters of the pipeline.
+     */
+    public PipelineStats getStats() {
+        return new PipelineStats(queue.capacity(), queue.size(), maxQueueDepth,
+                published.sum(), processed, dropped.sum());
+    }
+
+    private void consume() {
+        List<E> batch = new ArrayList<>(batchSize);
+        List<E> readOnlyBatch = Collections.unmodifiableList(batch);
+        while (running || !queue.isEmpty() || !tasks.isEmpty()) {
+            runTasks();
+            int depth = queue.size();
+            if (depth > maxQueueDepth) {
+                maxQueueDepth = depth;
+            }
+            E event;
+            while (batch.size() < batchSize && (event = queue.poll()) != null) {
+                batch.add(event);
+            }
+            if (batch.isEmpty()) {
+                idle();
+                continue;
+            }
+            dispatch(sink, readOnlyBatch);
+            for (Consumer<List<E>> exporter : exporters) {
+                dispatch(exporter, readOnlyBatch);
+            }
+            processed += batch.size();
+            batch.clear();
+        }
+    }
+
+    private void runTasks() {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        // Only contended when a caller runs the tasks itself while the consumer is terminating
+        synchronized (tasks) {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private void dispatch(Consumer<List<E>> target, List<E> batch) {
+        try {
+            target.accept(batch);
+        } catch (RuntimeException e) {
+            log.warn("{} consumer failed on a batch of {} events", name, batch.size(), e);
+        }
+    }
+
+    private void idle() {
+        consumerParked = true;
+        // Re-check after advertising the park, so that a concurrent publish is never missed
+        if (running && queue.isEmpty() && tasks.isEmpty()) {
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+        consumerParked = false;
+    }
+}
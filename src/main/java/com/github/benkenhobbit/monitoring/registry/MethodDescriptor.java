@@ -0,0 +1,95 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.registry;
+
+import com.github.benkenhobbit.monitoring.model.MethodStats;
+import com.github.benkenhobbit.monitoring.stats.RollingWindowStats;
+
+import java.lang.reflect.Method;
+
+/**
+ * Monitored method resolved once by the {@link MethodRegistry}.
+ * Descriptors are unique per method, so they can be used as cheap map keys (identity equality, hash = id).
+ * Each descriptor also carries the global statistics of its method, so they need no map lookup on the hot path.
+ */
+public class MethodDescriptor {
+
+    private final int id;
+
+    private final String name;
+
+    private final Method method;
+
+    private final MethodStats stats = new MethodStats();
+
+    private final RollingWindowStats rollingStats = new RollingWindowStats();
+
+    MethodDescriptor(int id, String name, Method method) {
+        this.id = id;
+        this.name = name;
+        this.method = method;
+    }
+
+    /**
+     * @return small integer id, assigned in registration order starting from 0.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return interned shrunk name of the method (e.g. <i>c.g.b.m.d.s.MonitorService.executeTest</i>).
+     */
+    public String getName() {
+        return name;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public MethodStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return the statistics of the last 15 minutes.
+     */
+    public RollingWindowStats getRollingStats() {
+        return rollingStats;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.registry;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the monitored methods.
+ * The shrunk method name is computed and interned once per method, and each method gets a small integer id.
+ */
+public class MethodRegistry {
+
+    private final Map<Method, MethodDescriptor> descriptors = new ConcurrentHashMap<>();
+
+    /**
+     * Descriptors indexed by id. Copied on write: registrations are rare, lookups are lock-free.
+     */
+    private volatile MethodDescriptor[] descriptorsById = new MethodDescriptor[0];
+
+    /**
+     * @param method monitored method.
+     * @return the descriptor of the method, created on first use.
+     */
+    public MethodDescriptor get(Method method) {
+        MethodDescriptor descriptor = descriptors.get(method);
+        return descriptor != null ? descriptor : descriptors.computeIfAbsent(method, this::register);
+    }
+
+    /**
+     * @param id id of the descriptor.
+     * @return the descriptor with that id, or null if unknown.
+     */
+    public MethodDescriptor get(int id) {
+        MethodDescriptor[] snapshot = descriptorsById;
+        return id >= 0 && id < snapshot.length ? snapshot[id] : null;
+    }
+
+    /**
+     * @param name shrunk name of the method.
+     * @return the registered methods with that name (overloads share it).
+     */
+    public List<MethodDescriptor> getByName(String name) {
+        List<MethodDescriptor> methods = new ArrayList<>(1);
+        for (MethodDescriptor descriptor : descriptorsById) {
+            if (descriptor.getName().equals(name)) {
+                methods.add(descriptor);
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * @return all the registered methods, in id order.
+     */
+    public List<MethodDescriptor> getAll() {
+        return Arrays.asList(descriptorsById);
+    }
+
+    /**
+     * @return number of registered methods.
+     */
+    public int size() {
+        return descriptorsById.length;
+    }
+
+    private synchronized MethodDescriptor register(Method method) {
+        MethodDescriptor[] snapshot = descriptorsById;
+        String name = shrinkName(method.getDeclaringClass().getName(), method.getName()).intern();
+        MethodDescriptor descriptor = new MethodDescriptor(snapshot.length, name, method);
+        MethodDescriptor[] grown = Arrays.copyOf(snapshot, snapshot.length + 1);
+        grown[descriptor.getId()] = descriptor;
+        descriptorsById = grown;
+        return descriptor;
+    }
+
+    /**
+     * Shrinks the package name (this makes logs more readable).
+     *
+     * @param declaringTypeName fully qualified name of the declaring class.
+     * @param methodName name of the method.
+     * @return shrunk signature of the method (e.g. <i>c.g.b.m.Foo.bar</i>).
+     */
+    static String shrinkName(String declaringTypeName, String methodName) {
+        StringBuilder sb = new StringBuilder();
+        int tokenStart = 0;
+        int dot;
+        while ((dot = declaringTypeName.indexOf('.', tokenStart)) >= 0) {
+            sb.append(declaringTypeName.charAt(tokenStart)).append('.');
+            tokenStart = dot + 1;
+        }
+        sb.append(declaringTypeName, tokenStart, declaringTypeName.length());
+        return sb.append('.').append(methodName).toString();
+    }
+}
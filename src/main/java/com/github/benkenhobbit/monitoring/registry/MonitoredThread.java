@@ -0,0 +1,318 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.registry;
+
+import com.github.benkenhobbit.monitoring.correlation.TransactionContext;
+import com.github.benkenhobbit.monitoring.model.StackProfile;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Identity of a thread seen by the monitoring aspect.
+ * The <i>name;id</i> key used by the statistics is computed once and rebuilt only when the thread is renamed. Virtual
+ * threads are reported by group (see {@link VirtualThreadGrouping}), with the <i>group;-</i> key, so that the
+ * statistics of millions of short-lived threads add up in a few entries.
+ * It also holds the transaction context of the thread, so that a single <i>ThreadLocal</i> lookup serves both, and
+ * publishes its innermost running invocation to the other threads (see {@link #getRunning()} and
+ * {@link #getOpenSpans()}).
+ */
+public class MonitoredThread {
+
+    /**
+     * Running invocation, as seen from another thread.
+     *
+     * @param invocation number of the invocation on the thread.
+     * @param transactionId correlation ID of the transaction.
+     * @param methodId id of the invoked method.
+     * @param startNanos start of the invocation ({@link System#nanoTime()}).
+     * @param depth 0 for the root invocation, 1 for the invocations it calls and so on.
+     */
+    public record Running(long invocation, long transactionId, int methodId, long startNanos, int depth) {
+
+        private static Running of(TransactionContext.Frame frame) {
+            return new Running(frame.getInvocation(), frame.getTransactionId(), frame.getMethodId(),
+                    frame.getStartNanos(), frame.getDepth());
+        }
+    }
+
+    /**
+     * Group of the unnamed virtual threads, or of all of them with {@link VirtualThreadGrouping#CARRIER_POOL}.
+     */
+    public static final String VIRTUAL_THREADS = "virtual threads";
+
+    private static final VarHandle RUNNING_INVOCATION;
+
+    static {
+        try {
+            RUNNING_INVOCATION = MethodHandles.lookup().findVarHandle(MonitoredThread.class, "runningInvocation", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Weak reference, so that the registry never keeps a terminated thread alive.
+     */
+    private final WeakReference<Thread> thread;
+
+    private final long id;
+
+    private final boolean virtual;
+
+    private final VirtualThreadGrouping grouping;
+
+    /**
+     * Name of the thread when last seen, compared to spot a rename.
+     */
+    private volatile String threadName;
+
+    private volatile String name;
+
+    private volatile String key;
+
+    /**
+     * Used by the owning thread only.
+     */
+    private final TransactionContext context = new TransactionContext();
+
+    /**
+     * Frame of the innermost running invocation, written before {@link #runningInvocation}.
+     */
+    private TransactionContext.Frame runningFrame;
+
+    /**
+     * Invocation number of {@link #runningFrame}, 0 if none: written last with release semantics, read twice by the
+     * other threads to detect a frame changed while being read.
+     */
+    @SuppressWarnings("unused")
+    private long runningInvocation;
+
+    /**
+     * True while the thread is listed by the registry as running a monitored invocation (virtual threads only, owning
+     * thread only).
+     */
+    private boolean listed;
+
+    MonitoredThread(Thread thread) {
+        this(thread, VirtualThreadGrouping.TASK);
+    }
+
+    MonitoredThread(Thread thread, VirtualThreadGrouping grouping) {
+        this.thread = new WeakReference<>(thread);
+        this.id = thread.threadId();
+        this.virtual = thread.isVirtual();
+        this.grouping = grouping;
+        rename(thread.getName());
+    }
+
+    /**
+     * Rebuild the key if the thread name changed (names are compared by reference, which is enough to spot a rename).
+     *
+     * @param currentName name currently returned by <i>Thread.getName()</i>.
+     */
+    void refresh(String currentName) {
+        if (currentName != threadName) {
+            rename(currentName);
+        }
+    }
+
+    /**
+     * @return true if the thread is still running.
+     */
+    boolean isAlive() {
+        Thread t = thread.get();
+        return t != null && t.isAlive();
+    }
+
+    boolean isListed() {
+        return listed;
+    }
+
+    void setListed(boolean listed) {
+        this.listed = listed;
+    }
+
+    private void rename(String newName) {
+        this.threadName = newName;
+        this.name = virtual ? groupName(newName, grouping) : newName;
+        this.key = name + ";" + (virtual ? "-" : Long.toString(id));
+    }
+
+    /**
+     * @return the name of the group of a virtual thread: its name without the trailing number (<i>tomcat-handler-*</i>)
+     * with {@link VirtualThreadGrouping#TASK}, {@link #VIRTUAL_THREADS} if it has no other name.
+     */
+    static String groupName(String threadName, VirtualThreadGrouping grouping) {
+        if (grouping == VirtualThreadGrouping.CARRIER_POOL) {
+            return VIRTUAL_THREADS;
+        }
+        int end = threadName.length();
+        while (end > 0 && Character.isDigit(threadName.charAt(end - 1))) {
+            end--;
+        }
+        if (end == 0) {
+            return VIRTUAL_THREADS;
+        }
+        return end < threadName.length() ? threadName.substring(0, end) + "*" : threadName;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return the name of the thread, or of its group for a virtual thread.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return true for a virtual thread: its CPU time and allocations are not measured, and its key is shared.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * @param maxDepth maximum number of frames.
+     * @return the innermost frames of the thread stack, empty if the thread terminated.
+     */
+    public StackTraceElement[] getStackTrace(int maxDepth) {
+        Thread t = thread.get();
+        if (t == null) {
+            return new StackTraceElement[0];
+        }
+        StackTraceElement[] stack = t.getStackTrace();
+        return stack.length > maxDepth ? Arrays.copyOf(stack, maxDepth) : stack;
+    }
+
+    /**
+     * @return the <i>name;id</i> key of the thread, <i>group;-</i> for a virtual thread.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the stack of the monitored invocations running on the thread (owning thread only).
+     */
+    public TransactionContext getContext() {
+        return context;
+    }
+
+    /**
+     * Publish the innermost running invocation (owning thread only): a plain store and a release store, no fence.
+     *
+     * @param frame frame of the invocation, once started, or null if none is running.
+     */
+    public void publishRunning(TransactionContext.Frame frame) {
+        runningFrame = frame;
+        RUNNING_INVOCATION.setRelease(this, frame != null ? frame.getInvocation() : 0L);
+    }
+
+    /**
+     * @return the innermost running invocation, or null if none is running (or if it changed while being read).
+     */
+    public Running getRunning() {
+        long invocation = (long) RUNNING_INVOCATION.getAcquire(this);
+        TransactionContext.Frame frame = runningFrame;
+        if (invocation == 0 || frame == null) {
+            return null;
+        }
+        Running running = Running.of(frame);
+        // The frame is reused once its invocation ends, which always changes the published invocation first
+        VarHandle.loadLoadFence();
+        return frame.getInvocation() == invocation && (long) RUNNING_INVOCATION.getAcquire(this) == invocation
+                ? running : null;
+    }
+
+    /**
+     * The callers of the innermost running invocation do not change while it runs, so the same check covers the
+     * whole stack. Nothing is written on the owning thread beyond {@link #publishRunning(TransactionContext.Frame)}.
+     *
+     * @return the running invocations from the root one, empty if none is running (or if it changed while being read).
+     */
+    public List<Running> getOpenSpans() {
+        long invocation = (long) RUNNING_INVOCATION.getAcquire(this);
+        TransactionContext.Frame frame = runningFrame;
+        if (invocation == 0 || frame == null) {
+            return Collections.emptyList();
+        }
+        List<Running> spans = new ArrayList<>();
+        for (TransactionContext.Frame f = frame; f != null; f = f.getParent()) {
+            spans.add(Running.of(f));
+        }
+        VarHandle.loadLoadFence();
+        if (frame.getInvocation() != invocation || (long) RUNNING_INVOCATION.getAcquire(this) != invocation) {
+            return Collections.emptyList();
+        }
+        Collections.reverse(spans);
+        return spans;
+    }
+
+    /**
+     * Attach the profile of a slow running invocation, which may be the innermost one or one of its callers (watchdog
+     * thread). Each invocation keeps its own profile until it ends, whatever the invocations it calls meanwhile.
+     *
+     * @param invocation number of the invocation, as published by {@link #getOpenSpans()}.
+     */
+    public void attachProfile(long invocation, StackProfile profile) {
+        long running = (long) RUNNING_INVOCATION.getAcquire(this);
+        if (running == 0) {
+            return;
+        }
+        // The frames of the callers are not reused while the innermost invocation runs; a frame reused meanwhile
+        // ignores a profile tagged with another invocation
+        for (TransactionContext.Frame frame = runningFrame; frame != null; frame = frame.getParent()) {
+            if (frame.getInvocation() == invocation) {
+                frame.attachProfile(invocation, profile);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Take the profile attached to an invocation that ends (owning thread only).
+     *
+     * @return the profile, null if the invocation was not slow.
+     */
+    public StackProfile takeProfile(long invocation) {
+        for (TransactionContext.Frame frame = context.peek(); frame != null; frame = frame.getParent()) {
+            if (frame.getInvocation() == invocation) {
+                return frame.takeProfile();
+            }
+        }
+        return null;
+    }
+}
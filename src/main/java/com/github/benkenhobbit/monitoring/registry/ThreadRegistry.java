@@ -0,0 +1,150 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.registry;
+
+import com.github.benkenhobbit.monitoring.correlation.TransactionContext;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+/**
+ * Registry of the threads running monitored methods.
+ * <p>
+ * Each thread resolves its own identity through a <i>ThreadLocal</i>, so no global thread enumeration is needed on the
+ * hot path. Terminated threads are detected whenever a new thread registers (thread creation is far rarer than
+ * transactions) and handed to a listener, so that per-thread data does not leak across thread-pool churn.
+ * <p>
+ * Virtual threads are not registered: there may be millions of them, each created for one task. They share the key
+ * of their group, which is never retired, and are only listed while they run a monitored invocation.
+ */
+public class ThreadRegistry {
+
+    private final ThreadLocal<MonitoredThread> current = new ThreadLocal<>();
+
+    private final Map<Long, MonitoredThread> liveThreads = new ConcurrentHashMap<>();
+
+    /**
+     * Thread id -> virtual thread running a monitored invocation. Updated on the monitored path by the virtual threads
+     * themselves: a skip list is lock-free, unlike the bins of a ConcurrentHashMap which would pin their carrier.
+     */
+    private final Map<Long, MonitoredThread> runningVirtualThreads = new ConcurrentSkipListMap<>();
+
+    private final Consumer<MonitoredThread> terminationListener;
+
+    private final VirtualThreadGrouping virtualThreadGrouping;
+
+    /**
+     * @param terminationListener called once for each registered thread that terminated.
+     */
+    public ThreadRegistry(Consumer<MonitoredThread> terminationListener) {
+        this(terminationListener, VirtualThreadGrouping.TASK);
+    }
+
+    /**
+     * @param terminationListener called once for each registered thread that terminated.
+     * @param virtualThreadGrouping grouping of the virtual threads.
+     */
+    public ThreadRegistry(Consumer<MonitoredThread> terminationListener, VirtualThreadGrouping virtualThreadGrouping) {
+        this.terminationListener = terminationListener;
+        this.virtualThreadGrouping = virtualThreadGrouping;
+    }
+
+    /**
+     * @return the identity of the calling thread.
+     */
+    public MonitoredThread current() {
+        Thread thread = Thread.currentThread();
+        MonitoredThread monitoredThread = current.get();
+        if (monitoredThread == null) {
+            monitoredThread = thread.isVirtual() ? attach(thread) : register(thread);
+        } else {
+            monitoredThread.refresh(thread.getName());
+        }
+        return monitoredThread;
+    }
+
+    /**
+     * Publish the innermost running invocation of the calling thread (see
+     * {@link MonitoredThread#publishRunning(TransactionContext.Frame)}), listing a virtual thread while it runs one.
+     *
+     * @param monitoredThread the calling thread.
+     * @param frame frame of the invocation, once started, or null if none is running.
+     */
+    public void publishRunning(MonitoredThread monitoredThread, TransactionContext.Frame frame) {
+        boolean running = frame != null;
+        if (monitoredThread.isVirtual() && monitoredThread.isListed() != running) {
+            if (running) {
+                runningVirtualThreads.put(monitoredThread.getId(), monitoredThread);
+            } else {
+                runningVirtualThreads.remove(monitoredThread.getId());
+            }
+            monitoredThread.setListed(running);
+        }
+        monitoredThread.publishRunning(frame);
+    }
+
+    /**
+     * @param action called with each registered thread still alive (or not yet detected as terminated), then with
+     *               each virtual thread running a monitored invocation.
+     */
+    public void forEach(Consumer<? super MonitoredThread> action) {
+        liveThreads.values().forEach(action);
+        runningVirtualThreads.values().forEach(action);
+    }
+
+    /**
+     * @return number of registered threads still alive (or not yet detected as terminated).
+     */
+    public int size() {
+        return liveThreads.size();
+    }
+
+    private MonitoredThread attach(Thread thread) {
+        MonitoredThread monitoredThread = new MonitoredThread(thread, virtualThreadGrouping);
+        current.set(monitoredThread);
+        return monitoredThread;
+    }
+
+    private MonitoredThread register(Thread thread) {
+        removeTerminatedThreads();
+        MonitoredThread monitoredThread = new MonitoredThread(thread);
+        current.set(monitoredThread);
+        liveThreads.put(monitoredThread.getId(), monitoredThread);
+        return monitoredThread;
+    }
+
+    private void removeTerminatedThreads() {
+        for (MonitoredThread monitoredThread : liveThreads.values()) {
+            // The conditional remove makes sure that concurrent sweeps notify each terminated thread only once
+            if (!monitoredThread.isAlive() && liveThreads.remove(monitoredThread.getId(), monitoredThread)) {
+                terminationListener.accept(monitoredThread);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.sampling;
+
+import com.github.benkenhobbit.monitoring.registry.MethodDescriptor;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Probabilistic sampler capturing a fixed fraction of the root transactions.
+ */
+public class RateSampler implements Sampler {
+
+    private final double rate;
+
+    private final DoubleSupplier random;
+
+    /**
+     * @param rate fraction of transactions to capture, between 0 and 1.
+     */
+    public RateSampler(double rate) {
+        this(rate, () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * @param rate fraction of transactions to capture, between 0 and 1.
+     * @param random source of uniform values in [0, 1).
+     */
+    RateSampler(double rate, DoubleSupplier random) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Sampling rate must be between 0 and 1: " + rate);
+        }
+        this.rate = rate;
+        this.random = random;
+    }
+
+    @Override
+    public boolean sample(MethodDescriptor rootMethod) {
+        return rate >= 1 || (rate > 0 && random.getAsDouble() < rate);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.sampling;
+
+import com.github.benkenhobbit.monitoring.registry.MethodDescriptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate-limited sampler: at most <i>permitsPerSecond</i> root transactions per method are captured, with bursts of up
+ * to one second worth of permits.
+ * <p>
+ * Each method has a lock-free bucket implemented with the generic cell rate algorithm: a single timestamp (the
+ * theoretical arrival time of the next permit) updated by CAS, instead of a token counter plus a refill clock.
+ */
+public class TokenBucketSampler implements Sampler {
+
+    private final long intervalNanos;
+
+    private final long burstNanos;
+
+    private final LongSupplier nanoClock;
+
+    private final Map<MethodDescriptor, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * @param permitsPerSecond number of transactions to capture per second and per method.
+     */
+    public TokenBucketSampler(double permitsPerSecond) {
+        this(permitsPerSecond, System::nanoTime);
+    }
+
+    /**
+     * @param permitsPerSecond number of transactions to capture per second and per method.
+     * @param nanoClock monotonic clock in nanoseconds.
+     */
+    TokenBucketSampler(double permitsPerSecond, LongSupplier nanoClock) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Sampling permits per second must be positive: " + permitsPerSecond);
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = Math.max(intervalNanos, TimeUnit.SECONDS.toNanos(1));
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public boolean sample(MethodDescriptor rootMethod) {
+        AtomicLong theoreticalArrival = buckets.get(rootMethod);
+        if (theoreticalArrival == null) {
+            theoreticalArrival = buckets.computeIfAbsent(rootMethod,
+                    k -> new AtomicLong(nanoClock.getAsLong() - burstNanos));
+        }
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long nextArrival = Math.max(arrival, now) + intervalNanos;
+            if (nextArrival - now > burstNanos) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, nextArrival)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.stats;
+
+import com.github.benkenhobbit.monitoring.model.LatencyPercentiles;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent fixed-memory latency histogram (HdrHistogram-like log-linear buckets).
+ * <p>
+ * Values are nanoseconds. By default values below 32 ns are counted exactly; above, every power of two is split into
+ * 16 linear sub-buckets, so a reported percentile is at most ~6% above the recorded value. The histogram covers up to
+ * {@link #MAX_VALUE} (about 2.4 hours) in 640 counters (5 KB); larger values are clamped. A coarser histogram splits
+ * every power of two into fewer sub-buckets, for a proportionally smaller footprint.
+ * Recording is lock-free and allocation-free: one atomic increment, plus a CAS when a new maximum is seen.
+ */
+public class LatencyHistogram {
+
+    private static final int DEFAULT_SUB_BUCKET_BITS = 4;
+
+    private static final int MAX_EXPONENT = 42;
+
+    /**
+     * Highest trackable value.
+     */
+    public static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final int subBucketBits;
+
+    private final AtomicLongArray counts;
+
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public LatencyHistogram() {
+        this(DEFAULT_SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @param subBucketBits log2 of the sub-buckets of each power of two, between 1 and 4: a reported percentile is at
+     *                      most 1 / 2^subBucketBits above the recorded value (640 counters for 4, 328 for 3, 168 for 2).
+     */
+    public LatencyHistogram(int subBucketBits) {
+        if (subBucketBits < 1 || subBucketBits > DEFAULT_SUB_BUCKET_BITS) {
+            throw new IllegalArgumentException("Invalid histogram precision: " + subBucketBits);
+        }
+        this.subBucketBits = subBucketBits;
+        this.counts = new AtomicLongArray(bucketCount(subBucketBits));
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param nanos latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(bucketIndex(value, subBucketBits));
+        if (value > maxValue.get()) {
+            maxValue.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Add all the values recorded by another histogram of the same precision to this one.
+     *
+     * @param other histogram to be merged.
+     */
+    public void add(LatencyHistogram other) {
+        checkPrecision(other);
+        for (int i = 0; i < counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        maxValue.accumulateAndGet(other.maxValue.get(), Math::max);
+    }
+
+    /**
+     * Add the counters of this histogram to plain counters, to merge histograms without allocating another one.
+     *
+     * @param target counters of a histogram of the same precision (see {@link #newCounts()}).
+     */
+    void addTo(long[] target) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] += counts.get(i);
+        }
+    }
+
+    /**
+     * @return plain counters for {@link #addTo(long[])}.
+     */
+    long[] newCounts() {
+        return new long[counts.length()];
+    }
+
+    /**
+     * @param mergedCounts counters filled by {@link #addTo(long[])}.
+     * @param max highest merged value.
+     * @param percentile percentile between 0 and 100.
+     * @return the value below or equal to which the given percentage of the merged values fall.
+     */
+    long getValueAtPercentile(long[] mergedCounts, long max, double percentile) {
+        return valueAtPercentile(mergedCounts, sum(mergedCounts), max, percentile);
+    }
+
+    /**
+     * @return number of recorded values.
+     */
+    public long getCount() {
+        return sum(snapshot());
+    }
+
+    /**
+     * @return the highest recorded value.
+     */
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    /**
+     * Compute p50, p90, p99, p99.9 and max on a copy of the counters (writers are never stopped).
+     *
+     * @return the percentiles in nanoseconds.
+     */
+    public LatencyPercentiles getPercentiles() {
+        long[] snapshot = snapshot();
+        long count = sum(snapshot);
+        long max = maxValue.get();
+        return new LatencyPercentiles(count,
+                valueAtPercentile(snapshot, count, max, 50.0),
+                valueAtPercentile(snapshot, count, max, 90.0),
+                valueAtPercentile(snapshot, count, max, 99.0),
+                valueAtPercentile(snapshot, count, max, 99.9),
+                max);
+    }
+
+    /**
+     * @param percentile percentile between 0 and 100.
+     * @return the value below or equal to which the given percentage of the recorded values fall.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = snapshot();
+        return valueAtPercentile(snapshot, sum(snapshot), maxValue.get(), percentile);
+    }
+
+    /**
+     * Clear all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        maxValue.set(0);
+    }
+
+    private void checkPrecision(LatencyHistogram other) {
+        if (other.subBucketBits != subBucketBits) {
+            throw new IllegalArgumentException("Histogram precisions differ: " + subBucketBits + " and " + other.subBucketBits);
+        }
+    }
+
+    private long[] snapshot() {
+        long[] snapshot = newCounts();
+        addTo(snapshot);
+        return snapshot;
+    }
+
+    private static long sum(long[] snapshot) {
+        long sum = 0;
+        for (long count : snapshot) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    private long valueAtPercentile(long[] snapshot, long count, long max, double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long cumulative = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= target) {
+                return Math.min(highestEquivalentValue(i, subBucketBits), max);
+            }
+        }
+        return max;
+    }
+
+    private static int bucketCount(int subBucketBits) {
+        return (2 << subBucketBits) + (MAX_EXPONENT - subBucketBits) * (1 << subBucketBits);
+    }
+
+    static int bucketIndex(long value) {
+        return bucketIndex(value, DEFAULT_SUB_BUCKET_BITS);
+    }
+
+    static long highestEquivalentValue(int index) {
+        return highestEquivalentValue(index, DEFAULT_SUB_BUCKET_BITS);
+    }
+
+    static int bucketIndex(long value, int subBucketBits) {
+        // Values below the linear limit have a bucket each
+        int linearLimit = 2 << subBucketBits;
+        if (value < linearLimit) {
+            return (int) value;
+        }
+        int subBucketCount = 1 << subBucketBits;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - subBucketBits)) & (subBucketCount - 1);
+        return linearLimit + (exponent - subBucketBits - 1) * subBucketCount + subBucket;
+    }
+
+    static long highestEquivalentValue(int index, int subBucketBits) {
+        int linearLimit = 2 << subBucketBits;
+        if (index < linearLimit) {
+            return index;
+        }
+        int subBucketCount = 1 << subBucketBits;
+        int exponent = subBucketBits + 1 + (index - linearLimit) / subBucketCount;
+        int subBucket = (index - linearLimit) % subBucketCount;
+        int shift = exponent - subBucketBits;
+        long lowest = (long) (subBucketCount + subBucket) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
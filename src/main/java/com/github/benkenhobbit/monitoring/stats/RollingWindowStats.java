@@ -0,0 +1,179 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.stats;
+
+import com.github.benkenhobbit.monitoring.model.RollingStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the last {@link #MAX_WINDOW_NANOS} (15 minutes), kept in a ring of {@link #BUCKET_NANOS} time buckets.
+ * <p>
+ * An invocation is recorded in the bucket of its end time, which is replaced once it leaves the ring: nothing is ever
+ * rescanned, and a window is read by merging its buckets. A bucket holds its own coarse latency histogram (328
+ * counters, p99 to 12.5%), allocated when its period is first recorded, so a method only costs memory for the periods
+ * it was called in: about 2.7 KB per bucket, up to {@link #MAX_BYTES_PER_METHOD} for a method called in every period.
+ * Recording is lock-free (a compare-and-set installs a new bucket), so it never blocks a virtual thread on a monitor.
+ */
+public class RollingWindowStats {
+
+    public static final long BUCKET_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+    public static final long MAX_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(15);
+
+    /**
+     * Buckets of the longest window, plus the one being filled.
+     */
+    private static final int BUCKET_COUNT = (int) (MAX_WINDOW_NANOS / BUCKET_NANOS) + 1;
+
+    /**
+     * Log2 of the sub-buckets of the bucket histograms: a rolling p99 spots a regression, it needs less precision
+     * than the statistics since the start.
+     */
+    private static final int LATENCY_SUB_BUCKET_BITS = 3;
+
+    /**
+     * Approximate footprint of a method called in every period (165 KB).
+     */
+    public static final long MAX_BYTES_PER_METHOD = BUCKET_COUNT * 2_700L;
+
+    private static final class Bucket {
+
+        /**
+         * Number of the period covered by the bucket: {@link System#nanoTime()} / {@link #BUCKET_NANOS}.
+         */
+        private final long period;
+
+        private final LongAdder counter = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder totalTime = new LongAdder();
+
+        private final LatencyHistogram latency = new LatencyHistogram(LATENCY_SUB_BUCKET_BITS);
+
+        private Bucket(long period) {
+            this.period = period;
+        }
+    }
+
+    private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>(BUCKET_COUNT);
+
+    /**
+     * Record a completed invocation.
+     *
+     * @param endNanos end of the invocation ({@link System#nanoTime()}).
+     * @param executionTime execution time in nanoseconds.
+     * @param error true if the invocation ended with an exception.
+     */
+    public void record(long endNanos, long executionTime, boolean error) {
+        Bucket bucket = bucket(Math.floorDiv(endNanos, BUCKET_NANOS));
+        if (bucket == null) {
+            return;
+        }
+        bucket.counter.increment();
+        if (error) {
+            bucket.errors.increment();
+        }
+        bucket.totalTime.add(executionTime);
+        bucket.latency.record(executionTime);
+    }
+
+    /**
+     * Aggregate the buckets of a window ending now. The first bucket of the window is only partly covered, so the
+     * window is actually between one bucket shorter and its full length: the rate is computed on the covered time.
+     * Only a window with recorded buckets allocates, the merged latency counters.
+     *
+     * @param nowNanos current {@link System#nanoTime()}.
+     * @param windowNanos length of the window, rounded up to a multiple of {@link #BUCKET_NANOS} and at most
+     *                    {@link #MAX_WINDOW_NANOS}.
+     * @return the statistics of the window.
+     */
+    public RollingStats snapshot(long nowNanos, long windowNanos) {
+        long bucketsInWindow = Math.min(Math.max(1, (windowNanos + BUCKET_NANOS - 1) / BUCKET_NANOS), BUCKET_COUNT - 1);
+        long current = Math.floorDiv(nowNanos, BUCKET_NANOS);
+        long counter = 0;
+        long errors = 0;
+        long totalTime = 0;
+        LatencyHistogram latency = null;
+        long[] latencyCounts = null;
+        long maxLatency = 0;
+        for (long period = current - bucketsInWindow + 1; period <= current; period++) {
+            Bucket bucket = buckets.get(slot(period));
+            if (bucket == null || bucket.period != period) {
+                continue;
+            }
+            counter += bucket.counter.sum();
+            errors += bucket.errors.sum();
+            totalTime += bucket.totalTime.sum();
+            if (latencyCounts == null) {
+                latency = bucket.latency;
+                latencyCounts = latency.newCounts();
+            }
+            bucket.latency.addTo(latencyCounts);
+            maxLatency = Math.max(maxLatency, bucket.latency.getMax());
+        }
+        long coveredNanos = (bucketsInWindow - 1) * BUCKET_NANOS + Math.floorMod(nowNanos, BUCKET_NANOS);
+        return new RollingStats(counter, errors,
+                coveredNanos > 0 ? counter * 1e9 / coveredNanos : 0,
+                counter > 0 ? totalTime / counter : 0,
+                latency != null ? latency.getValueAtPercentile(latencyCounts, maxLatency, 99.0) : 0,
+                counter > 0 ? (double) errors / counter : 0);
+    }
+
+    /**
+     * Clear all the buckets.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, null);
+        }
+    }
+
+    /**
+     * @return the bucket of a period, replacing the bucket of an older one, or null if the period is already out of
+     * the ring (the recording thread was stalled for the whole window).
+     */
+    private Bucket bucket(long period) {
+        int slot = slot(period);
+        Bucket bucket = buckets.get(slot);
+        while (bucket == null || bucket.period < period) {
+            Bucket created = new Bucket(period);
+            if (buckets.compareAndSet(slot, bucket, created)) {
+                return created;
+            }
+            bucket = buckets.get(slot);
+        }
+        return bucket.period == period ? bucket : null;
+    }
+
+    private static int slot(long period) {
+        return (int) Math.floorMod(period, (long) BUCKET_COUNT);
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.store;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Secondary index of the event log: key -> elements, sorted by an order given at construction.
+ * <p>
+ * Elements are added when stored and removed when evicted from the log, in O(log(elements of the key)). The elements of
+ * a key are kept in a skip list, so a range lookup seeks its first element instead of walking the older ones: it costs
+ * O(log n + returned elements) when the order follows the ranges being looked up (for example the end time).
+ *
+ * @param <K> type of the key.
+ * @param <E> type of the indexed elements.
+ */
+public class EventIndex<K, E> {
+
+    private final Function<? super E, ? extends K> keyFunction;
+
+    /**
+     * Order of the elements of a key: distinct elements must not compare equal.
+     */
+    private final Comparator<? super E> order;
+
+    private final Map<K, NavigableSet<E>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param keyFunction key of an element, elements with a null key are not indexed.
+     * @param order order of the elements of a key, in which they are returned (distinct elements must not compare equal).
+     */
+    public EventIndex(Function<? super E, ? extends K> keyFunction, Comparator<? super E> order) {
+        this.keyFunction = keyFunction;
+        this.order = order;
+    }
+
+    public void add(E element) {
+        K key = keyFunction.apply(element);
+        if (key != null) {
+            // compute() serializes add and remove per key, so that a set is never dropped while being filled
+            entries.compute(key, (k, elements) -> {
+                NavigableSet<E> set = elements != null ? elements : new ConcurrentSkipListSet<>(order);
+                set.add(element);
+                return set;
+            });
+        }
+    }
+
+    public void remove(E element) {
+        K key = keyFunction.apply(element);
+        if (key != null) {
+            entries.computeIfPresent(key, (k, elements) -> {
+                elements.remove(element);
+                return elements.isEmpty() ? null : elements;
+            });
+        }
+    }
+
+    /**
+     * @param key key to be looked up.
+     * @return the elements of the key, in index order.
+     */
+    public List<E> get(K key) {
+        NavigableSet<E> elements = entries.get(key);
+        return elements != null ? new ArrayList<>(elements) : new ArrayList<>();
+    }
+
+    /**
+     * @param key key to be looked up.
+     * @param from lowest element (inclusive), it does not need to be indexed.
+     * @param to highest element (inclusive), it does not need to be indexed.
+     * @param filter condition on the elements to be returned.
+     * @return the matching elements of the key between the bounds, in index order.
+     */
+    public List<E> get(K key, E from, E to, Predicate<? super E> filter) {
+        List<E> result = new ArrayList<>();
+        NavigableSet<E> elements = entries.get(key);
+        if (elements != null && order.compare(from, to) <= 0) {
+            for (E element : elements.subSet(from, true, to, true)) {
+                if (filter.test(element)) {
+                    result.add(element);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of distinct keys.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.store;
+
+import com.github.benkenhobbit.monitoring.model.TransactionSpan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+/**
+ * On-heap span store: a {@link SegmentedEventLog} partitioned by end time, which is also the time index, plus
+ * secondary indexes by transaction ID, method id, thread id and sequence.
+ * <p>
+ * The writer thread appends a span to the log, then indexes it, and also prunes and clears the store (see
+ * {@link SpanStore}): a span is therefore only indexed once stored, and removed from the indexes by the eviction
+ * listener of the log, so they share its retention. The indexes by method and thread are sorted by end time, so that a
+ * range lookup seeks the first span of the range instead of walking all the spans of the key.
+ */
+public class IndexedSpanStore implements SpanStore {
+
+    private final SegmentedEventLog<TransactionSpan> log;
+
+    private static final Comparator<TransactionSpan> SEQUENCE_ORDER = Comparator.comparingLong(TransactionSpan::getSequence);
+
+    private static final Comparator<TransactionSpan> END_TIME_ORDER = Comparator.comparingLong(TransactionSpan::getEndTime)
+            .thenComparing(SEQUENCE_ORDER);
+
+    private final EventIndex<Long, TransactionSpan> transactionIndex =
+            new EventIndex<>(TransactionSpan::getTransactionId, SEQUENCE_ORDER);
+
+    private final EventIndex<Integer, TransactionSpan> methodIndex = new EventIndex<>(TransactionSpan::getMethodId, END_TIME_ORDER);
+
+    private final EventIndex<Long, TransactionSpan> threadIndex = new EventIndex<>(TransactionSpan::getThreadId, END_TIME_ORDER);
+
+    /**
+     * Sequence -> span: the log is partitioned by end time, so a late span does not follow the previous sequence in it.
+     */
+    private final ConcurrentSkipListMap<Long, TransactionSpan> sequenceIndex = new ConcurrentSkipListMap<>();
+
+    /**
+     * Longest execution time among the stored spans in milliseconds (written by the writer thread): a span running at
+     * the end of a range ends at most this long after it, which bounds the end times to be looked up.
+     */
+    private volatile long maxExecutionTime;
+
+    /**
+     * @param segmentMillis time span of each segment of the log in milliseconds.
+     */
+    public IndexedSpanStore(long segmentMillis) {
+        this.log = new SegmentedEventLog<>(segmentMillis, TransactionSpan::getEndTime, this::unindex);
+    }
+
+    @Override
+    public void add(TransactionSpan span) {
+        log.add(span);
+        long executionTime = span.getEndTime() - span.getStartTime();
+        if (executionTime > maxExecutionTime) {
+            maxExecutionTime = executionTime;
+        }
+        transactionIndex.add(span);
+        methodIndex.add(span);
+        threadIndex.add(span);
+        sequenceIndex.put(span.getSequence(), span);
+    }
+
+    /**
+     * Eviction listener of the log (writer thread).
+     */
+    private void unindex(TransactionSpan span) {
+        transactionIndex.remove(span);
+        methodIndex.remove(span);
+        threadIndex.remove(span);
+        sequenceIndex.remove(span.getSequence(), span);
+    }
+
+    /**
+     * Whole segments are dropped: spans of the segment containing the cutoff are kept.
+     */
+    @Override
+    public int expireBefore(long cutoff) {
+        return log.expireBefore(cutoff);
+    }
+
+    @Override
+    public int trimTo(int maxSize) {
+        return log.trimTo(maxSize);
+    }
+
+    @Override
+    public List<TransactionSpan> snapshot() {
+        return log.snapshot();
+    }
+
+    @Override
+    public List<TransactionSpan> snapshotRange(long from, long to) {
+        return log.snapshotRange(from, to);
+    }
+
+    /**
+     * The spans running at the end of the range ended at most {@link #maxExecutionTime} after it: only the segments up
+     * to then are copied.
+     */
+    @Override
+    public List<TransactionSpan> snapshotOverlapping(long startTime, long endTime) {
+        return log.snapshotRange(startTime, latestEndTime(endTime), span -> span.getStartTime() <= endTime);
+    }
+
+    @Override
+    public List<TransactionSpan> snapshotAfter(long sequence, int limit) {
+        List<TransactionSpan> spans = new ArrayList<>(Math.min(limit, 1024));
+        for (TransactionSpan span : sequenceIndex.tailMap(sequence, false).values()) {
+            if (spans.size() >= limit) {
+                break;
+            }
+            spans.add(span);
+        }
+        return spans;
+    }
+
+    @Override
+    public List<TransactionSpan> snapshotLatest(int count) {
+        List<TransactionSpan> spans = new ArrayList<>(Math.min(count, 1024));
+        for (TransactionSpan span : sequenceIndex.descendingMap().values()) {
+            if (spans.size() >= count) {
+                break;
+            }
+            spans.add(span);
+        }
+        Collections.reverse(spans);
+        return spans;
+    }
+
+    @Override
+    public List<TransactionSpan> getByTransaction(long transactionId) {
+        return transactionIndex.get(transactionId);
+    }
+
+    @Override
+    public List<TransactionSpan> getByMethod(int methodId, long startTime, long endTime,
+                                             Predicate<? super TransactionSpan> filter) {
+        return methodIndex.get(methodId, probe(startTime, Long.MIN_VALUE), probe(latestEndTime(endTime), Long.MAX_VALUE),
+                span -> span.getStartTime() <= endTime && filter.test(span));
+    }
+
+    @Override
+    public List<TransactionSpan> getByThread(long threadId, long startTime, long endTime) {
+        return threadIndex.get(threadId, probe(startTime, Long.MIN_VALUE), probe(latestEndTime(endTime), Long.MAX_VALUE),
+                span -> span.getStartTime() <= endTime);
+    }
+
+    /**
+     * @return the latest end time of a span running at the given time.
+     */
+    private long latestEndTime(long time) {
+        long executionTime = maxExecutionTime;
+        return time > Long.MAX_VALUE - executionTime ? Long.MAX_VALUE : time + executionTime;
+    }
+
+    /**
+     * @return a span which is only a bound of a lookup in the indexes sorted by end time.
+     */
+    private static TransactionSpan probe(long endTime, long sequence) {
+        TransactionSpan probe = new TransactionSpan();
+        probe.setEndTime(endTime);
+        probe.setSequence(sequence);
+        return probe;
+    }
+
+    @Override
+    public int size() {
+        return log.size();
+    }
+
+    @Override
+    public void clear() {
+        log.clear();
+        transactionIndex.clear();
+        methodIndex.clear();
+        threadIndex.clear();
+        sequenceIndex.clear();
+        maxExecutionTime = 0;
+    }
+}
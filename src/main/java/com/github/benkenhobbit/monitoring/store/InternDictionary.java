@@ -0,0 +1,90 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.store;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of repeated values (thread names, exception types...): each distinct value gets a small integer id, so
+ * that fixed-width records can reference it. Values are never removed.
+ *
+ * @param <T> type of the values, with value equality.
+ */
+public class InternDictionary<T> {
+
+    private final Map<T, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * Values indexed by id. Replaced on growth: registrations are rare, lookups are lock-free.
+     */
+    private volatile Object[] values = new Object[16];
+
+    /**
+     * Number of assigned ids, guarded by the registration lock.
+     */
+    private int count;
+
+    /**
+     * @param value value to be interned.
+     * @return the id of the value, assigned on first use.
+     */
+    public int intern(T value) {
+        Integer id = ids.get(value);
+        return id != null ? id : ids.computeIfAbsent(value, this::register);
+    }
+
+    /**
+     * @param id id returned by {@link #intern(Object)}.
+     * @return the value with that id, or null if unknown.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int id) {
+        Object[] snapshot = values;
+        return id >= 0 && id < snapshot.length ? (T) snapshot[id] : null;
+    }
+
+    /**
+     * @return number of distinct values.
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    private synchronized Integer register(T value) {
+        int id = count++;
+        Object[] snapshot = values;
+        if (id == snapshot.length) {
+            snapshot = Arrays.copyOf(snapshot, id * 2);
+        }
+        snapshot[id] = value;
+        // Republish the array so that readers of the new id see the slot
+        values = snapshot;
+        return id;
+    }
+}
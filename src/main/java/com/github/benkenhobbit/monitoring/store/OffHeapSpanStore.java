@@ -0,0 +1,555 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.store;
+
+import com.github.benkenhobbit.monitoring.model.StoredException;
+import com.github.benkenhobbit.monitoring.model.TransactionSpan;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Span store keeping one fixed-width row per span in direct (off-heap) {@link ByteBuffer} chunks used as a ring.
+ * <p>
+ * A row takes {@value #ROW_SIZE} bytes whatever the span: strings are replaced by dictionary ids (the method id of the
+ * {@link com.github.benkenhobbit.monitoring.registry.MethodRegistry}, an {@link InternDictionary} for thread names and
+ * exception types), the start times are derived from the end times and the execution time, and the sequence, end time
+ * and thread id are deltas against the first row of their block of {@value #BLOCK_ROWS} rows. The self, CPU and user
+ * times are 16-bit fractions of the execution time. Millions of spans therefore cost a few direct buffers to the garbage
+ * collector instead of millions of objects: about 64 MB per million spans, plus under one byte per row on the heap for
+ * the bases of the blocks. Queries read only the columns they filter on and decode a {@link TransactionSpan} for the
+ * matching rows only. Exceptions are kept by type: the decoded span carries a {@link StoredException} without message
+ * nor stack trace. The JVM-wide loaded class count is not kept.
+ * <p>
+ * There are no secondary indexes: the lookups by transaction, method and thread scan the live rows (O(n), reading
+ * a few columns per row), only the start of the time and sequence ranges is binary searched.
+ * <p>
+ * Rows are numbered in append order: the writer appends at the head, the ring overwrites the oldest rows once full
+ * (releasing the whole oldest block before reusing its bases) and pruning advances the tail. Spans are appended in
+ * sequence order, so the sequence column can be binary searched. A reader validates each row against the tail after
+ * reading it, so that a row overwritten meanwhile is discarded rather than returned torn.
+ */
+public class OffHeapSpanStore implements SpanStore {
+
+    // Row layout: longs first, then ints and chars, all naturally aligned
+    /**
+     * Correlation ID, kept whole: random with the UUID strategy, and the time-ordered IDs of a block are already more
+     * than an int apart after one second.
+     */
+    private static final int TRANSACTION_ID = 0;
+    private static final int ALLOCATED_BYTES = 8;
+    /**
+     * Execution time in nanoseconds on the low 48 bits (saturated at 78 hours), depth on the high 16 bits.
+     */
+    private static final int EXECUTION_NANOS_DEPTH = 16;
+    /**
+     * Capture sequence minus the base of the block: increasing along the rows, since spans are stored in sequence order.
+     */
+    private static final int SEQUENCE_DELTA = 24;
+    /**
+     * End time minus the base of the block, saturated to the int range (24 days).
+     */
+    private static final int END_TIME_DELTA = 28;
+    /**
+     * End nanoseconds minus those expected from the end time and the clock offset of the block: the difference between
+     * the two clocks only drifts by the truncation of the milliseconds, so it fits an int (saturated beyond 2 seconds).
+     */
+    private static final int END_NANOS_DELTA = 32;
+    /**
+     * Thread id minus the base of the block, {@link Integer#MIN_VALUE} if it does not fit (decoded as -1).
+     */
+    private static final int THREAD_ID_DELTA = 36;
+    /**
+     * Thread names are interned without the thread id: virtual threads are named after their task (see
+     * {@link com.github.benkenhobbit.monitoring.registry.VirtualThreadGrouping}), so the dictionary stays bounded.
+     */
+    private static final int THREAD_NAME_REF = 40;
+    private static final int METHOD_ID = 44;
+    private static final int SPAN_ID = 48;
+    private static final int PARENT_SPAN_ID = 52;
+    // Self, CPU and user times as fractions of the execution time: bounded by it, to 1/65534 of it
+    private static final int SELF_TIME_SHARE = 56;
+    private static final int CPU_TIME_SHARE = 58;
+    private static final int USER_TIME_SHARE = 60;
+    /**
+     * Exception type id, {@link #NO_EXCEPTION} or {@link #UNKNOWN_EXCEPTION} beyond the dictionary ids that fit.
+     */
+    private static final int EXCEPTION_REF = 62;
+
+    /**
+     * Bytes per row.
+     */
+    public static final int ROW_SIZE = 64;
+
+    /**
+     * Rows sharing the same bases (fewer at the end of a chunk whose size is not a multiple of it).
+     */
+    public static final int BLOCK_ROWS = 64;
+
+    private static final long MAX_EXECUTION_NANOS = (1L << 48) - 1;
+
+    private static final int MAX_DEPTH = 0xFFFF;
+
+    /**
+     * Share of a time not measured (negative).
+     */
+    private static final char NOT_MEASURED = 0xFFFF;
+
+    private static final double FULL_SHARE = 0xFFFE;
+
+    private static final char NO_EXCEPTION = 0xFFFF;
+
+    private static final char UNKNOWN_EXCEPTION = 0xFFFE;
+
+    /**
+     * Type of the decoded exceptions whose type did not fit in the row.
+     */
+    static final String UNKNOWN_EXCEPTION_TYPE = "unknown";
+
+    private final int rowsPerChunk;
+
+    private final int blocksPerChunk;
+
+    /**
+     * Chunks of the ring, allocated by the writer when first reached.
+     */
+    private final ByteBuffer[] chunks;
+
+    private final long capacity;
+
+    // Bases of each block, written by the writer with the first row of the block
+    private final long[] baseSequences;
+
+    private final long[] baseEndTimes;
+
+    /**
+     * End nanoseconds minus end milliseconds (in nanoseconds) of the first row of the block.
+     */
+    private final long[] baseClockOffsets;
+
+    private final long[] baseThreadIds;
+
+    /**
+     * Highest end time of the rows up to the last one written in the block: non-decreasing along the blocks, so it can
+     * be binary searched.
+     */
+    private final long[] maxEndTimes;
+
+    private final IntFunction<String> methodNames;
+
+    private final InternDictionary<String> threadNames = new InternDictionary<>();
+
+    private final InternDictionary<String> exceptionTypes = new InternDictionary<>();
+
+    /**
+     * Number of the next row, written after the row itself so that readers only see complete rows.
+     */
+    private volatile long head;
+
+    /**
+     * Number of the oldest live row, advanced by the writer (ring overwrite and pruning).
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Running maximum of the end times (writer thread only).
+     */
+    private long maxEndTime = Long.MIN_VALUE;
+
+    /**
+     * @param maxRows number of rows to be kept, rounded up to a whole number of chunks.
+     * @param rowsPerChunk rows of each direct buffer.
+     * @param methodNames name of a method from its id, to decode the rows.
+     */
+    public OffHeapSpanStore(int maxRows, int rowsPerChunk, IntFunction<String> methodNames) {
+        if (rowsPerChunk <= 0 || rowsPerChunk > Integer.MAX_VALUE / ROW_SIZE) {
+            throw new IllegalArgumentException("Invalid chunk size: " + rowsPerChunk);
+        }
+        this.rowsPerChunk = rowsPerChunk;
+        this.blocksPerChunk = (rowsPerChunk + BLOCK_ROWS - 1) / BLOCK_ROWS;
+        this.chunks = new ByteBuffer[Math.max(1, (int) (((long) maxRows + rowsPerChunk - 1) / rowsPerChunk))];
+        this.capacity = (long) chunks.length * rowsPerChunk;
+        int blocks = chunks.length * blocksPerChunk;
+        this.baseSequences = new long[blocks];
+        this.baseEndTimes = new long[blocks];
+        this.baseClockOffsets = new long[blocks];
+        this.baseThreadIds = new long[blocks];
+        this.maxEndTimes = new long[blocks];
+        this.methodNames = methodNames;
+    }
+
+    @Override
+    public void add(TransactionSpan span) {
+        long row = head;
+        int block = blockIndex(row);
+        long endTime = span.getEndTime();
+        if (row == blockStart(row)) {
+            // Release the oldest block before overwriting its rows and bases
+            advanceTail(row - capacity + blockEnd(row) - row);
+            VarHandle.storeStoreFence();
+            baseSequences[block] = span.getSequence();
+            baseEndTimes[block] = endTime;
+            baseClockOffsets[block] = span.getEndNanos() - endTime * 1_000_000;
+            baseThreadIds[block] = span.getThreadId();
+        }
+        long sequenceDelta = span.getSequence() - baseSequences[block];
+        if (sequenceDelta < 0 || sequenceDelta > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Span out of sequence order: " + span.getSequence());
+        }
+
+        int chunkIndex = chunkIndex(row);
+        ByteBuffer chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            chunk = ByteBuffer.allocateDirect(rowsPerChunk * ROW_SIZE);
+            chunks[chunkIndex] = chunk;
+        }
+        int offset = offset(row);
+        maxEndTime = Math.max(maxEndTime, endTime);
+        maxEndTimes[block] = maxEndTime;
+        int endTimeDelta = saturatedInt(endTime - baseEndTimes[block]);
+        long storedEndTime = baseEndTimes[block] + endTimeDelta;
+        long executionNanos = Math.max(0, Math.min(span.getEndNanos() - span.getStartNanos(), MAX_EXECUTION_NANOS));
+        long threadIdDelta = span.getThreadId() - baseThreadIds[block];
+        chunk.putLong(offset + TRANSACTION_ID, span.getTransactionId());
+        chunk.putLong(offset + ALLOCATED_BYTES, span.getAllocatedBytes());
+        chunk.putLong(offset + EXECUTION_NANOS_DEPTH,
+                (long) Math.max(0, Math.min(span.getDepth(), MAX_DEPTH)) << 48 | executionNanos);
+        chunk.putInt(offset + SEQUENCE_DELTA, (int) sequenceDelta);
+        chunk.putInt(offset + END_TIME_DELTA, endTimeDelta);
+        chunk.putInt(offset + END_NANOS_DELTA,
+                saturatedInt(span.getEndNanos() - storedEndTime * 1_000_000 - baseClockOffsets[block]));
+        chunk.putInt(offset + THREAD_ID_DELTA,
+                threadIdDelta > Integer.MIN_VALUE && threadIdDelta <= Integer.MAX_VALUE ? (int) threadIdDelta : Integer.MIN_VALUE);
+        chunk.putInt(offset + THREAD_NAME_REF,
+                span.getThreadName() != null ? threadNames.intern(span.getThreadName()) : -1);
+        chunk.putInt(offset + METHOD_ID, span.getMethodId());
+        chunk.putInt(offset + SPAN_ID, span.getSpanId());
+        chunk.putInt(offset + PARENT_SPAN_ID, span.getParentSpanId());
+        chunk.putChar(offset + SELF_TIME_SHARE, toShare(span.getSelfTimeNanos(), executionNanos));
+        chunk.putChar(offset + CPU_TIME_SHARE, toShare(span.getCpuTimeNanos(), executionNanos));
+        chunk.putChar(offset + USER_TIME_SHARE, toShare(span.getUserTimeNanos(), executionNanos));
+        char exceptionRef = NO_EXCEPTION;
+        if (span.getException() != null) {
+            // Beyond the ids that fit, the type is unknown rather than wrong: the span is still marked as failed
+            int id = exceptionTypes.intern(StoredException.typeOf(span.getException()));
+            exceptionRef = id < UNKNOWN_EXCEPTION ? (char) id : UNKNOWN_EXCEPTION;
+        }
+        chunk.putChar(offset + EXCEPTION_REF, exceptionRef);
+        head = row + 1;
+    }
+
+    /**
+     * Rows are in completion order, so the rows before the first one whose running maximum reaches the cutoff are
+     * all expired. A late row with an older end time is kept until a row after it expires.
+     */
+    @Override
+    public int expireBefore(long cutoff) {
+        return advanceTail(seekEndTime(cutoff));
+    }
+
+    @Override
+    public int trimTo(int maxSize) {
+        return advanceTail(head - maxSize);
+    }
+
+    /**
+     * @return number of released rows.
+     */
+    private int advanceTail(long target) {
+        while (true) {
+            long current = tail.get();
+            if (target <= current) {
+                return 0;
+            }
+            if (tail.compareAndSet(current, target)) {
+                return (int) Math.min(target - current, Integer.MAX_VALUE);
+            }
+        }
+    }
+
+    @Override
+    public List<TransactionSpan> snapshot() {
+        return scan(tail.get(), Integer.MAX_VALUE, (chunk, offset, block) -> true, span -> true);
+    }
+
+    @Override
+    public List<TransactionSpan> snapshotRange(long from, long to) {
+        if (from > to) {
+            return new ArrayList<>();
+        }
+        return scan(seekEndTime(from), Integer.MAX_VALUE, (chunk, offset, block) -> {
+            long endTime = endTime(chunk, offset, block);
+            return endTime >= from && endTime <= to;
+        }, span -> true);
+    }
+
+    @Override
+    public List<TransactionSpan> snapshotOverlapping(long startTime, long endTime) {
+        return scan(seekEndTime(startTime), Integer.MAX_VALUE,
+                (chunk, offset, block) -> overlaps(chunk, offset, block, startTime, endTime), span -> true);
+    }
+
+    @Override
+    public List<TransactionSpan> snapshotAfter(long sequence, int limit) {
+        return scan(seekSequence(sequence + 1), limit, (chunk, offset, block) -> true, span -> true);
+    }
+
+    @Override
+    public List<TransactionSpan> snapshotLatest(int count) {
+        return scan(Math.max(0, head - count), count, (chunk, offset, block) -> true, span -> true);
+    }
+
+    @Override
+    public List<TransactionSpan> getByTransaction(long transactionId) {
+        return scan(tail.get(), Integer.MAX_VALUE,
+                (chunk, offset, block) -> chunk.getLong(offset + TRANSACTION_ID) == transactionId, span -> true);
+    }
+
+    @Override
+    public List<TransactionSpan> getByMethod(int methodId, long startTime, long endTime,
+                                             Predicate<? super TransactionSpan> filter) {
+        return scan(seekEndTime(startTime), Integer.MAX_VALUE, (chunk, offset, block) ->
+                chunk.getInt(offset + METHOD_ID) == methodId && overlaps(chunk, offset, block, startTime, endTime), filter);
+    }
+
+    @Override
+    public List<TransactionSpan> getByThread(long threadId, long startTime, long endTime) {
+        return scan(seekEndTime(startTime), Integer.MAX_VALUE, (chunk, offset, block) ->
+                threadId(chunk, offset, block) == threadId && overlaps(chunk, offset, block, startTime, endTime),
+                span -> true);
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Math.max(0, head - tail.get()), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Release all the rows. The off-heap chunks are kept for the next rows.
+     */
+    @Override
+    public void clear() {
+        advanceTail(head);
+    }
+
+    /**
+     * @return bytes currently reserved off-heap.
+     */
+    public long getReservedBytes() {
+        long reserved = 0;
+        for (ByteBuffer chunk : chunks) {
+            if (chunk != null) {
+                reserved += chunk.capacity();
+            }
+        }
+        return reserved;
+    }
+
+    /**
+     * Decode the live rows from a row onwards: only the columns of the row filter are read for the other rows.
+     */
+    private List<TransactionSpan> scan(long fromRow, int limit, RowFilter rowFilter, Predicate<? super TransactionSpan> filter) {
+        List<TransactionSpan> result = new ArrayList<>();
+        long to = head;
+        for (long row = Math.max(fromRow, tail.get()); row < to && result.size() < limit; row++) {
+            ByteBuffer chunk = chunks[chunkIndex(row)];
+            int offset = offset(row);
+            int block = blockIndex(row);
+            if (rowFilter.test(chunk, offset, block)) {
+                TransactionSpan span = decode(chunk, offset, block);
+                // A torn row passing the filter is always overwritten meanwhile: this check discards it
+                if (isLive(row) && filter.test(span)) {
+                    result.add(span);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Binary search the blocks by their running maximum, then the block by the end times of its rows.
+     *
+     * @param endTime end time to be looked for.
+     * @return the first live row whose running maximum of the end times reaches the given value.
+     */
+    private long seekEndTime(long endTime) {
+        long low = tail.get();
+        long high = head;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (maxEndTimes[blockIndex(middle)] < endTime) {
+                low = blockEnd(middle);
+            } else {
+                high = middle;
+            }
+        }
+        // The running maximum stays below the value up to this block: within it, it first reaches it at such a row
+        long end = Math.min(blockEnd(low), head);
+        int block = blockIndex(low);
+        while (low < end && endTime(chunks[chunkIndex(low)], offset(low), block) < endTime) {
+            low++;
+        }
+        // The rows overwritten during the search are the oldest ones: at worst the search stops before the new tail
+        return Math.max(low, tail.get());
+    }
+
+    /**
+     * @param sequence sequence to be looked for.
+     * @return the first live row whose sequence reaches the given value.
+     */
+    private long seekSequence(long sequence) {
+        long low = tail.get();
+        long high = head;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (sequence(chunks[chunkIndex(middle)], offset(middle), blockIndex(middle)) < sequence) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return Math.max(low, tail.get());
+    }
+
+    private boolean isLive(long row) {
+        // The row has been read before the tail: if it is still live now, it was not overwritten while being read
+        VarHandle.loadLoadFence();
+        return row >= tail.get();
+    }
+
+    private TransactionSpan decode(ByteBuffer chunk, int offset, int block) {
+        TransactionSpan span = new TransactionSpan();
+        long endTime = endTime(chunk, offset, block);
+        long endNanos = endTime * 1_000_000 + baseClockOffsets[block] + chunk.getInt(offset + END_NANOS_DELTA);
+        long executionNanosDepth = chunk.getLong(offset + EXECUTION_NANOS_DEPTH);
+        long executionNanos = executionNanosDepth & MAX_EXECUTION_NANOS;
+        long startTime = endTime - executionNanos / 1_000_000;
+        int methodId = chunk.getInt(offset + METHOD_ID);
+        char exceptionRef = chunk.getChar(offset + EXCEPTION_REF);
+        span.setSequence(sequence(chunk, offset, block));
+        span.setTransactionId(chunk.getLong(offset + TRANSACTION_ID));
+        span.setSpanId(chunk.getInt(offset + SPAN_ID));
+        span.setParentSpanId(chunk.getInt(offset + PARENT_SPAN_ID));
+        span.setDepth((int) (executionNanosDepth >>> 48));
+        span.setThreadId(threadId(chunk, offset, block));
+        span.setThreadName(threadNames.get(chunk.getInt(offset + THREAD_NAME_REF)));
+        span.setMethodId(methodId);
+        span.setMethodName(methodNames.apply(methodId));
+        span.setStartTime(startTime);
+        span.setStartNanos(endNanos - executionNanos);
+        span.setEndTime(endTime);
+        span.setEndNanos(endNanos);
+        span.setExecutionTime(endTime - startTime);
+        span.setSelfTimeNanos(fromShare(chunk.getChar(offset + SELF_TIME_SHARE), executionNanos));
+        span.setCpuTimeNanos(fromShare(chunk.getChar(offset + CPU_TIME_SHARE), executionNanos));
+        span.setUserTimeNanos(fromShare(chunk.getChar(offset + USER_TIME_SHARE), executionNanos));
+        span.setAllocatedBytes(chunk.getLong(offset + ALLOCATED_BYTES));
+        if (exceptionRef != NO_EXCEPTION) {
+            String exceptionType = exceptionRef != UNKNOWN_EXCEPTION ? exceptionTypes.get(exceptionRef) : null;
+            span.setException(new StoredException(exceptionType != null ? exceptionType : UNKNOWN_EXCEPTION_TYPE));
+        }
+        span.complete();
+        return span;
+    }
+
+    private long sequence(ByteBuffer chunk, int offset, int block) {
+        return baseSequences[block] + chunk.getInt(offset + SEQUENCE_DELTA);
+    }
+
+    private long endTime(ByteBuffer chunk, int offset, int block) {
+        return baseEndTimes[block] + chunk.getInt(offset + END_TIME_DELTA);
+    }
+
+    private long threadId(ByteBuffer chunk, int offset, int block) {
+        int delta = chunk.getInt(offset + THREAD_ID_DELTA);
+        return delta != Integer.MIN_VALUE ? baseThreadIds[block] + delta : -1;
+    }
+
+    /**
+     * @see TransactionSpan#overlaps(long, long)
+     */
+    private boolean overlaps(ByteBuffer chunk, int offset, int block, long startTime, long endTime) {
+        long spanEndTime = endTime(chunk, offset, block);
+        long executionNanos = chunk.getLong(offset + EXECUTION_NANOS_DEPTH) & MAX_EXECUTION_NANOS;
+        return spanEndTime >= startTime && spanEndTime - executionNanos / 1_000_000 <= endTime;
+    }
+
+    /**
+     * @return the duration as a share of the execution time ({@link #NOT_MEASURED} if negative).
+     */
+    private static char toShare(long nanos, long executionNanos) {
+        if (nanos < 0) {
+            return NOT_MEASURED;
+        }
+        return executionNanos > 0 ? (char) Math.round(Math.min(nanos, executionNanos) * FULL_SHARE / executionNanos) : 0;
+    }
+
+    private static long fromShare(char share, long executionNanos) {
+        return share == NOT_MEASURED ? -1 : Math.round(share * (executionNanos / FULL_SHARE));
+    }
+
+    private static int saturatedInt(long value) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(value, Integer.MAX_VALUE));
+    }
+
+    private int chunkIndex(long row) {
+        return (int) ((row / rowsPerChunk) % chunks.length);
+    }
+
+    private int offset(long row) {
+        return (int) (row % rowsPerChunk) * ROW_SIZE;
+    }
+
+    private int blockIndex(long row) {
+        return chunkIndex(row) * blocksPerChunk + (int) (row % rowsPerChunk) / BLOCK_ROWS;
+    }
+
+    /**
+     * @return the first row of the block of a row.
+     */
+    private long blockStart(long row) {
+        return row - (row % rowsPerChunk) % BLOCK_ROWS;
+    }
+
+    /**
+     * @return the row after the last one of the block of a row (blocks do not cross chunks).
+     */
+    private long blockEnd(long row) {
+        long chunkEnd = row - row % rowsPerChunk + rowsPerChunk;
+        return Math.min(blockStart(row) + BLOCK_ROWS, chunkEnd);
+    }
+
+    @FunctionalInterface
+    private interface RowFilter {
+        boolean test(ByteBuffer chunk, int offset, int block);
+    }
+}
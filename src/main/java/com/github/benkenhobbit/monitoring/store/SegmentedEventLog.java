@@ -0,0 +1,385 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Event log partitioned in time segments (for example one segment per minute).
+ * <p>
+ * Elements are appended to the segment of their timestamp by a single writer. Time-based expiry drops whole segments,
+ * without looking at their elements, while count-based limits are enforced by {@link #trimTo(int)}, meant to be called
+ * periodically by a background sweeper: the log can therefore exceed its limit between two sweeps. A late element may
+ * be appended to a segment the sweeper is unlinking: the writer then notices the eviction and moves the element to a
+ * new segment for the same time span, so every element is either kept or passed to the eviction listener. Readers copy the
+ * segments without stopping the writer. Time range queries select the segments through their keys and binary search the
+ * first element inside a segment, so they do not scan the whole log.
+ *
+ * @param <E> type of the stored elements.
+ */
+public class SegmentedEventLog<E> {
+
+    private final long segmentMillis;
+
+    private final ToLongFunction<? super E> timestampFunction;
+
+    /**
+     * Called with each element dropped by expiry or trimming (not by {@link #clear()}), on the pruning thread.
+     */
+    private final Consumer<? super E> evictionListener;
+
+    /**
+     * Segment start time -> segment, in chronological order.
+     */
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param segmentMillis time span of each segment in milliseconds.
+     * @param timestampFunction timestamp (milliseconds) used to choose the segment of an element.
+     */
+    public SegmentedEventLog(long segmentMillis, ToLongFunction<? super E> timestampFunction) {
+        this(segmentMillis, timestampFunction, element -> {
+        });
+    }
+
+    /**
+     * @param segmentMillis time span of each segment in milliseconds.
+     * @param timestampFunction timestamp (milliseconds) used to choose the segment of an element.
+     * @param evictionListener called with each element dropped by expiry or trimming, to keep indexes in sync.
+     */
+    public SegmentedEventLog(long segmentMillis, ToLongFunction<? super E> timestampFunction,
+                             Consumer<? super E> evictionListener) {
+        if (segmentMillis <= 0) {
+            throw new IllegalArgumentException("Segment duration must be positive: " + segmentMillis);
+        }
+        this.segmentMillis = segmentMillis;
+        this.timestampFunction = timestampFunction;
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * Append an element to the segment of its timestamp (single writer thread).
+     *
+     * @param element element to be stored.
+     */
+    public void add(E element) {
+        long timestamp = timestampFunction.applyAsLong(element);
+        long segmentStart = timestamp - Math.floorMod(timestamp, segmentMillis);
+        Segment segment = segments.get(segmentStart);
+        if (segment == null) {
+            segment = segments.computeIfAbsent(segmentStart, k -> new Segment());
+        }
+        // Unlinked by the sweeper meanwhile, without this element: appended again to a segment still linked
+        while (!segment.add(element, timestamp)) {
+            segment = segments.computeIfAbsent(segmentStart, k -> new Segment());
+        }
+    }
+
+    /**
+     * Drop the segments whose whole time span is older than the cutoff: the cost depends on the number of expired
+     * segments, not on the number of elements. Elements of the segment containing the cutoff are kept.
+     *
+     * @param cutoff oldest timestamp to be kept.
+     * @return number of dropped elements.
+     */
+    public int expireBefore(long cutoff) {
+        int removed = 0;
+        ConcurrentNavigableMap<Long, Segment> expired = segments.headMap(cutoff - segmentMillis, true);
+        for (Map.Entry<Long, Segment> entry : expired.entrySet()) {
+            if (segments.remove(entry.getKey(), entry.getValue())) {
+                removed += entry.getValue().evict();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Drop the oldest elements beyond the limit: whole segments first, then the head of the oldest remaining one.
+     *
+     * @param maxSize number of elements to be kept.
+     * @return number of dropped elements.
+     */
+    public int trimTo(int maxSize) {
+        int excess = size() - maxSize;
+        int removed = 0;
+        while (excess > 0) {
+            Map.Entry<Long, Segment> oldest = segments.firstEntry();
+            Map.Entry<Long, Segment> newest = segments.lastEntry();
+            if (oldest == null || newest == null) {
+                break;
+            }
+            Segment segment = oldest.getValue();
+            int segmentSize = segment.size();
+            // The newest segment is kept, the writer is most likely appending to it
+            if (segmentSize <= excess && segment != newest.getValue()) {
+                segments.remove(oldest.getKey(), segment);
+                segment.evict();
+                excess -= segmentSize;
+                removed += segmentSize;
+            } else {
+                removed += segment.dropHead(excess);
+                break;
+            }
+        }
+        return removed;
+    }
+
+    public void clear() {
+        segments.clear();
+    }
+
+    /**
+     * @return all elements, oldest segment first.
+     */
+    public List<E> snapshot() {
+        return snapshot(Integer.MAX_VALUE, element -> true);
+    }
+
+    /**
+     * @param limit maximum number of elements.
+     * @return the oldest elements, at most limit.
+     */
+    public List<E> snapshot(int limit) {
+        return snapshot(limit, element -> true);
+    }
+
+    /**
+     * @param filter condition on the elements to be returned.
+     * @return matching elements, oldest segment first.
+     */
+    public List<E> snapshot(Predicate<? super E> filter) {
+        return snapshot(Integer.MAX_VALUE, filter);
+    }
+
+    private List<E> snapshot(int limit, Predicate<? super E> filter) {
+        List<E> result = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (!segment.copyTo(result, limit, filter)) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param from lowest timestamp (inclusive).
+     * @param to highest timestamp (inclusive).
+     * @return the elements whose timestamp is in the range, oldest segment first.
+     */
+    public List<E> snapshotRange(long from, long to) {
+        return snapshotRange(from, to, element -> true);
+    }
+
+    /**
+     * @param from lowest timestamp (inclusive).
+     * @param to highest timestamp (inclusive).
+     * @param filter condition on the elements to be returned.
+     * @return the matching elements whose timestamp is in the range, oldest segment first.
+     */
+    public List<E> snapshotRange(long from, long to, Predicate<? super E> filter) {
+        List<E> result = new ArrayList<>();
+        if (from > to) {
+            return result;
+        }
+        long firstSegmentStart = from - Math.floorMod(from, segmentMillis);
+        for (Segment segment : segments.subMap(firstSegmentStart, true, to, true).values()) {
+            segment.copyRange(result, from, to, filter);
+        }
+        return result;
+    }
+
+    /**
+     * @return number of stored elements (approximate while the writer is appending).
+     */
+    public int size() {
+        long size = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.size();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Append-only array written by a single thread. Its head can be dropped by another thread: dropped slots are
+     * cleared, and skipped by readers.
+     */
+    private final class Segment {
+
+        private volatile Object[] elements = new Object[64];
+
+        /**
+         * Highest timestamp among the elements up to each index: non-decreasing even if the elements are slightly out
+         * of order, so it can be binary searched.
+         */
+        private volatile long[] maxTimestamps = new long[64];
+
+        /**
+         * Number of appended elements, written after the element itself so that readers only see complete slots.
+         */
+        private volatile int end;
+
+        /**
+         * First element not dropped yet.
+         */
+        private volatile int start;
+
+        /**
+         * Set once the segment is unlinked from the log, before its elements are notified.
+         */
+        private volatile boolean evicted;
+
+        /**
+         * Number of elements notified by {@link #evict()} (guarded by the segment lock).
+         */
+        private int evictedEnd;
+
+        /**
+         * @return false if the segment was evicted without this element, which must then be added elsewhere.
+         */
+        boolean add(E element, long timestamp) {
+            int index = end;
+            Object[] array = elements;
+            long[] maxArray = maxTimestamps;
+            if (index == array.length) {
+                maxArray = Arrays.copyOf(maxArray, index * 2);
+                maxTimestamps = maxArray;
+                array = Arrays.copyOf(array, index * 2);
+                elements = array;
+            }
+            maxArray[index] = index > 0 ? Math.max(maxArray[index - 1], timestamp) : timestamp;
+            array[index] = element;
+            end = index + 1;
+            // Volatile write of end then read of evicted, while evict() writes evicted then reads end: if the eviction
+            // is not seen here, it sees the element. Otherwise its lock tells whether the element was notified.
+            if (!evicted) {
+                return true;
+            }
+            synchronized (this) {
+                return index < evictedEnd;
+            }
+        }
+
+        synchronized int dropHead(int count) {
+            int from = start;
+            int to = (int) Math.min((long) from + count, end);
+            Object[] array = elements;
+            notifyEviction(array, from, to);
+            Arrays.fill(array, from, to, null);
+            start = to;
+            return to - from;
+        }
+
+        /**
+         * Notify the eviction of all the remaining elements of a segment already unlinked from the log.
+         *
+         * @return number of evicted elements.
+         */
+        synchronized int evict() {
+            evicted = true;
+            int from = start;
+            int to = end;
+            evictedEnd = to;
+            notifyEviction(elements, from, to);
+            return to - from;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void notifyEviction(Object[] array, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (array[i] != null) {
+                    evictionListener.accept((E) array[i]);
+                }
+            }
+        }
+
+        int size() {
+            return end - start;
+        }
+
+        /**
+         * Copy the elements of the range: the elements before the first one whose running maximum reaches the lower
+         * bound are all older than the range and are skipped without being looked at.
+         */
+        @SuppressWarnings("unchecked")
+        void copyRange(List<E> result, long fromTimestamp, long toTimestamp, Predicate<? super E> filter) {
+            int to = end;
+            int low = start;
+            int high = to;
+            Object[] array = elements;
+            long[] maxArray = maxTimestamps;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (maxArray[middle] < fromTimestamp) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            for (int i = low; i < to; i++) {
+                E element = (E) array[i];
+                if (element != null) {
+                    long timestamp = timestampFunction.applyAsLong(element);
+                    if (timestamp >= fromTimestamp && timestamp <= toTimestamp && filter.test(element)) {
+                        result.add(element);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return false once the limit has been reached.
+         */
+        @SuppressWarnings("unchecked")
+        boolean copyTo(List<E> result, int limit, Predicate<? super E> filter) {
+            int from = start;
+            int to = end;
+            Object[] array = elements;
+            for (int i = from; i < to; i++) {
+                if (result.size() >= limit) {
+                    return false;
+                }
+                E element = (E) array[i];
+                if (element != null && filter.test(element)) {
+                    result.add(element);
+                }
+            }
+            return result.size() < limit;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.store;
+
+import com.github.benkenhobbit.monitoring.model.TransactionSpan;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Storage of the completed spans, with the lookups needed by the monitoring queries.
+ * <p>
+ * Spans are added in increasing sequence order, pruned and cleared by a single writer (the pipeline consumer, which
+ * also runs the pruning requested by the background sweeper), while readers may query the store from any thread.
+ * Every query returns a new list that the caller is free to modify.
+ */
+public interface SpanStore {
+
+    /**
+     * Store a completed span (writer thread).
+     *
+     * @param span span to be stored.
+     */
+    void add(TransactionSpan span);
+
+    /**
+     * Drop the spans that ended before the cutoff (writer thread, the granularity depends on the implementation).
+     *
+     * @param cutoff oldest end time to be kept.
+     * @return number of dropped spans.
+     */
+    int expireBefore(long cutoff);
+
+    /**
+     * Drop the oldest spans beyond the limit (writer thread).
+     *
+     * @param maxSize number of spans to be kept.
+     * @return number of dropped spans.
+     */
+    int trimTo(int maxSize);
+
+    /**
+     * @return all the spans, in completion order.
+     */
+    List<TransactionSpan> snapshot();
+
+    /**
+     * @param from lowest end time (inclusive).
+     * @param to highest end time (inclusive).
+     * @return the spans that ended in the range.
+     */
+    List<TransactionSpan> snapshotRange(long from, long to);
+
+    /**
+     * @param startTime start of the range (inclusive).
+     * @param endTime end of the range (inclusive).
+     * @return the spans running at some point of the range (see {@link TransactionSpan#overlaps(long, long)}).
+     */
+    List<TransactionSpan> snapshotOverlapping(long startTime, long endTime);
+
+    /**
+     * @param sequence sequence of the last span already read (0 to read from the oldest one).
+     * @param limit maximum number of spans.
+     * @return the spans with a higher sequence, in sequence order, at most limit.
+     */
+    List<TransactionSpan> snapshotAfter(long sequence, int limit);
+
+    /**
+     * @param count maximum number of spans.
+     * @return the spans with the highest sequences, in sequence order, at most count.
+     */
+    List<TransactionSpan> snapshotLatest(int count);
+
+    /**
+     * @param transactionId correlation ID of the transaction.
+     * @return the spans of the transaction, in completion order.
+     */
+    List<TransactionSpan> getByTransaction(long transactionId);
+
+    /**
+     * @param methodId id of the method (see {@link com.github.benkenhobbit.monitoring.registry.MethodDescriptor}).
+     * @param startTime start of the range (inclusive).
+     * @param endTime end of the range (inclusive).
+     * @param filter condition on the spans to be returned.
+     * @return the matching spans of the method running at some point of the range.
+     */
+    List<TransactionSpan> getByMethod(int methodId, long startTime, long endTime, Predicate<? super TransactionSpan> filter);
+
+    /**
+     * @param threadId id of the thread.
+     * @param startTime start of the range (inclusive).
+     * @param endTime end of the range (inclusive).
+     * @return the spans of the thread running at some point of the range.
+     */
+    List<TransactionSpan> getByThread(long threadId, long startTime, long endTime);
+
+    /**
+     * @return number of stored spans (approximate while the writer is appending).
+     */
+    int size();
+
+    /**
+     * Drop all the spans (writer thread).
+     */
+    void clear();
+}
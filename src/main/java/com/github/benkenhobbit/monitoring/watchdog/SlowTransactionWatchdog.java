@@ -0,0 +1,236 @@
+/**
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2025, A. Aquila
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.benkenhobbit.monitoring.watchdog;
+
+import com.github.benkenhobbit.monitoring.model.StackProfile;
+import com.github.benkenhobbit.monitoring.registry.MonitoredThread;
+import com.github.benkenhobbit.monitoring.registry.ThreadRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Samples the stacks of the slow running invocations, so that only slow transactions pay for stack traces.
+ * <p>
+ * A background thread scans the running invocations of each monitored thread every interval, the innermost one and
+ * its callers. Once an invocation runs for longer than the threshold of its method, its thread stack is sampled at each
+ * scan until it ends. All the slow platform threads of a scan are sampled in a single
+ * {@link ThreadMXBean#getThreadInfo(long[], int)} call, the virtual threads (unknown to the MXBean) one by one. Each
+ * slow invocation has its own {@link StackProfile}, attached to its frame: a sample goes to all the slow invocations of
+ * the thread, so a slow call keeps its profile across the calls it makes, and each profile is attached to the span of
+ * its invocation when it ends.
+ */
+@Slf4j
+public class SlowTransactionWatchdog implements Closeable {
+
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final ThreadRegistry threadRegistry;
+
+    private final IntFunction<String> methodNames;
+
+    private final long thresholdNanos;
+
+    /**
+     * Method name -> threshold in nanoseconds, overriding the default one.
+     */
+    private final Map<String, Long> methodThresholdNanos;
+
+    private final long intervalMillis;
+
+    private final int stackDepth;
+
+    /**
+     * Thread id -> slow invocations being sampled, outermost first (scanning thread only).
+     */
+    private Map<Long, List<Sampled>> sampled = new HashMap<>();
+
+    private ScheduledExecutorService scanner;
+
+    private record Sampled(long invocation, StackProfile profile) {
+    }
+
+    /**
+     * @param threadRegistry threads running monitored methods.
+     * @param methodNames method id -> shrunk method name.
+     * @param thresholdMillis default threshold in milliseconds.
+     * @param methodThresholds thresholds by method name in milliseconds (see {@link #parseThresholds(String)}).
+     * @param intervalMillis interval between two scans (and two samples of a slow invocation) in milliseconds.
+     * @param stackDepth maximum number of frames of a sample, innermost first.
+     */
+    public SlowTransactionWatchdog(ThreadRegistry threadRegistry, IntFunction<String> methodNames, long thresholdMillis,
+                                   Map<String, Long> methodThresholds, long intervalMillis, int stackDepth) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Invalid sampling interval: " + intervalMillis);
+        }
+        this.threadRegistry = threadRegistry;
+        this.methodNames = methodNames;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.methodThresholdNanos = new HashMap<>();
+        methodThresholds.forEach((method, threshold) -> methodThresholdNanos.put(method, TimeUnit.MILLISECONDS.toNanos(threshold)));
+        this.intervalMillis = intervalMillis;
+        this.stackDepth = Math.max(1, stackDepth);
+    }
+
+    /**
+     * Parse thresholds by method.
+     *
+     * @param thresholds comma separated <i>method=milliseconds</i> pairs, the method being the shrunk name displayed
+     *                   in the events (e.g. <i>c.g.b.m.d.c.DatabaseInterface.getInstrumentRequired=200</i>).
+     * @return method name -> threshold in milliseconds.
+     */
+    public static Map<String, Long> parseThresholds(String thresholds) {
+        Map<String, Long> parsed = new HashMap<>();
+        if (thresholds == null || thresholds.isBlank()) {
+            return parsed;
+        }
+        for (String pair : thresholds.split(",")) {
+            int separator = pair.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid method threshold, expected method=milliseconds: " + pair);
+            }
+            parsed.put(pair.substring(0, separator).trim(), Long.parseLong(pair.substring(separator + 1).trim()));
+        }
+        return parsed;
+    }
+
+    public void start() {
+        scanner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transaction-monitoring-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scanner.scheduleAtFixedRate(this::scanSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        if (scanner != null) {
+            scanner.shutdownNow();
+        }
+    }
+
+    private void scanSafely() {
+        try {
+            scan();
+        } catch (RuntimeException e) {
+            // An exception would cancel the periodic scan
+            log.warn("Slow transaction scan failed", e);
+        }
+    }
+
+    /**
+     * Sample the stacks of the slow running invocations (scanning thread only).
+     */
+    void scan() {
+        long now = System.nanoTime();
+        Map<Long, List<Sampled>> slow = new HashMap<>();
+        List<Long> threadIds = new ArrayList<>();
+        threadRegistry.forEach(thread -> {
+            List<Sampled> previous = sampled.get(thread.getId());
+            List<Sampled> profiled = null;
+            for (MonitoredThread.Running running : thread.getOpenSpans()) {
+                if (now - running.startNanos() < thresholdNanos(running.methodId())) {
+                    continue;
+                }
+                Sampled current = find(previous, running.invocation());
+                if (current == null) {
+                    current = new Sampled(running.invocation(), new StackProfile(intervalMillis));
+                    thread.attachProfile(running.invocation(), current.profile());
+                }
+                if (profiled == null) {
+                    profiled = new ArrayList<>(2);
+                }
+                profiled.add(current);
+            }
+            if (profiled == null) {
+                return;
+            }
+            slow.put(thread.getId(), profiled);
+            if (thread.isVirtual()) {
+                // Not known to the thread MXBean: sampled one by one
+                addSample(profiled, thread.getStackTrace(stackDepth));
+            } else {
+                threadIds.add(thread.getId());
+            }
+        });
+        // Invocations no longer running are forgotten, their profile belongs to their span
+        sampled = slow;
+        if (threadIds.isEmpty()) {
+            return;
+        }
+
+        long[] ids = new long[threadIds.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = threadIds.get(i);
+        }
+        ThreadInfo[] infos = THREAD_BEAN.getThreadInfo(ids, stackDepth);
+        for (int i = 0; i < ids.length; i++) {
+            // A sample may land just after the end of the invocation: the profile then has one sample too many
+            if (infos[i] != null) {
+                addSample(slow.get(ids[i]), infos[i].getStackTrace());
+            }
+        }
+    }
+
+    private static Sampled find(List<Sampled> sampled, long invocation) {
+        if (sampled != null) {
+            for (Sampled current : sampled) {
+                if (current.invocation() == invocation) {
+                    return current;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void addSample(List<Sampled> sampled, StackTraceElement[] stack) {
+        for (Sampled current : sampled) {
+            current.profile().add(stack);
+        }
+    }
+
+    private long thresholdNanos(int methodId) {
+        if (methodThresholdNanos.isEmpty()) {
+            return thresholdNanos;
+        }
+        String methodName = methodNames.apply(methodId);
+        Long threshold = methodName != null ? methodThresholdNanos.get(methodName) : null;
+        return threshold != null ? threshold : thresholdNanos;
+    }
+}
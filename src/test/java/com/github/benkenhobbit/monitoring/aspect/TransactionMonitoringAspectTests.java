@@ -0,0 +1,235 @@
+package com.github.benkenhobbit.monitoring.aspect;
+
+import com.github.benkenhobbit.monitoring.config.TransactionMonitoringConfiguration;
+import com.github.benkenhobbit.monitoring.model.InFlightSpan;
+import com.github.benkenhobbit.monitoring.model.InFlightTransactions;
+import com.github.benkenhobbit.monitoring.model.SpanNode;
+import com.github.benkenhobbit.monitoring.model.TransactionEvent;
+import com.github.benkenhobbit.monitoring.pipeline.OverflowPolicy;
+import com.github.benkenhobbit.monitoring.registry.VirtualThreadGrouping;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The monitoring aspect applied by a proxy, without Spring context nor transaction manager.
+ */
+class TransactionMonitoringAspectTests {
+
+	interface Service {
+
+		void root();
+
+		void child();
+
+		void grandChild();
+
+		void waitingRoot(CountDownLatch entered, CountDownLatch released);
+
+		void waitingChild(CountDownLatch entered, CountDownLatch released);
+	}
+
+	static class MonitoredService implements Service {
+
+		Service self;
+
+		@Override
+		@Transactional
+		public void root() {
+			work(3);
+			self.child();
+			self.child();
+		}
+
+		@Override
+		@Transactional(propagation = Propagation.REQUIRES_NEW)
+		public void child() {
+			work(1);
+			self.grandChild();
+		}
+
+		@Override
+		@Transactional
+		public void grandChild() {
+			work(1);
+		}
+
+		@Override
+		@Transactional
+		public void waitingRoot(CountDownLatch entered, CountDownLatch released) {
+			self.waitingChild(entered, released);
+		}
+
+		@Override
+		@Transactional(propagation = Propagation.REQUIRES_NEW)
+		public void waitingChild(CountDownLatch entered, CountDownLatch released) {
+			entered.countDown();
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static void work(long millis) {
+		long end = System.nanoTime() + millis * 1_000_000;
+		while (System.nanoTime() < end) {
+			LockSupport.parkNanos(100_000);
+		}
+	}
+
+	private TransactionMonitoringAspect aspect;
+
+	private Service service;
+
+	@BeforeEach
+	void start() {
+		TransactionMonitoringConfiguration configuration = new TransactionMonitoringConfiguration();
+		configuration.setEnabled(true);
+		configuration.setMaxEventLogSize(1000);
+		configuration.setMaxEventLogTime(24);
+		configuration.setLogSegmentDuration(60);
+		configuration.setLogSweepInterval(1000);
+		configuration.setVirtualThreadGrouping(VirtualThreadGrouping.TASK);
+		configuration.setIdNodeId(-1);
+		configuration.setPipelineQueueCapacity(8192);
+		configuration.setPipelineBatchSize(256);
+		configuration.setPipelineOverflowPolicy(OverflowPolicy.BLOCK);
+		aspect = new TransactionMonitoringAspect(configuration);
+		aspect.start();
+
+		MonitoredService target = new MonitoredService();
+		AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+		proxyFactory.addAspect(aspect);
+		service = proxyFactory.getProxy();
+		target.self = service;
+	}
+
+	@AfterEach
+	void stop() {
+		aspect.stop();
+	}
+
+	private static long childrenNanos(SpanNode node) {
+		return node.getChildren().stream().mapToLong(SpanNode::getExecutionTimeNanos).sum();
+	}
+
+	@Test
+	void selfTimeExcludesTheDirectChildren() {
+		service.root();
+		assertTrue(aspect.flush());
+
+		List<TransactionEvent> events = aspect.getEventsSince(0, 100);
+		// START and COMPLETE of the five spans
+		assertEquals(10, events.size());
+		List<SpanNode> tree = aspect.getCallTree(events.get(0).getTransactionId());
+
+		assertEquals(1, tree.size());
+		SpanNode root = tree.get(0);
+		assertEquals(2, root.getChildren().size());
+		// Only the direct children are subtracted, not the grandchildren
+		assertEquals(root.getExecutionTimeNanos() - childrenNanos(root), root.getSelfTimeNanos());
+		assertTrue(root.getSelfTimeNanos() >= 3_000_000);
+		for (SpanNode child : root.getChildren()) {
+			assertEquals(1, child.getChildren().size());
+			assertEquals(child.getExecutionTimeNanos() - childrenNanos(child), child.getSelfTimeNanos());
+			assertTrue(child.getSelfTimeNanos() >= 1_000_000);
+			SpanNode grandChild = child.getChildren().get(0);
+			assertTrue(grandChild.getChildren().isEmpty());
+			assertEquals(grandChild.getExecutionTimeNanos(), grandChild.getSelfTimeNanos());
+		}
+	}
+
+	@Test
+	void resumesFromASequenceWithoutGapsNorDuplicates() throws Exception {
+		ExecutorService callers = Executors.newFixedThreadPool(4);
+		List<Future<?>> calls = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			calls.add(callers.submit(service::root));
+		}
+
+		// A client polling small pages while the spans are being stored, then once everything is flushed
+		List<Long> received = new ArrayList<>();
+		long cursor = 0;
+		boolean flushed = false;
+		while (true) {
+			List<TransactionEvent> events = aspect.getEventsSince(cursor, 7);
+			for (TransactionEvent event : events) {
+				if (event.getEventType() == TransactionMonitoringAspect.TransactionEventType.COMPLETE) {
+					received.add(event.getSequence());
+				}
+				cursor = Math.max(cursor, event.getSequence());
+			}
+			if (events.isEmpty()) {
+				if (flushed) {
+					break;
+				}
+				flushed = calls.stream().allMatch(Future::isDone) && aspect.flush();
+				LockSupport.parkNanos(100_000);
+			}
+		}
+		callers.shutdown();
+
+		// Five spans per root call, each received once, in sequence order from one page to the next
+		assertEquals(200, received.size());
+		assertEquals(200, aspect.getLastSequence());
+		List<Long> sorted = received.stream().sorted().toList();
+		for (int i = 0; i < sorted.size(); i++) {
+			assertEquals(Long.valueOf(i + 1), sorted.get(i));
+		}
+		assertTrue(aspect.getEventsSince(cursor, 7).isEmpty());
+	}
+
+	@Test
+	void reportsTheBlockedInvocationsInFlight() throws Exception {
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch released = new CountDownLatch(1);
+		Thread caller = new Thread(() -> service.waitingRoot(entered, released), "waiting-caller");
+		caller.start();
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		Thread.sleep(50);
+
+		InFlightTransactions inFlight = aspect.getInFlight();
+		List<InFlightSpan> spans = inFlight.getSpans();
+		// The root and the invocation it is blocked in, the oldest first
+		assertEquals(2, spans.size());
+		InFlightSpan root = spans.get(0);
+		InFlightSpan child = spans.get(1);
+		assertTrue(root.getMethodName().endsWith(".waitingRoot"));
+		assertTrue(child.getMethodName().endsWith(".waitingChild"));
+		assertEquals(0, root.getDepth());
+		assertEquals(1, child.getDepth());
+		assertEquals(caller.threadId(), root.getThreadId());
+		assertEquals(caller.threadId(), child.getThreadId());
+		assertEquals(root.getTransactionId(), child.getTransactionId());
+		assertTrue(root.getStartNanos() <= child.getStartNanos());
+		assertTrue(child.getRunningMillis() >= 50);
+		assertTrue(root.getRunningMillis() >= child.getRunningMillis());
+		assertEquals(Integer.valueOf(1), inFlight.getCountByMethod().get(child.getMethodName()));
+
+		// The running time grows while the call is still blocked
+		Thread.sleep(20);
+		assertTrue(aspect.getInFlight().getSpans().get(1).getRunningMillis() >= child.getRunningMillis() + 20);
+
+		released.countDown();
+		caller.join(5_000);
+		assertTrue(aspect.getInFlight().getSpans().isEmpty());
+		assertTrue(aspect.getInFlight().getCountByMethod().isEmpty());
+	}
+}
@@ -0,0 +1,123 @@
+package com.github.benkenhobbit.monitoring.aspect;
+
+import com.github.benkenhobbit.monitoring.demo.controller.DatabaseInterface;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.aspectj.AbstractAspectJAdvice;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+		"app.monitoring.transaction.enabled=true",
+		"spring.autoconfigure.exclude="
+				+ "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration,"
+				+ "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration"
+})
+class TransactionMonitoringSwitchTests {
+
+	private static final String METHOD_NAME = "c.g.b.m.d.c.DatabaseInterface.getInstrumentRequired";
+
+	/**
+	 * The demo has no database: a transaction manager that does nothing is enough to go through the transaction advisor.
+	 */
+	@TestConfiguration
+	static class NoDatabase {
+
+		@Bean
+		PlatformTransactionManager transactionManager() {
+			return new AbstractPlatformTransactionManager() {
+
+				@Override
+				protected Object doGetTransaction() {
+					return new Object();
+				}
+
+				@Override
+				protected void doBegin(Object transaction, TransactionDefinition definition) {
+				}
+
+				@Override
+				protected void doCommit(DefaultTransactionStatus status) {
+				}
+
+				@Override
+				protected void doRollback(DefaultTransactionStatus status) {
+				}
+			};
+		}
+	}
+
+	@Autowired
+	private DatabaseInterface databaseInterface;
+
+	@Autowired
+	private TransactionMonitoringSwitch monitoringSwitch;
+
+	@Autowired
+	private TransactionMonitoringAspect monitoringAspect;
+
+	@AfterEach
+	void enableMonitoring() {
+		monitoringSwitch.enable();
+	}
+
+	private long capturedSpans() {
+		assertTrue(monitoringAspect.flush());
+		return monitoringAspect.getEventsByMethod(METHOD_NAME, 0, Long.MAX_VALUE, false).stream()
+				.filter(event -> event.getEventType() == TransactionMonitoringAspect.TransactionEventType.COMPLETE)
+				.count();
+	}
+
+	private static int indexOf(Advisor[] advisors, Class<?> adviceType) {
+		for (int i = 0; i < advisors.length; i++) {
+			if (adviceType.isInstance(advisors[i].getAdvice())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Test
+	void switchesMonitoringWithoutChangingTheAdvisorChain() {
+		monitoringAspect.resetStats();
+		Advised proxy = (Advised) databaseInterface;
+		Advisor[] advisors = proxy.getAdvisors();
+		int monitoringIndex = indexOf(advisors, AbstractAspectJAdvice.class);
+		int transactionIndex = indexOf(advisors, TransactionInterceptor.class);
+		assertTrue(monitoringIndex >= 0);
+		assertTrue(transactionIndex >= 0);
+
+		databaseInterface.getInstrumentRequired();
+		assertEquals(1, capturedSpans());
+
+		monitoringSwitch.disable();
+		assertFalse(monitoringSwitch.isEnabled());
+		databaseInterface.getInstrumentRequired();
+		assertEquals(1, capturedSpans());
+		// The advice is still in place, in the same order relative to the transaction advisor
+		assertArrayEquals(advisors, proxy.getAdvisors());
+
+		monitoringSwitch.enable();
+		assertTrue(monitoringSwitch.isEnabled());
+		databaseInterface.getInstrumentRequired();
+		assertEquals(2, capturedSpans());
+		Advisor[] current = proxy.getAdvisors();
+		assertArrayEquals(advisors, current);
+		assertEquals(monitoringIndex, indexOf(current, AbstractAspectJAdvice.class));
+		assertEquals(transactionIndex, indexOf(current, TransactionInterceptor.class));
+	}
+}
@@ -0,0 +1,81 @@
+package com.github.benkenhobbit.monitoring.correlation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeOrderedTransactionIdGeneratorTests {
+
+	@Test
+	void idsAreOrderedByTimestamp() {
+		TimeOrderedTransactionIdGenerator generator = new TimeOrderedTransactionIdGenerator(5);
+		long timestamp = System.currentTimeMillis();
+
+		long previous = generator.nextId(timestamp);
+		assertEquals(timestamp, TimeOrderedTransactionIdGenerator.timestampOf(previous));
+		assertTrue(previous >= TimeOrderedTransactionIdGenerator.lowestIdAt(timestamp));
+		assertTrue(previous < TimeOrderedTransactionIdGenerator.lowestIdAt(timestamp + 1));
+
+		// More IDs than the sequence can hold in one millisecond: they keep growing
+		for (int i = 0; i < 1_000; i++) {
+			long id = generator.nextId(timestamp);
+			assertTrue(id > previous);
+			previous = id;
+		}
+		assertTrue(generator.nextId(timestamp + 60_000) > previous);
+	}
+
+	@Test
+	void idsAreUniqueAcrossThreads() throws InterruptedException {
+		int threads = 8;
+		int perThread = 20_000;
+		TimeOrderedTransactionIdGenerator generator = new TimeOrderedTransactionIdGenerator(-1);
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+		long timestamp = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			executor.execute(() -> {
+				for (int i = 0; i < perThread; i++) {
+					ids.add(generator.nextId(timestamp));
+				}
+				done.countDown();
+			});
+		}
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		executor.shutdown();
+
+		assertEquals(threads * perThread, ids.size());
+	}
+
+	@Test
+	void reusedLanesGoOnFromTheirPreviousOwner() throws InterruptedException {
+		// More threads than lanes, one ID each in the same millisecond: like a virtual thread per request
+		int threads = 3_000;
+		TimeOrderedTransactionIdGenerator generator = new TimeOrderedTransactionIdGenerator(0);
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+		long timestamp = System.currentTimeMillis();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int t = 0; t < threads; t++) {
+				executor.execute(() -> ids.add(generator.nextId(timestamp)));
+			}
+		}
+
+		assertEquals(threads, ids.size());
+		assertEquals(timestamp, TimeOrderedTransactionIdGenerator.timestampOf(ids.stream().min(Long::compare).orElseThrow()));
+	}
+
+	@Test
+	void formatKeepsTheOrder() {
+		assertEquals("00000000000000ff", TransactionIdGenerator.format(255));
+		assertTrue(TransactionIdGenerator.format(255).compareTo(TransactionIdGenerator.format(4096)) < 0);
+	}
+}
@@ -0,0 +1,124 @@
+package com.github.benkenhobbit.monitoring.correlation;
+
+import com.github.benkenhobbit.monitoring.model.StackProfile;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionContextTests {
+
+	/**
+	 * Run a monitored invocation the way the aspect does: push, proceed, pop in a finally block.
+	 */
+	private static void invoke(TransactionContext context, Runnable body) {
+		if (context.isEmpty()) {
+			context.pushRoot(42, true, 100);
+		} else {
+			context.pushNested(100);
+		}
+		try {
+			body.run();
+		} finally {
+			context.pop();
+		}
+	}
+
+	@Test
+	void nestedInvocationsInheritTheRootId() {
+		TransactionContext context = new TransactionContext();
+		TransactionContext.Frame root = context.pushRoot(42, true, 100);
+		// A REQUIRES_NEW invocation opens a new physical transaction but stays in the same correlation
+		TransactionContext.Frame requiresNew = context.pushNested(101);
+
+		assertEquals(42, requiresNew.getTransactionId());
+		assertTrue(requiresNew.isSampled());
+		assertEquals(1, root.getSpanId());
+		assertEquals(0, root.getParentSpanId());
+		assertEquals(0, root.getDepth());
+		assertNull(root.getParent());
+		assertEquals(2, requiresNew.getSpanId());
+		assertEquals(1, requiresNew.getParentSpanId());
+		assertEquals(1, requiresNew.getDepth());
+		assertSame(root, requiresNew.getParent());
+		assertSame(root, context.peekParent());
+		assertEquals(2, context.depth());
+		assertThrows(IllegalStateException.class, () -> context.pushRoot(43, true, 102));
+
+		// A sibling gets a new span id under the same parent
+		context.pop();
+		TransactionContext.Frame sibling = context.pushNested(103);
+		assertEquals(3, sibling.getSpanId());
+		assertEquals(1, sibling.getParentSpanId());
+		context.pop();
+		context.pop();
+
+		// The next transaction starts its span ids again
+		TransactionContext.Frame next = context.pushRoot(43, false, 104);
+		assertEquals(43, next.getTransactionId());
+		assertEquals(1, next.getSpanId());
+		assertFalse(context.pushNested(105).isSampled());
+	}
+
+	@Test
+	void anExceptionUnwindsTheStack() {
+		TransactionContext context = new TransactionContext();
+		// Deeper than the initial capacity of the stack
+		int[] deepest = new int[1];
+		Runnable[] call = new Runnable[1];
+		call[0] = () -> {
+			deepest[0] = Math.max(deepest[0], context.depth());
+			if (context.depth() == 12) {
+				throw new IllegalStateException("boom");
+			}
+			invoke(context, call[0]);
+		};
+
+		assertThrows(IllegalStateException.class, () -> invoke(context, call[0]));
+
+		assertEquals(12, deepest[0]);
+		assertTrue(context.isEmpty());
+		assertNull(context.peek());
+		assertThrows(IllegalStateException.class, context::pop);
+		assertThrows(IllegalStateException.class, () -> context.pushNested(100));
+		assertEquals(1, context.pushRoot(43, true, 100).getSpanId());
+	}
+
+	@Test
+	void reusedFramesStartClean() {
+		TransactionContext context = new TransactionContext();
+		context.pushRoot(42, true, 100);
+		TransactionContext.Frame first = context.pushNested(101);
+		first.setMethodId(7);
+		first.setStartNanos(1_000);
+		first.setStartCounters(1, 2, 3);
+		first.addChildNanos(500);
+		// Profiled while slow, popped before the profile was taken
+		first.attachProfile(first.getInvocation(), new StackProfile(50));
+		long firstInvocation = first.getInvocation();
+		context.pop();
+
+		TransactionContext.Frame second = context.pushNested(102);
+		assertSame(first, second);
+		assertTrue(second.getInvocation() > firstInvocation);
+		assertEquals(-1, second.getMethodId());
+		assertEquals(0, second.getStartNanos());
+		assertEquals(-1, second.getStartCpuTime());
+		assertEquals(-1, second.getStartUserTime());
+		assertEquals(-1, second.getStartAllocatedBytes());
+		assertEquals(0, second.getChildNanos());
+		assertNull(second.takeProfile());
+
+		// A profile of the previous invocation attached late is ignored, one of the current invocation is taken once
+		second.attachProfile(firstInvocation, new StackProfile(50));
+		assertNull(second.takeProfile());
+		StackProfile profile = new StackProfile(50);
+		second.attachProfile(second.getInvocation(), profile);
+		assertSame(profile, second.takeProfile());
+		assertNull(second.takeProfile());
+	}
+}
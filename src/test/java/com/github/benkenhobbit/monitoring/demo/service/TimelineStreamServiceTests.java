@@ -0,0 +1,242 @@
+package com.github.benkenhobbit.monitoring.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benkenhobbit.monitoring.aspect.TransactionMonitoringAspect;
+import com.github.benkenhobbit.monitoring.config.TransactionMonitoringConfiguration;
+import com.github.benkenhobbit.monitoring.model.TransactionEvent;
+import com.github.benkenhobbit.monitoring.pipeline.OverflowPolicy;
+import com.github.benkenhobbit.monitoring.registry.VirtualThreadGrouping;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimelineStreamServiceTests {
+
+	interface Service {
+
+		void call();
+	}
+
+	static class MonitoredService implements Service {
+
+		@Override
+		@Transactional
+		public void call() {
+		}
+	}
+
+	/**
+	 * Keeps the messages and callbacks that the servlet container would handle.
+	 */
+	static class RecordingEmitter extends SseEmitter {
+
+		final List<SseEventBuilder> messages = new CopyOnWriteArrayList<>();
+
+		Runnable completionCallback;
+
+		Runnable timeoutCallback;
+
+		volatile boolean completed;
+
+		RecordingEmitter(long timeout) {
+			super(timeout);
+		}
+
+		@Override
+		public void send(SseEventBuilder builder) {
+			messages.add(builder);
+		}
+
+		@Override
+		public synchronized void onCompletion(Runnable callback) {
+			completionCallback = callback;
+		}
+
+		@Override
+		public synchronized void onTimeout(Runnable callback) {
+			timeoutCallback = callback;
+		}
+
+		@Override
+		public synchronized void complete() {
+			completed = true;
+		}
+	}
+
+	/**
+	 * Writes each event as its sequence and type.
+	 */
+	static class EventWriter extends ObjectMapper {
+
+		@Override
+		public byte[] writeValueAsBytes(Object value) {
+			TransactionEvent event = (TransactionEvent) value;
+			return (event.getSequence() + " " + event.getEventType()).getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	private TransactionMonitoringConfiguration configuration;
+
+	private TransactionMonitoringAspect aspect;
+
+	private TimelineStreamService streamService;
+
+	private Service service;
+
+	@BeforeEach
+	void start() {
+		configuration = new TransactionMonitoringConfiguration();
+		configuration.setEnabled(true);
+		configuration.setMaxEventLogSize(1000);
+		configuration.setMaxEventLogTime(24);
+		configuration.setLogSegmentDuration(60);
+		configuration.setLogSweepInterval(1000);
+		configuration.setVirtualThreadGrouping(VirtualThreadGrouping.TASK);
+		configuration.setIdNodeId(-1);
+		configuration.setPipelineQueueCapacity(8192);
+		configuration.setPipelineBatchSize(256);
+		configuration.setPipelineOverflowPolicy(OverflowPolicy.BLOCK);
+		configuration.setStreamPushInterval(10);
+		configuration.setStreamMaxBatch(2);
+		configuration.setStreamMaxSubscribers(2);
+		configuration.setStreamTimeout(60_000);
+		aspect = new TransactionMonitoringAspect(configuration);
+		aspect.start();
+
+		AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new MonitoredService());
+		proxyFactory.addAspect(aspect);
+		service = proxyFactory.getProxy();
+
+		streamService = new TimelineStreamService(aspect, configuration, new EventWriter()) {
+
+			@Override
+			SseEmitter newEmitter(long timeout) {
+				return new RecordingEmitter(timeout);
+			}
+		};
+		streamService.start();
+	}
+
+	@AfterEach
+	void stop() {
+		streamService.stop();
+		aspect.stop();
+	}
+
+	private static String name(SseEmitter.SseEventBuilder message) {
+		for (ResponseBodyEmitter.DataWithMediaType part : message.build()) {
+			if (part.getData() instanceof String text && text.contains("event:")) {
+				int start = text.indexOf("event:") + "event:".length();
+				return text.substring(start, text.indexOf('\n', start));
+			}
+		}
+		return null;
+	}
+
+	private static Object data(SseEmitter.SseEventBuilder message) {
+		for (ResponseBodyEmitter.DataWithMediaType part : message.build()) {
+			if (!(part.getData() instanceof String)) {
+				return part.getData();
+			}
+		}
+		return null;
+	}
+
+	private List<String> writeEvents(long after, long maxSpans) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		streamService.writeEvents(after, maxSpans, out);
+		String body = out.toString(StandardCharsets.UTF_8);
+		return body.isEmpty() ? List.of() : Arrays.asList(body.split("\n"));
+	}
+
+	private static List<String> events(long... sequences) {
+		List<String> lines = new ArrayList<>();
+		for (long sequence : sequences) {
+			lines.add(sequence + " START");
+			lines.add(sequence + " COMPLETE");
+		}
+		return lines;
+	}
+
+	@Test
+	void writesTheEventsPageByPage() throws IOException {
+		for (int i = 0; i < 5; i++) {
+			service.call();
+		}
+
+		// Pages of 2 spans, each span once, in sequence order
+		assertEquals(events(1, 2, 3, 4, 5), writeEvents(0, 100));
+		assertEquals(events(3, 4), writeEvents(2, 2));
+		// Continues from the highest sequence received
+		assertEquals(events(5), writeEvents(4, 100));
+		assertTrue(writeEvents(5, 100).isEmpty());
+
+		// Spans stored later are read by the next request
+		service.call();
+		assertEquals(events(6), writeEvents(5, 100));
+	}
+
+	@Test
+	void coalescesTheBacklogOfASlowClient() throws InterruptedException {
+		for (int i = 0; i < 5; i++) {
+			service.call();
+		}
+		assertTrue(aspect.flush());
+
+		RecordingEmitter emitter = (RecordingEmitter) streamService.subscribe(0L);
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (emitter.messages.size() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+
+		// Only the newest 2 spans of the backlog of 5 are sent, after the number of the skipped ones
+		assertEquals(2, emitter.messages.size());
+		assertEquals("dropped", name(emitter.messages.get(0)));
+		assertEquals(3L, data(emitter.messages.get(0)));
+		assertEquals("events", name(emitter.messages.get(1)));
+		List<?> events = (List<?>) data(emitter.messages.get(1));
+		assertEquals(List.of(4L, 4L, 5L, 5L), events.stream().map(event -> ((TransactionEvent) event).getSequence()).toList());
+		assertTrue(emitter.messages.get(1).build().iterator().next().getData().toString().startsWith("id:5\n"));
+	}
+
+	@Test
+	void capsTheSubscribers() {
+		RecordingEmitter first = (RecordingEmitter) streamService.subscribe(null);
+		RecordingEmitter second = (RecordingEmitter) streamService.subscribe(null);
+		assertNotNull(first);
+		assertNotNull(second);
+		assertEquals(Long.valueOf(60_000), first.getTimeout());
+		assertNull(streamService.subscribe(null));
+		assertEquals(2, streamService.getSubscriberCount());
+
+		// A client disconnecting frees its slot
+		first.completionCallback.run();
+		assertEquals(1, streamService.getSubscriberCount());
+		RecordingEmitter third = (RecordingEmitter) streamService.subscribe(null);
+		assertNotNull(third);
+		assertNull(streamService.subscribe(null));
+
+		// So does the timeout of a client gone silently, whose response is completed
+		second.timeoutCallback.run();
+		assertTrue(second.completed);
+		assertEquals(1, streamService.getSubscriberCount());
+		assertNotNull(streamService.subscribe(null));
+	}
+}
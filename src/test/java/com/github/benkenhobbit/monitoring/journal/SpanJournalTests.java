@@ -0,0 +1,205 @@
+package com.github.benkenhobbit.monitoring.journal;
+
+import com.github.benkenhobbit.monitoring.model.TransactionSpan;
+import com.github.benkenhobbit.monitoring.registry.MethodDescriptor;
+import com.github.benkenhobbit.monitoring.registry.MethodRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpanJournalTests {
+
+	@TempDir
+	Path directory;
+
+	void monitored(String name, int[] values) {
+	}
+
+	private static TransactionSpan span(MethodDescriptor method, long transactionId, Exception exception) {
+		TransactionSpan span = new TransactionSpan();
+		span.setTransactionId(transactionId);
+		span.setSpanId(1);
+		span.setMethodId(method.getId());
+		span.setMethodName(method.getName());
+		span.setThreadId(7);
+		span.setThreadName("worker-7");
+		span.setStartTime(1_000);
+		span.setEndTime(1_005);
+		span.setStartNanos(10);
+		span.setEndNanos(5_000_010);
+		span.setExecutionTime(5);
+		span.setCpuTimeNanos(3_000_000);
+		span.setException(exception);
+		return span;
+	}
+
+	private MethodDescriptor monitoredMethod(MethodRegistry registry) throws NoSuchMethodException {
+		return registry.get(SpanJournalTests.class.getDeclaredMethod("monitored", String.class, int[].class));
+	}
+
+	private List<TransactionSpan> replay(MethodRegistry registry) throws IOException {
+		List<TransactionSpan> spans = new ArrayList<>();
+		new JournalReplayer(directory, registry, getClass().getClassLoader()).replay(spans::add);
+		return spans;
+	}
+
+	@Test
+	void replaysJournaledSpansAfterRestart() throws Exception {
+		MethodRegistry registry = new MethodRegistry();
+		MethodDescriptor method = monitoredMethod(registry);
+		SpanJournal journal = new SpanJournal(directory, 64 * 1024, 0, 4, 0, registry);
+		journal.open();
+		journal.append(List.of(span(method, 1, null), span(method, 2, new IllegalStateException("boom"))));
+		journal.close();
+
+		// A new registry stands for the restarted application
+		MethodRegistry restartedRegistry = new MethodRegistry();
+		List<TransactionSpan> spans = replay(restartedRegistry);
+		assertEquals(2, spans.size());
+		TransactionSpan replayed = spans.get(1);
+		assertEquals(2, replayed.getTransactionId());
+		assertEquals(monitoredMethod(restartedRegistry).getId(), replayed.getMethodId());
+		assertEquals(method.getName(), replayed.getMethodName());
+		assertEquals("worker-7", replayed.getThreadName());
+		assertEquals(5_000_000, replayed.getEndNanos() - replayed.getStartNanos());
+		assertEquals(3_000_000, replayed.getCpuTimeNanos());
+		assertEquals(IllegalStateException.class.getName(), replayed.getException().getMessage());
+		assertTrue(replayed.isCompleted());
+	}
+
+	@Test
+	void rebasesReplayedSpansOnTheCurrentJvm() throws Exception {
+		MethodRegistry registry = new MethodRegistry();
+		MethodDescriptor method = monitoredMethod(registry);
+		// Spans of a previous JVM ended a second ago, with nanoTime values from its own origin
+		long endTime = System.currentTimeMillis() - 1_000;
+		TransactionSpan outer = span(method, 1, null);
+		outer.setStartTime(endTime - 5);
+		outer.setEndTime(endTime);
+		outer.setStartNanos(-7_000_000_000L);
+		outer.setEndNanos(-6_995_000_000L);
+		TransactionSpan inner = span(method, 1, null);
+		inner.setStartTime(endTime - 5);
+		inner.setEndTime(endTime - 2);
+		inner.setStartNanos(-6_999_700_000L);
+		inner.setEndNanos(-6_997_500_000L);
+		SpanJournal journal = new SpanJournal(directory, 64 * 1024, 0, 4, 0, registry);
+		journal.open();
+		journal.append(List.of(inner, outer));
+		journal.close();
+
+		List<TransactionSpan> spans = replay(new MethodRegistry());
+		long now = System.nanoTime();
+		TransactionSpan replayedInner = spans.get(0);
+		TransactionSpan replayedOuter = spans.get(1);
+		// Before the spans of this JVM, about a second ago
+		assertTrue(replayedOuter.getEndNanos() < now);
+		assertTrue(now - replayedOuter.getEndNanos() >= 900_000_000L, String.valueOf(now - replayedOuter.getEndNanos()));
+		assertTrue(now - replayedOuter.getEndNanos() < 60_000_000_000L);
+		// Durations and order within the segment are kept
+		assertEquals(5_000_000, replayedOuter.getEndNanos() - replayedOuter.getStartNanos());
+		assertEquals(300_000, replayedInner.getStartNanos() - replayedOuter.getStartNanos());
+		assertEquals(2_500_000, replayedOuter.getEndNanos() - replayedInner.getEndNanos());
+	}
+
+	@Test
+	void rollsSegmentsAndDeletesTheOldest() throws Exception {
+		MethodRegistry registry = new MethodRegistry();
+		MethodDescriptor method = monitoredMethod(registry);
+		SpanJournal journal = new SpanJournal(directory, 4096, 0, 3, 0, registry);
+		journal.open();
+		for (long transactionId = 0; transactionId < 200; transactionId++) {
+			journal.append(List.of(span(method, transactionId, null)));
+		}
+		journal.close();
+
+		assertEquals(3, JournalFormat.segments(directory).size());
+		List<TransactionSpan> spans = replay(new MethodRegistry());
+		// Every segment redefines its dictionaries: the kept segments are readable on their own
+		assertTrue(spans.size() > 0 && spans.size() < 200);
+		assertEquals(199, spans.get(spans.size() - 1).getTransactionId());
+		for (int i = 1; i < spans.size(); i++) {
+			assertEquals(spans.get(i - 1).getTransactionId() + 1, spans.get(i).getTransactionId());
+		}
+	}
+
+	@Test
+	void ignoresTheBatchesAppendedAfterClosing() throws Exception {
+		MethodRegistry registry = new MethodRegistry();
+		MethodDescriptor method = monitoredMethod(registry);
+		SpanJournal journal = new SpanJournal(directory, 4096, 0, 1000, 0, registry);
+		journal.open();
+		// A consumer still appending, rolling segments, while the journal is closed
+		AtomicBoolean stopped = new AtomicBoolean();
+		AtomicLong appended = new AtomicLong();
+		Thread consumer = new Thread(() -> {
+			for (long transactionId = 0; !stopped.get(); transactionId++) {
+				journal.append(List.of(span(method, transactionId, null)));
+				appended.set(transactionId + 1);
+			}
+		});
+		consumer.start();
+		while (appended.get() < 100) {
+			Thread.onSpinWait();
+		}
+		long beforeClosing = appended.get();
+		journal.close();
+		Thread.sleep(10);
+		stopped.set(true);
+		consumer.join();
+
+		// Every batch appended before the closing is kept, in order, and the later ones are not written
+		List<TransactionSpan> spans = replay(new MethodRegistry());
+		assertTrue(spans.size() >= beforeClosing);
+		assertTrue(spans.size() < appended.get());
+		for (int i = 0; i < spans.size(); i++) {
+			assertEquals(i, spans.get(i).getTransactionId());
+		}
+		journal.append(List.of(span(method, -1, null)));
+		assertEquals(spans.size(), replay(new MethodRegistry()).size());
+	}
+
+	@Test
+	void stopsAtTheFirstCorruptedRecord() throws Exception {
+		MethodRegistry registry = new MethodRegistry();
+		MethodDescriptor method = monitoredMethod(registry);
+		SpanJournal journal = new SpanJournal(directory, 64 * 1024, 0, 4, 0, registry);
+		journal.open();
+		journal.append(List.of(span(method, 1, null), span(method, 2, null), span(method, 3, null)));
+		journal.close();
+
+		// Flip a byte in the body of the last record, as a torn write would leave it
+		Path segment = JournalFormat.segments(directory).get(0);
+		int lastRecord = JournalFormat.FILE_HEADER_SIZE;
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+			int position = JournalFormat.FILE_HEADER_SIZE;
+			while (true) {
+				length.clear();
+				channel.read(length, position);
+				int recordLength = length.flip().getInt();
+				if (recordLength == 0) {
+					break;
+				}
+				lastRecord = position;
+				position += JournalFormat.RECORD_HEADER_SIZE + recordLength;
+			}
+			channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), lastRecord + JournalFormat.RECORD_HEADER_SIZE + 5);
+		}
+
+		List<TransactionSpan> spans = replay(new MethodRegistry());
+		assertEquals(List.of(1L, 2L), spans.stream().map(TransactionSpan::getTransactionId).toList());
+	}
+}
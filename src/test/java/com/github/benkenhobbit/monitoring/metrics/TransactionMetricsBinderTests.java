@@ -0,0 +1,113 @@
+package com.github.benkenhobbit.monitoring.metrics;
+
+import com.github.benkenhobbit.monitoring.model.TransactionThreadStats;
+import com.github.benkenhobbit.monitoring.registry.MethodDescriptor;
+import com.github.benkenhobbit.monitoring.registry.MethodRegistry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TransactionMetricsBinderTests {
+
+	static class Sample {
+		public void first() {
+		}
+
+		public void second() {
+		}
+
+		public void third() {
+		}
+	}
+
+	private final MethodRegistry methodRegistry = new MethodRegistry();
+
+	private final Map<String, Map<MethodDescriptor, TransactionThreadStats>> threadStats = new ConcurrentHashMap<>();
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private MethodDescriptor method(String name) throws NoSuchMethodException {
+		return methodRegistry.get(Sample.class.getMethod(name));
+	}
+
+	private TransactionMetricsBinder bind(int maxMethods, int maxThreads) {
+		TransactionMetricsBinder binder = new TransactionMetricsBinder(methodRegistry::getAll, () -> threadStats,
+				maxMethods, maxThreads, 0);
+		binder.bindTo(meterRegistry);
+		return binder;
+	}
+
+	@Test
+	void publishesMethodStats() throws Exception {
+		MethodDescriptor first = method("first");
+		first.getStats().record(2_000_000, 1_000_000, 500_000, 1024, false);
+		first.getStats().record(4_000_000, 3_000_000, 1_500_000, 1024, true);
+		bind(10, 10);
+
+		String name = first.getName();
+		assertEquals(2, meterRegistry.get("transaction.calls").tag("method", name).functionCounter().count());
+		assertEquals(1, meterRegistry.get("transaction.errors").tag("method", name).functionCounter().count());
+		assertEquals(6, meterRegistry.get("transaction.duration").tag("method", name).functionTimer().totalTime(TimeUnit.MILLISECONDS), 1e-9);
+		assertEquals(0.004, meterRegistry.get("transaction.cpu.time").tag("method", name).functionCounter().count(), 1e-9);
+		assertEquals(2048, meterRegistry.get("transaction.allocated").tag("method", name).functionCounter().count());
+		assertEquals(4_000_000, meterRegistry.get("transaction.duration.percentile").tag("method", name).tag("quantile", "0.99")
+				.timeGauge().value(TimeUnit.NANOSECONDS), 1e-3);
+		assertEquals(4, meterRegistry.get("transaction.duration.max").tag("method", name).timeGauge().value(TimeUnit.MILLISECONDS), 1e-9);
+
+		// Read on scrape: later invocations are visible without refresh
+		first.getStats().record(1_000_000, 0, 0, 0, false);
+		assertEquals(3, meterRegistry.get("transaction.calls").tag("method", name).functionCounter().count());
+	}
+
+	@Test
+	void mergesMethodsBeyondLimit() throws Exception {
+		MethodDescriptor first = method("first");
+		TransactionMetricsBinder binder = bind(2, 10);
+		MethodDescriptor second = method("second");
+		MethodDescriptor third = method("third");
+		first.getStats().record(1, 0, 0, 0, false);
+		second.getStats().record(1, 0, 0, 0, false);
+		third.getStats().record(1, 0, 0, 0, true);
+		binder.refresh();
+
+		assertEquals(1, meterRegistry.get("transaction.calls").tag("method", first.getName()).functionCounter().count());
+		assertNull(meterRegistry.find("transaction.calls").tag("method", second.getName()).functionCounter());
+		assertEquals(2, meterRegistry.get("transaction.calls").tag("method", TransactionMetricsBinder.OTHER).functionCounter().count());
+		assertEquals(1, meterRegistry.get("transaction.errors").tag("method", TransactionMetricsBinder.OTHER).functionCounter().count());
+	}
+
+	@Test
+	void limitsAndRetiresThreads() throws Exception {
+		MethodDescriptor first = method("first");
+		for (String thread : new String[]{"worker-1;1", "worker-2;2"}) {
+			TransactionThreadStats stats = new TransactionThreadStats();
+			stats.getCounter().set(5);
+			Map<MethodDescriptor, TransactionThreadStats> methodStats = new ConcurrentHashMap<>();
+			methodStats.put(first, stats);
+			threadStats.put(thread, methodStats);
+		}
+		TransactionMetricsBinder binder = bind(10, 1);
+
+		Collection<FunctionCounter> counters = meterRegistry.find("transaction.thread.calls").functionCounters();
+		assertEquals(1, counters.size());
+		FunctionCounter published = counters.iterator().next();
+		assertEquals(5, published.count());
+
+		// The slot of a retired thread is given to the next one
+		String retired = published.getId().getTag("thread");
+		threadStats.remove(retired);
+		binder.refresh();
+		counters = meterRegistry.find("transaction.thread.calls").functionCounters();
+		assertEquals(1, counters.size());
+		assertNotEquals(retired, counters.iterator().next().getId().getTag("thread"));
+	}
+}
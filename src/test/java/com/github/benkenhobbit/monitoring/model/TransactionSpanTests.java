@@ -0,0 +1,109 @@
+package com.github.benkenhobbit.monitoring.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.github.benkenhobbit.monitoring.aspect.TransactionMonitoringAspect.TransactionEventType.COMPLETE;
+import static com.github.benkenhobbit.monitoring.aspect.TransactionMonitoringAspect.TransactionEventType.ERROR;
+import static com.github.benkenhobbit.monitoring.aspect.TransactionMonitoringAspect.TransactionEventType.START;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionSpanTests {
+
+	private static TransactionSpan span(int spanId, int parentSpanId, int depth, long startTime, long endTime,
+										long startNanos, long endNanos) {
+		TransactionSpan span = new TransactionSpan();
+		span.setTransactionId(42);
+		span.setSpanId(spanId);
+		span.setParentSpanId(parentSpanId);
+		span.setDepth(depth);
+		span.setMethodName("method-" + spanId);
+		span.setStartTime(startTime);
+		span.setEndTime(endTime);
+		span.setStartNanos(startNanos);
+		span.setEndNanos(endNanos);
+		span.setExecutionTime(endTime - startTime);
+		span.complete();
+		return span;
+	}
+
+	private static List<String> describe(List<TransactionEvent> events) {
+		return events.stream().map(event -> event.getEventType() + " " + event.getSpanId() + "@" + event.getDepth()).toList();
+	}
+
+	@Test
+	void ordersNestedEventsByTheNanosecondClock() {
+		// Root and child within the same millisecond: only the nanoseconds keep the nesting
+		TransactionSpan root = span(1, 0, 0, 100, 100, 1_000, 9_000);
+		TransactionSpan child = span(2, 1, 1, 100, 100, 2_000, 5_000);
+		TransactionSpan sibling = span(3, 1, 1, 100, 100, 5_000, 8_000);
+		sibling.setException(new IllegalStateException("boom"));
+
+		List<TransactionEvent> timeline = TransactionSpan.toTimeline(List.of(sibling, root, child));
+
+		// The ERROR of a span precedes its COMPLETE, a COMPLETE sorts after a START at the same instant
+		assertEquals(List.of("START 1@0", "START 2@1", "START 3@1", "COMPLETE 2@1", "ERROR 3@1", "COMPLETE 3@1",
+				"COMPLETE 1@0"), describe(timeline));
+		assertEquals(1, timeline.get(1).getParentSpanId());
+	}
+
+	@Test
+	void spansWithoutTheirParentBecomeRoots() {
+		// Span 2 was evicted: its children 3 and 5 are shown as roots, in start order after the real root
+		TransactionSpan root = span(1, 0, 0, 100, 100, 1_000, 2_000);
+		TransactionSpan orphan = span(3, 2, 2, 100, 100, 3_000, 7_000);
+		TransactionSpan orphanChild = span(4, 3, 3, 100, 100, 4_000, 5_000);
+		TransactionSpan otherOrphan = span(5, 2, 2, 100, 100, 8_000, 9_000);
+
+		List<SpanNode> roots = TransactionSpan.toCallTree(List.of(otherOrphan, orphanChild, orphan, root));
+
+		assertEquals(List.of(1, 3, 5), roots.stream().map(SpanNode::getSpanId).toList());
+		assertTrue(roots.get(0).getChildren().isEmpty());
+		SpanNode orphanNode = roots.get(1);
+		assertEquals(2, orphanNode.getParentSpanId());
+		assertEquals(100, orphanNode.getParentShare());
+		assertEquals(4_000, orphanNode.getExecutionTimeNanos());
+		assertEquals(1, orphanNode.getChildren().size());
+		SpanNode orphanChildNode = orphanNode.getChildren().get(0);
+		assertEquals(4, orphanChildNode.getSpanId());
+		assertEquals(25, orphanChildNode.getParentShare());
+		assertEquals(3, orphanChildNode.getDepth());
+		assertTrue(TransactionSpan.toCallTree(List.of()).isEmpty());
+	}
+
+	@Test
+	void runningSpansOnlyHaveAStart() {
+		TransactionSpan running = new TransactionSpan();
+		running.setSpanId(1);
+		running.setStartTime(100);
+
+		List<TransactionEvent> events = running.toEvents();
+		assertEquals(1, events.size());
+		assertEquals(START, events.get(0).getEventType());
+	}
+
+	@Test
+	void keepsOnlyTheEventsWithinTheRange() {
+		// Starts before the range and ends within it, starts within it and ends after it, entirely within it
+		TransactionSpan before = span(1, 0, 0, 90, 105, 90_000, 105_000);
+		TransactionSpan after = span(2, 0, 0, 110, 130, 110_000, 130_000);
+		TransactionSpan inside = span(3, 0, 0, 112, 115, 112_000, 115_000);
+		inside.setException(new IllegalStateException("boom"));
+
+		List<TransactionEvent> events = TransactionSpan.toTimeline(List.of(before, after, inside), 100, 120);
+
+		assertEquals(List.of("COMPLETE 1@0", "START 2@0", "START 3@0", "ERROR 3@0", "COMPLETE 3@0"), describe(events));
+		for (TransactionEvent event : events) {
+			assertTrue(event.getStartTime() >= 100 && event.getStartTime() <= 120);
+		}
+		// Bounds are inclusive
+		assertEquals(List.of(START), TransactionSpan.toTimeline(List.of(after), 110, 110).stream()
+				.map(TransactionEvent::getEventType).toList());
+		assertEquals(List.of(COMPLETE), TransactionSpan.toTimeline(List.of(after), 130, 200).stream()
+				.map(TransactionEvent::getEventType).toList());
+		assertTrue(TransactionSpan.toTimeline(List.of(before), 106, 200).isEmpty());
+		assertEquals(ERROR, TransactionSpan.toTimeline(List.of(inside), 115, 115).get(0).getEventType());
+	}
+}
@@ -0,0 +1,126 @@
+package com.github.benkenhobbit.monitoring.pipeline;
+
+import com.github.benkenhobbit.monitoring.model.PipelineStats;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventPipelineTests {
+
+	@Test
+	void queueRejectsElementsWhenFull() {
+		MpscBoundedQueue<Integer> queue = new MpscBoundedQueue<>(3);
+		assertEquals(4, queue.capacity());
+		for (int i = 0; i < 4; i++) {
+			assertTrue(queue.offer(i));
+		}
+		assertFalse(queue.offer(4));
+
+		assertEquals(Integer.valueOf(0), queue.poll());
+		assertTrue(queue.offer(4));
+		for (int i = 1; i <= 4; i++) {
+			assertEquals(Integer.valueOf(i), queue.poll());
+		}
+		assertNull(queue.poll());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	void countsDroppedEventsWhenStopped() {
+		EventPipeline<Integer> pipeline = new EventPipeline<>("test-pipeline", 2, 10, OverflowPolicy.DROP_AND_COUNT, batch -> {
+		});
+		for (int i = 0; i < 5; i++) {
+			pipeline.publish(i);
+		}
+
+		PipelineStats stats = pipeline.getStats();
+		assertEquals(2, stats.getPublished());
+		assertEquals(3, stats.getDropped());
+		assertEquals(2, stats.getQueueDepth());
+	}
+
+	@Test
+	void consumesEveryEventOfConcurrentProducers() throws InterruptedException {
+		int threads = 4;
+		int perThread = 10_000;
+		AtomicLong sum = new AtomicLong();
+		ConcurrentLinkedQueue<Integer> exported = new ConcurrentLinkedQueue<>();
+		EventPipeline<Integer> pipeline = new EventPipeline<>("test-pipeline", 64, 16, OverflowPolicy.BLOCK,
+				batch -> batch.forEach(sum::addAndGet));
+		pipeline.addExporter(batch -> exported.add(batch.size()));
+		pipeline.start();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			executor.execute(() -> {
+				for (int i = 1; i <= perThread; i++) {
+					pipeline.publish(i);
+				}
+				done.countDown();
+			});
+		}
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		executor.shutdown();
+		assertTrue(pipeline.flush(10, TimeUnit.SECONDS));
+		pipeline.stop();
+
+		PipelineStats stats = pipeline.getStats();
+		assertEquals((long) threads * perThread, stats.getProcessed());
+		assertEquals(0, stats.getDropped());
+		assertEquals((long) threads * perThread * (perThread + 1) / 2, sum.get());
+		assertEquals((long) threads * perThread, exported.stream().mapToLong(Integer::longValue).sum());
+		assertTrue(exported.stream().allMatch(size -> size <= 16));
+	}
+
+	@Test
+	void runsTasksOnTheConsumerThread() throws Exception {
+		List<Integer> stored = new ArrayList<>();
+		List<String> threads = new ArrayList<>();
+		EventPipeline<Integer> pipeline = new EventPipeline<>("test-pipeline", 64, 16, OverflowPolicy.BLOCK, batch -> {
+			threads.add(Thread.currentThread().getName());
+			stored.addAll(batch);
+		});
+		// Not started: run by the caller
+		pipeline.execute(() -> stored.add(-1)).get(1, TimeUnit.SECONDS);
+		assertEquals(List.of(-1), stored);
+
+		pipeline.start();
+		for (int i = 0; i < 100; i++) {
+			pipeline.publish(i);
+		}
+		CompletableFuture<Void> cleared = pipeline.execute(() -> {
+			threads.add(Thread.currentThread().getName());
+			stored.clear();
+		});
+		cleared.get(5, TimeUnit.SECONDS);
+		pipeline.publish(100);
+		assertTrue(pipeline.flush(5, TimeUnit.SECONDS));
+		CompletableFuture<Void> failed = pipeline.execute(() -> {
+			throw new IllegalStateException("boom");
+		});
+		assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+		pipeline.stop();
+
+		// The task ran between two batches: the events published before it may have been cleared, not the later one
+		assertEquals(Integer.valueOf(100), stored.get(stored.size() - 1));
+		assertTrue(stored.size() <= 101);
+		assertFalse(stored.contains(-1));
+		assertTrue(threads.stream().allMatch("test-pipeline"::equals));
+	}
+}
@@ -0,0 +1,99 @@
+package com.github.benkenhobbit.monitoring.registry;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MethodRegistryTests {
+
+	void overloaded() {
+	}
+
+	void overloaded(String value) {
+	}
+
+	void other() {
+	}
+
+	@Test
+	void shrinksThePackageName() {
+		assertEquals("c.g.b.m.Foo.bar", MethodRegistry.shrinkName("com.github.benkenhobbit.monitoring.Foo", "bar"));
+		assertEquals("Foo.bar", MethodRegistry.shrinkName("Foo", "bar"));
+	}
+
+	@Test
+	void mergesOverloadsUnderOneName() throws Exception {
+		MethodRegistry registry = new MethodRegistry();
+		MethodDescriptor noArgument = registry.get(MethodRegistryTests.class.getDeclaredMethod("overloaded"));
+		MethodDescriptor oneArgument = registry.get(MethodRegistryTests.class.getDeclaredMethod("overloaded", String.class));
+		registry.get(MethodRegistryTests.class.getDeclaredMethod("other"));
+
+		assertEquals("c.g.b.m.r.MethodRegistryTests.overloaded", noArgument.getName());
+		// Same interned name, distinct descriptors and ids
+		assertSame(noArgument.getName(), oneArgument.getName());
+		assertTrue(noArgument.getId() != oneArgument.getId());
+		assertEquals(List.of(noArgument, oneArgument), registry.getByName(noArgument.getName()));
+		assertTrue(registry.getByName("c.g.b.m.r.MethodRegistryTests.missing").isEmpty());
+	}
+
+	@Test
+	void registersEachMethodOnceWithAStableId() throws Exception {
+		MethodRegistry registry = new MethodRegistry();
+		List<Method> methods = new ArrayList<>();
+		for (Method method : Object.class.getDeclaredMethods()) {
+			methods.add(method);
+		}
+		for (Method method : String.class.getDeclaredMethods()) {
+			methods.add(method);
+		}
+
+		int threads = 8;
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<MethodDescriptor[]>> results = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			int offset = t;
+			results.add(executor.submit(() -> {
+				start.await();
+				MethodDescriptor[] seen = new MethodDescriptor[methods.size()];
+				// Each thread registers the methods in a different order
+				for (int i = 0; i < methods.size(); i++) {
+					int index = (i + offset * 7) % methods.size();
+					seen[index] = registry.get(methods.get(index));
+				}
+				return seen;
+			}));
+		}
+		start.countDown();
+		List<MethodDescriptor[]> seen = new ArrayList<>();
+		for (Future<MethodDescriptor[]> result : results) {
+			seen.add(result.get());
+		}
+		executor.shutdown();
+
+		assertEquals(methods.size(), registry.size());
+		for (int i = 0; i < methods.size(); i++) {
+			MethodDescriptor descriptor = seen.get(0)[i];
+			for (MethodDescriptor[] other : seen) {
+				assertSame(descriptor, other[i]);
+			}
+			// The id indexes the descriptor, in registration order
+			assertSame(descriptor, registry.get(descriptor.getId()));
+			assertSame(descriptor, registry.getAll().get(descriptor.getId()));
+			assertSame(descriptor, registry.get(methods.get(i)));
+		}
+		assertNull(registry.get(methods.size()));
+		assertNull(registry.get(-1));
+	}
+}
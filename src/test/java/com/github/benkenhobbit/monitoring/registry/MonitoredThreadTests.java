@@ -0,0 +1,59 @@
+package com.github.benkenhobbit.monitoring.registry;
+
+import com.github.benkenhobbit.monitoring.correlation.TransactionContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MonitoredThreadTests {
+
+	private static TransactionContext.Frame start(MonitoredThread thread, TransactionContext.Frame frame, int methodId,
+												  long startNanos) {
+		frame.setStartNanos(startNanos);
+		frame.setMethodId(methodId);
+		thread.publishRunning(frame);
+		return frame;
+	}
+
+	@Test
+	void listsOpenSpansFromTheRoot() {
+		MonitoredThread thread = new MonitoredThread(Thread.currentThread());
+		TransactionContext context = thread.getContext();
+		assertTrue(thread.getOpenSpans().isEmpty());
+
+		start(thread, context.pushRoot(42, true, 0), 3, 100);
+		start(thread, context.pushNested(0), 7, 200);
+		List<MonitoredThread.Running> spans = thread.getOpenSpans();
+		assertEquals(2, spans.size());
+		assertEquals(new MonitoredThread.Running(1, 42, 3, 100, 0), spans.get(0));
+		assertEquals(new MonitoredThread.Running(2, 42, 7, 200, 1), spans.get(1));
+		assertEquals(spans.get(1), thread.getRunning());
+
+		context.pop();
+		thread.publishRunning(context.peek());
+		start(thread, context.pushNested(0), 5, 300);
+		spans = thread.getOpenSpans();
+		assertEquals(2, spans.size());
+		assertEquals(new MonitoredThread.Running(3, 42, 5, 300, 1), spans.get(1));
+
+		context.pop();
+		context.pop();
+		thread.publishRunning(context.peek());
+		assertTrue(thread.getOpenSpans().isEmpty());
+		assertNull(thread.getRunning());
+	}
+
+	@Test
+	void namesVirtualThreadGroups() {
+		assertEquals("tomcat-handler-*", MonitoredThread.groupName("tomcat-handler-123", VirtualThreadGrouping.TASK));
+		assertEquals("batch", MonitoredThread.groupName("batch", VirtualThreadGrouping.TASK));
+		assertEquals(MonitoredThread.VIRTUAL_THREADS, MonitoredThread.groupName("", VirtualThreadGrouping.TASK));
+		assertEquals(MonitoredThread.VIRTUAL_THREADS, MonitoredThread.groupName("42", VirtualThreadGrouping.TASK));
+		assertEquals(MonitoredThread.VIRTUAL_THREADS,
+				MonitoredThread.groupName("tomcat-handler-123", VirtualThreadGrouping.CARRIER_POOL));
+	}
+}
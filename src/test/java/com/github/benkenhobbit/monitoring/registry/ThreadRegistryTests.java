@@ -0,0 +1,135 @@
+package com.github.benkenhobbit.monitoring.registry;
+
+import com.github.benkenhobbit.monitoring.correlation.TransactionContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThreadRegistryTests {
+
+	private static MonitoredThread currentOn(ThreadRegistry threadRegistry, Thread.Builder builder) throws InterruptedException {
+		AtomicReference<MonitoredThread> current = new AtomicReference<>();
+		builder.start(() -> current.set(threadRegistry.current())).join();
+		return current.get();
+	}
+
+	private static List<MonitoredThread> listed(ThreadRegistry threadRegistry) {
+		List<MonitoredThread> threads = new ArrayList<>();
+		threadRegistry.forEach(threads::add);
+		return threads;
+	}
+
+	private static MonitoredThread runOnce(ThreadRegistry threadRegistry, String name) throws InterruptedException {
+		AtomicReference<MonitoredThread> current = new AtomicReference<>();
+		Thread thread = new Thread(() -> current.set(threadRegistry.current()), name);
+		thread.start();
+		thread.join();
+		return current.get();
+	}
+
+	@Test
+	void registersEachThreadOnce() throws InterruptedException {
+		ThreadRegistry threadRegistry = new ThreadRegistry(thread -> {
+		});
+		MonitoredThread current = threadRegistry.current();
+		assertSame(current, threadRegistry.current());
+		assertEquals(Thread.currentThread().getName() + ";" + Thread.currentThread().threadId(), current.getKey());
+
+		MonitoredThread other = runOnce(threadRegistry, "worker-1");
+		assertNotSame(current, other);
+		assertEquals("worker-1;" + other.getId(), other.getKey());
+		assertEquals(2, threadRegistry.size());
+	}
+
+	@Test
+	void rebuildsTheKeyOnRename() {
+		ThreadRegistry threadRegistry = new ThreadRegistry(thread -> {
+		});
+		String name = Thread.currentThread().getName();
+		try {
+			MonitoredThread current = threadRegistry.current();
+			Thread.currentThread().setName("renamed");
+			assertSame(current, threadRegistry.current());
+			assertEquals("renamed;" + current.getId(), current.getKey());
+		} finally {
+			Thread.currentThread().setName(name);
+		}
+	}
+
+	@Test
+	void retiresTerminatedThreadsOnce() throws InterruptedException {
+		List<MonitoredThread> retired = new ArrayList<>();
+		ThreadRegistry threadRegistry = new ThreadRegistry(retired::add);
+		MonitoredThread first = runOnce(threadRegistry, "worker-1");
+		assertTrue(retired.isEmpty());
+
+		// Terminated threads are swept when a new thread registers
+		MonitoredThread second = runOnce(threadRegistry, "worker-2");
+		assertEquals(List.of(first), retired);
+		runOnce(threadRegistry, "worker-3");
+		assertEquals(List.of(first, second), retired);
+		assertEquals(1, threadRegistry.size());
+		assertEquals(1, listed(threadRegistry).size());
+	}
+
+	@Test
+	void groupsVirtualThreads() throws InterruptedException {
+		ThreadRegistry byTask = new ThreadRegistry(thread -> {
+		}, VirtualThreadGrouping.TASK);
+		MonitoredThread handler = currentOn(byTask, Thread.ofVirtual().name("tomcat-handler-", 42));
+		assertTrue(handler.isVirtual());
+		assertEquals("tomcat-handler-*", handler.getName());
+		assertEquals("tomcat-handler-*;-", handler.getKey());
+		assertEquals("virtual threads;-", currentOn(byTask, Thread.ofVirtual()).getKey());
+
+		ThreadRegistry byPool = new ThreadRegistry(thread -> {
+		}, VirtualThreadGrouping.CARRIER_POOL);
+		assertEquals("virtual threads;-", currentOn(byPool, Thread.ofVirtual().name("tomcat-handler-", 42)).getKey());
+
+		// Platform threads keep their own key
+		MonitoredThread worker = currentOn(byTask, Thread.ofPlatform().name("worker-7"));
+		assertEquals("worker-7;" + worker.getId(), worker.getKey());
+		assertEquals(1, byTask.size());
+	}
+
+	@Test
+	void listsVirtualThreadsWhileRunning() throws InterruptedException {
+		ThreadRegistry threadRegistry = new ThreadRegistry(thread -> {
+		});
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread thread = Thread.ofVirtual().start(() -> {
+			MonitoredThread monitoredThread = threadRegistry.current();
+			TransactionContext.Frame frame = monitoredThread.getContext().pushRoot(1, true, System.currentTimeMillis());
+			frame.setStartNanos(System.nanoTime());
+			frame.setMethodId(0);
+			threadRegistry.publishRunning(monitoredThread, frame);
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			monitoredThread.getContext().pop();
+			threadRegistry.publishRunning(monitoredThread, null);
+		});
+
+		started.await();
+		List<MonitoredThread> running = listed(threadRegistry);
+		assertEquals(1, running.size());
+		assertEquals(1, running.get(0).getOpenSpans().size());
+		assertEquals(0, threadRegistry.size());
+
+		release.countDown();
+		thread.join();
+		assertTrue(listed(threadRegistry).isEmpty());
+	}
+}
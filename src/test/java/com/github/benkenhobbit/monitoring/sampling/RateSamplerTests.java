@@ -0,0 +1,43 @@
+package com.github.benkenhobbit.monitoring.sampling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateSamplerTests {
+
+	/**
+	 * Uniform values 0, 1/n, 2/n... in turn.
+	 */
+	private static RateSampler sampler(double rate, int n) {
+		AtomicInteger next = new AtomicInteger();
+		return new RateSampler(rate, () -> (next.getAndIncrement() % n) / (double) n);
+	}
+
+	@Test
+	void capturesTheConfiguredRatio() {
+		RateSampler sampler = sampler(0.25, 1_000);
+		int sampled = 0;
+		for (int i = 0; i < 10_000; i++) {
+			sampled += sampler.sample(null) ? 1 : 0;
+		}
+		assertEquals(2_500, sampled);
+	}
+
+	@Test
+	void boundsAreExact() {
+		RateSampler never = sampler(0, 10);
+		RateSampler always = sampler(1, 10);
+		for (int i = 0; i < 10; i++) {
+			assertFalse(never.sample(null));
+			assertTrue(always.sample(null));
+		}
+		assertThrows(IllegalArgumentException.class, () -> new RateSampler(1.5));
+		assertThrows(IllegalArgumentException.class, () -> new RateSampler(-0.1));
+	}
+}
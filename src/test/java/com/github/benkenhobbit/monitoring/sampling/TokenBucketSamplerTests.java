@@ -0,0 +1,73 @@
+package com.github.benkenhobbit.monitoring.sampling;
+
+import com.github.benkenhobbit.monitoring.registry.MethodDescriptor;
+import com.github.benkenhobbit.monitoring.registry.MethodRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketSamplerTests {
+
+	private final MethodRegistry methodRegistry = new MethodRegistry();
+
+	private final AtomicLong clock = new AtomicLong(1_000_000_000_000L);
+
+	private MethodDescriptor method(String name) throws NoSuchMethodException {
+		return methodRegistry.get(Object.class.getMethod(name));
+	}
+
+	private static int sampleAll(Sampler sampler, MethodDescriptor method, int count) {
+		int sampled = 0;
+		for (int i = 0; i < count; i++) {
+			if (sampler.sample(method)) {
+				sampled++;
+			}
+		}
+		return sampled;
+	}
+
+	@Test
+	void limitsBurstsToOneSecondOfPermits() throws NoSuchMethodException {
+		TokenBucketSampler sampler = new TokenBucketSampler(10, clock::get);
+		MethodDescriptor method = method("toString");
+
+		assertEquals(10, sampleAll(sampler, method, 100));
+		assertFalse(sampler.sample(method));
+		// Each method has its own bucket
+		assertEquals(10, sampleAll(sampler, method("hashCode"), 100));
+	}
+
+	@Test
+	void refillsAtThePermitRate() throws NoSuchMethodException {
+		TokenBucketSampler sampler = new TokenBucketSampler(10, clock::get);
+		MethodDescriptor method = method("toString");
+		sampleAll(sampler, method, 100);
+
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(99));
+		assertFalse(sampler.sample(method));
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+		assertTrue(sampler.sample(method));
+		assertFalse(sampler.sample(method));
+
+		// A steady caller gets the permit rate, never more than the burst after an idle period
+		int sampled = 0;
+		for (int i = 0; i < 1_000; i++) {
+			clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+			sampled += sampler.sample(method) ? 1 : 0;
+		}
+		assertEquals(100, sampled);
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(60));
+		assertEquals(10, sampleAll(sampler, method, 100));
+	}
+
+	@Test
+	void rejectsNonPositiveRates() {
+		assertThrows(IllegalArgumentException.class, () -> new TokenBucketSampler(0));
+	}
+}
@@ -0,0 +1,73 @@
+package com.github.benkenhobbit.monitoring.stats;
+
+import com.github.benkenhobbit.monitoring.model.LatencyPercentiles;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTests {
+
+	@Test
+	void bucketsCoverTheirValues() {
+		for (long value : new long[]{0, 1, 31, 32, 33, 1_000, 123_456_789, LatencyHistogram.MAX_VALUE}) {
+			int index = LatencyHistogram.bucketIndex(value);
+			assertTrue(LatencyHistogram.highestEquivalentValue(index) >= value);
+			assertTrue(index == 0 || LatencyHistogram.highestEquivalentValue(index - 1) < value);
+			for (int subBucketBits = 1; subBucketBits <= 4; subBucketBits++) {
+				int coarseIndex = LatencyHistogram.bucketIndex(value, subBucketBits);
+				assertTrue(LatencyHistogram.highestEquivalentValue(coarseIndex, subBucketBits) >= value);
+				assertTrue(coarseIndex == 0 || LatencyHistogram.highestEquivalentValue(coarseIndex - 1, subBucketBits) < value);
+			}
+		}
+	}
+
+	@Test
+	void coarserHistogramsTradePrecisionForCounters() {
+		LatencyHistogram histogram = new LatencyHistogram(3);
+		for (long i = 1; i <= 1_000; i++) {
+			histogram.record(i * 1_000_000);
+		}
+		histogram.record(LatencyHistogram.MAX_VALUE);
+
+		assertEquals(1_001, histogram.getCount());
+		assertEquals(990_000_000, histogram.getValueAtPercentile(99.0), 990_000_000 * 0.13);
+		assertEquals(328, histogram.newCounts().length);
+		assertEquals(640, new LatencyHistogram().newCounts().length);
+		assertThrows(IllegalArgumentException.class, () -> histogram.add(new LatencyHistogram()));
+		assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(5));
+	}
+
+	@Test
+	void percentilesStayWithinBucketPrecision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long i = 1; i <= 1_000; i++) {
+			histogram.record(i * 1_000_000);
+		}
+
+		LatencyPercentiles percentiles = histogram.getPercentiles();
+		assertEquals(1_000, percentiles.getCount());
+		assertEquals(1_000_000_000L, percentiles.getMax());
+		assertEquals(500_000_000, percentiles.getP50(), 500_000_000 * 0.07);
+		assertEquals(990_000_000, percentiles.getP99(), 990_000_000 * 0.07);
+		assertTrue(percentiles.getP999() <= percentiles.getMax());
+	}
+
+	@Test
+	void mergesAndResets() {
+		LatencyHistogram first = new LatencyHistogram();
+		LatencyHistogram second = new LatencyHistogram();
+		first.record(10);
+		second.record(20);
+		second.record(30);
+
+		first.add(second);
+		assertEquals(3, first.getCount());
+		assertEquals(30, first.getMax());
+
+		first.reset();
+		assertEquals(0, first.getCount());
+		assertEquals(0, first.getPercentiles().getP99());
+	}
+}
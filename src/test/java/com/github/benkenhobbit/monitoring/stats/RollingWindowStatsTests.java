@@ -0,0 +1,77 @@
+package com.github.benkenhobbit.monitoring.stats;
+
+import com.github.benkenhobbit.monitoring.model.RollingStats;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RollingWindowStatsTests {
+
+	private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+	@Test
+	void aggregatesTheBucketsOfEachWindow() {
+		RollingWindowStats stats = new RollingWindowStats();
+		long start = 1_000 * MINUTE;
+		// One call per second over 10 minutes, the last minute much slower and failing
+		for (long second = 0; second < 600; second++) {
+			boolean lastMinute = second >= 540;
+			stats.record(start + TimeUnit.SECONDS.toNanos(second), lastMinute ? 100_000_000 : 1_000_000, lastMinute);
+		}
+		// End of the bucket of the last call: every window is fully covered
+		long now = start + 10 * MINUTE - 1;
+
+		RollingStats oneMinute = stats.snapshot(now, MINUTE);
+		assertEquals(60, oneMinute.getCount());
+		assertEquals(1.0, oneMinute.getRate(), 1e-6);
+		assertEquals(100_000_000, oneMinute.getMean());
+		assertEquals(100_000_000, oneMinute.getP99(), 100_000_000 * 0.13);
+		assertEquals(1.0, oneMinute.getErrorRate(), 1e-9);
+
+		RollingStats fiveMinutes = stats.snapshot(now, 5 * MINUTE);
+		assertEquals(300, fiveMinutes.getCount());
+		assertEquals(0.2, fiveMinutes.getErrorRate(), 1e-9);
+
+		RollingStats fifteenMinutes = stats.snapshot(now, 15 * MINUTE);
+		assertEquals(600, fifteenMinutes.getCount());
+		assertEquals(600.0 / 900, fifteenMinutes.getRate(), 1e-6);
+	}
+
+	@Test
+	void forgetsExpiredBuckets() {
+		RollingWindowStats stats = new RollingWindowStats();
+		long start = 1_000 * MINUTE;
+		stats.record(start, 1_000, false);
+		assertEquals(1, stats.snapshot(start + 14 * MINUTE, 15 * MINUTE).getCount());
+		assertEquals(0, stats.snapshot(start + 16 * MINUTE, 15 * MINUTE).getCount());
+
+		// The bucket of the same slot is recycled a whole ring later
+		stats.record(start + 15 * MINUTE + RollingWindowStats.BUCKET_NANOS, 2_000, true);
+		RollingStats recycled = stats.snapshot(start + 16 * MINUTE, MINUTE);
+		assertEquals(1, recycled.getCount());
+		assertEquals(2_000, recycled.getMean());
+
+		stats.reset();
+		assertEquals(0, stats.snapshot(start + 16 * MINUTE, 15 * MINUTE).getCount());
+	}
+
+	@Test
+	void keepsTheP99OfTheWindowWithinTheBucketPrecision() {
+		RollingWindowStats stats = new RollingWindowStats();
+		long start = 1_000 * MINUTE;
+		// 1 to 1000 ms over two buckets: the merged buckets give the p99 of the whole window
+		for (long i = 1; i <= 1_000; i++) {
+			stats.record(start + (i % 2) * RollingWindowStats.BUCKET_NANOS, i * 1_000_000, false);
+		}
+
+		RollingStats window = stats.snapshot(start + MINUTE, 5 * MINUTE);
+		assertEquals(1_000, window.getCount());
+		assertEquals(990_000_000, window.getP99(), 990_000_000 * 0.13);
+		assertTrue(window.getP99() <= 1_000_000_000);
+		// An idle window reports nothing
+		assertEquals(0, stats.snapshot(start + 20 * MINUTE, MINUTE).getP99());
+	}
+}
@@ -0,0 +1,92 @@
+package com.github.benkenhobbit.monitoring.store;
+
+import com.github.benkenhobbit.monitoring.model.TransactionSpan;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexedSpanStoreTests {
+
+	private static TransactionSpan span(long sequence, long endTime) {
+		TransactionSpan span = new TransactionSpan();
+		span.setSequence(sequence);
+		span.setTransactionId(sequence);
+		span.setThreadId(1);
+		span.setStartTime(endTime);
+		span.setEndTime(endTime);
+		return span;
+	}
+
+	private static List<Long> sequences(List<TransactionSpan> spans) {
+		return spans.stream().map(TransactionSpan::getSequence).toList();
+	}
+
+	private static List<Long> sorted(List<TransactionSpan> spans) {
+		return sequences(spans).stream().sorted().toList();
+	}
+
+	@Test
+	void readsInSequenceOrder() {
+		IndexedSpanStore store = new IndexedSpanStore(10);
+		for (long sequence = 1; sequence <= 30; sequence++) {
+			store.add(span(sequence, sequence));
+		}
+		// Late span: stored in an older segment of the log
+		store.add(span(31, 5));
+
+		assertEquals(List.of(29L, 30L, 31L), sequences(store.snapshotAfter(28, 10)));
+		assertEquals(List.of(1L, 2L), sequences(store.snapshotAfter(0, 2)));
+		assertEquals(List.of(30L, 31L), sequences(store.snapshotLatest(2)));
+		assertTrue(store.snapshotAfter(31, 10).isEmpty());
+	}
+
+	@Test
+	void looksUpTheSpansRunningInARange() {
+		IndexedSpanStore store = new IndexedSpanStore(10);
+		for (long sequence = 1; sequence <= 30; sequence++) {
+			TransactionSpan span = span(sequence, sequence);
+			span.setMethodId((int) (sequence % 2));
+			store.add(span);
+		}
+		// Long span of method 1 ending late, running during the whole range
+		TransactionSpan longSpan = span(31, 40);
+		longSpan.setStartTime(2);
+		longSpan.setMethodId(1);
+		store.add(longSpan);
+		// Late span stored after a later one
+		TransactionSpan lateSpan = span(32, 11);
+		lateSpan.setMethodId(1);
+		store.add(lateSpan);
+
+		assertEquals(List.of(11L, 13L, 15L, 31L, 32L), sorted(store.getByMethod(1, 10, 15, span -> true)));
+		assertEquals(List.of(32L), sequences(store.getByMethod(1, 10, 15, span -> span.getSequence() == 32)));
+		// In end time order
+		assertEquals(List.of(10L, 11L, 32L, 12L, 31L), sequences(store.getByThread(1, 10, 12)));
+		assertEquals(List.of(10L, 11L, 12L, 31L, 32L), sorted(store.snapshotOverlapping(10, 12)));
+		assertTrue(store.getByThread(2, 0, 100).isEmpty());
+		assertTrue(store.getByMethod(0, 50, 60, span -> true).isEmpty());
+
+		// Evicted spans leave the indexes
+		store.expireBefore(20);
+		assertEquals(List.of(31L), sequences(store.getByMethod(1, 10, 15, span -> true)));
+	}
+
+	@Test
+	void forgetsEvictedSpans() {
+		IndexedSpanStore store = new IndexedSpanStore(10);
+		for (long sequence = 1; sequence <= 30; sequence++) {
+			store.add(span(sequence, sequence));
+		}
+
+		assertEquals(19, store.expireBefore(20));
+		assertEquals(List.of(20L, 21L), sequences(store.snapshotAfter(0, 2)));
+		assertEquals(6, store.trimTo(5));
+		assertEquals(List.of(26L, 27L, 28L, 29L, 30L), sequences(store.snapshotLatest(10)));
+
+		store.clear();
+		assertTrue(store.snapshotLatest(10).isEmpty());
+	}
+}
@@ -0,0 +1,193 @@
+package com.github.benkenhobbit.monitoring.store;
+
+import com.github.benkenhobbit.monitoring.model.StoredException;
+import com.github.benkenhobbit.monitoring.model.TransactionSpan;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapSpanStoreTests {
+
+	private static TransactionSpan span(long transactionId, int methodId, long threadId, long endTime) {
+		TransactionSpan span = new TransactionSpan();
+		span.setTransactionId(transactionId);
+		span.setSpanId(1);
+		span.setMethodId(methodId);
+		span.setThreadId(threadId);
+		span.setThreadName("thread-" + threadId);
+		span.setStartTime(endTime - 3);
+		span.setEndTime(endTime);
+		span.setStartNanos(1_000);
+		span.setEndNanos(4_000_000);
+		span.setExecutionTime(3);
+		span.setCpuTimeNanos(2_000_000);
+		span.setAllocatedBytes(512);
+		return span;
+	}
+
+	/**
+	 * Times kept as a share of the execution time of 3_999_000 ns: to about 61 ns.
+	 */
+	private static void assertShare(long expected, long actual) {
+		assertTrue(Math.abs(expected - actual) <= 61, expected + " ~ " + actual);
+	}
+
+	private static List<Long> endTimes(List<TransactionSpan> spans) {
+		return spans.stream().map(TransactionSpan::getEndTime).toList();
+	}
+
+	@Test
+	void decodesStoredRows() {
+		OffHeapSpanStore store = new OffHeapSpanStore(100, 16, id -> "method-" + id);
+		TransactionSpan original = span(42, 7, 3, 1_000);
+		original.setParentSpanId(5);
+		original.setDepth(2);
+		original.setException(new IllegalStateException("boom"));
+		original.setSelfTimeNanos(1_500_700);
+		original.setUserTimeNanos(-1);
+		store.add(original);
+
+		List<TransactionSpan> spans = store.getByTransaction(42);
+		assertEquals(1, spans.size());
+		TransactionSpan decoded = spans.get(0);
+		assertTrue(decoded.isCompleted());
+		assertEquals(7, decoded.getMethodId());
+		assertEquals("method-7", decoded.getMethodName());
+		assertEquals(3, decoded.getThreadId());
+		assertEquals("thread-3", decoded.getThreadName());
+		assertEquals(997, decoded.getStartTime());
+		assertEquals(1_000, decoded.getStartNanos());
+		assertEquals(4_000_000, decoded.getEndNanos());
+		assertShare(2_000_000, decoded.getCpuTimeNanos());
+		// Kept as a share of the execution time, unmeasured stays negative
+		assertShare(1_500_700, decoded.getSelfTimeNanos());
+		assertEquals(-1, decoded.getUserTimeNanos());
+		assertEquals(512, decoded.getAllocatedBytes());
+		assertEquals(5, decoded.getParentSpanId());
+		assertEquals(2, decoded.getDepth());
+		assertEquals(IllegalStateException.class.getName(), decoded.getException().getMessage());
+		assertTrue(store.getByTransaction(43).isEmpty());
+	}
+
+	@Test
+	void decodesDeltasBeyondTheirBlockBase() {
+		OffHeapSpanStore store = new OffHeapSpanStore(100, 16, id -> null);
+		TransactionSpan first = span(1, 0, 5, 1_000);
+		first.setSequence(10);
+		first.setStartNanos(1_000_000_000L);
+		first.setEndNanos(1_004_000_000L);
+		store.add(first);
+		// Completed earlier but added later, on another thread, with a long execution
+		TransactionSpan second = span(Long.MIN_VALUE, 0, 5 + (1L << 40), 900);
+		second.setSequence(12);
+		second.setStartNanos(4_000_000L);
+		second.setEndNanos(904_000_317L);
+		second.setDepth(70_000);
+		store.add(second);
+
+		List<TransactionSpan> spans = store.snapshot();
+		assertEquals(10, spans.get(0).getSequence());
+		assertEquals(5, spans.get(0).getThreadId());
+		assertEquals(1_000_000_000L, spans.get(0).getStartNanos());
+		TransactionSpan decoded = spans.get(1);
+		assertEquals(12, decoded.getSequence());
+		assertEquals(Long.MIN_VALUE, decoded.getTransactionId());
+		assertEquals(900, decoded.getEndTime());
+		assertEquals(904_000_317L, decoded.getEndNanos());
+		assertEquals(4_000_000L, decoded.getStartNanos());
+		assertEquals(0, decoded.getStartTime());
+		// Thread ids too far from the base of the block are not kept, depths are saturated
+		assertEquals(-1, decoded.getThreadId());
+		assertEquals(0xFFFF, decoded.getDepth());
+		// Found by the running maximum of the end times of the block
+		assertEquals(List.of(900L), endTimes(store.snapshotRange(800, 950)));
+		assertEquals(List.of(900L), endTimes(store.snapshotOverlapping(0, 10)));
+		assertEquals(List.of(1_000L, 900L), endTimes(store.snapshotOverlapping(850, 1_000)));
+
+		TransactionSpan outOfOrder = span(2, 0, 5, 1_000);
+		outOfOrder.setSequence(9);
+		assertThrows(IllegalArgumentException.class, () -> store.add(outOfOrder));
+	}
+
+	@Test
+	void keepsExceptionTypesUnknownBeyondTheDictionary() {
+		OffHeapSpanStore store = new OffHeapSpanStore(70_000, 4096, id -> null);
+		for (int type = 0; type < 0xFFFF; type++) {
+			TransactionSpan span = span(type, 0, 1, 1_000);
+			span.setException(new StoredException("Exception" + type));
+			store.add(span);
+		}
+
+		assertEquals("Exception0", store.getByTransaction(0).get(0).getException().getMessage());
+		assertEquals("Exception65533", store.getByTransaction(0xFFFD).get(0).getException().getMessage());
+		// Failed, but no other type is claimed
+		assertEquals(OffHeapSpanStore.UNKNOWN_EXCEPTION_TYPE, store.getByTransaction(0xFFFE).get(0).getException().getMessage());
+		assertNull(store.getByTransaction(0).get(0).getException().getCause());
+	}
+
+	@Test
+	void overwritesOldestRowsWhenFull() {
+		OffHeapSpanStore store = new OffHeapSpanStore(20, 8, id -> null);
+		for (long endTime = 0; endTime < 50; endTime++) {
+			store.add(span(endTime, (int) (endTime % 2), endTime % 3, endTime));
+		}
+
+		// 20 rows rounded up to 3 chunks of 8, the oldest block (a whole chunk here) released at once
+		assertEquals(18, store.size());
+		assertEquals(32, store.snapshot().get(0).getEndTime());
+		assertEquals(64, OffHeapSpanStore.ROW_SIZE);
+		assertEquals(3L * 8 * OffHeapSpanStore.ROW_SIZE, store.getReservedBytes());
+
+		// Spans of 3 ms overlapping the range
+		assertEquals(List.of(45L, 47L, 49L), endTimes(store.getByMethod(1, 44, 46, span -> true)));
+		assertEquals(List.of(47L), endTimes(store.getByMethod(1, 44, 46, span -> span.getEndTime() == 47)));
+		assertEquals(List.of(42L, 45L), endTimes(store.getByThread(0, 41, 44)));
+		assertTrue(store.getByTransaction(3).isEmpty());
+	}
+
+	@Test
+	void prunesByTimeAndCount() {
+		OffHeapSpanStore store = new OffHeapSpanStore(100, 16, id -> null);
+		for (long endTime = 0; endTime < 30; endTime++) {
+			store.add(span(endTime, 0, 1, endTime));
+		}
+		// Slightly out of order row: kept until a later row expires
+		store.add(span(30, 0, 1, 5));
+
+		assertEquals(List.of(4L, 5L, 6L, 5L), endTimes(store.snapshotRange(4, 6)));
+		assertEquals(List.of(12L, 13L, 14L), endTimes(store.snapshotRange(12, 14)));
+		assertEquals(List.of(12L, 13L, 14L, 15L, 16L, 17L), endTimes(store.snapshotOverlapping(12, 14)));
+		assertEquals(10, store.expireBefore(10));
+		assertEquals(10, store.snapshot().get(0).getEndTime());
+		assertEquals(16, store.trimTo(5));
+		assertEquals(List.of(26L, 27L, 28L, 29L, 5L), endTimes(store.snapshot()));
+
+		store.clear();
+		assertEquals(0, store.size());
+		store.add(span(99, 0, 1, 99));
+		assertEquals(List.of(99L), endTimes(store.snapshot()));
+	}
+
+	@Test
+	void readsAfterSequence() {
+		OffHeapSpanStore store = new OffHeapSpanStore(20, 8, id -> null);
+		for (long sequence = 1; sequence <= 50; sequence++) {
+			TransactionSpan span = span(sequence, 0, 1, sequence);
+			span.setSequence(sequence);
+			store.add(span);
+		}
+
+		assertEquals(List.of(41L, 42L, 43L), endTimes(store.snapshotAfter(40, 3)));
+		assertEquals(50, store.snapshotAfter(48, 10).get(1).getSequence());
+		assertTrue(store.snapshotAfter(50, 10).isEmpty());
+		// Overwritten rows are skipped
+		assertEquals(33, store.snapshotAfter(0, 1).get(0).getSequence());
+		assertEquals(List.of(48L, 49L, 50L), endTimes(store.snapshotLatest(3)));
+		assertEquals(18, store.snapshotLatest(100).size());
+	}
+}
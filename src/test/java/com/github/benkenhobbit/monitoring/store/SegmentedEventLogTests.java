@@ -0,0 +1,151 @@
+package com.github.benkenhobbit.monitoring.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedEventLogTests {
+
+	@Test
+	void expiresWholeSegments() {
+		SegmentedEventLog<Long> log = new SegmentedEventLog<>(10, Long::longValue);
+		for (long timestamp = 0; timestamp < 30; timestamp += 2) {
+			log.add(timestamp);
+		}
+		assertEquals(3, log.segmentCount());
+
+		// 15 falls in the middle of the second segment: only the first segment is dropped
+		assertEquals(5, log.expireBefore(15));
+		assertEquals(2, log.segmentCount());
+		assertEquals(List.of(10L, 12L, 14L, 16L, 18L, 20L, 22L, 24L, 26L, 28L), log.snapshot());
+		assertEquals(List.of(10L, 12L), log.snapshot(2));
+		assertEquals(List.of(14L), log.snapshot(t -> t == 14));
+	}
+
+	@Test
+	void selectsTimeRange() {
+		SegmentedEventLog<Long> log = new SegmentedEventLog<>(10, Long::longValue);
+		for (long timestamp = 0; timestamp < 30; timestamp += 2) {
+			log.add(timestamp);
+		}
+		// Slightly out of order element: still found by the binary search on the running maximum
+		log.add(13L);
+
+		assertEquals(List.of(14L, 16L, 18L, 13L, 20L), log.snapshotRange(13, 21));
+		assertEquals(List.of(12L, 14L, 16L, 18L, 13L), log.snapshotRange(11, 19));
+		assertEquals(List.of(28L), log.snapshotRange(27, Long.MAX_VALUE));
+		assertTrue(log.snapshotRange(30, 40).isEmpty());
+		assertTrue(log.snapshotRange(20, 10).isEmpty());
+	}
+
+	@Test
+	void trimsOldestElements() {
+		SegmentedEventLog<Long> log = new SegmentedEventLog<>(10, Long::longValue);
+		for (long timestamp = 0; timestamp < 30; timestamp++) {
+			log.add(timestamp);
+		}
+
+		assertEquals(13, log.trimTo(17));
+		assertEquals(17, log.size());
+		assertEquals(Long.valueOf(13), log.snapshot().get(0));
+		assertEquals(2, log.segmentCount());
+
+		// The newest segment is trimmed, never unlinked
+		log.trimTo(0);
+		assertEquals(0, log.size());
+		assertEquals(1, log.segmentCount());
+
+		log.clear();
+		assertTrue(log.snapshot().isEmpty());
+	}
+
+	@Test
+	void notifiesEvictedElements() {
+		List<Long> evicted = new ArrayList<>();
+		SegmentedEventLog<Long> log = new SegmentedEventLog<>(10, Long::longValue, evicted::add);
+		for (long timestamp = 0; timestamp < 30; timestamp += 5) {
+			log.add(timestamp);
+		}
+
+		log.expireBefore(12);
+		assertEquals(List.of(0L, 5L), evicted);
+		log.trimTo(2);
+		assertEquals(List.of(0L, 5L, 10L, 15L), evicted);
+		log.clear();
+		assertEquals(4, evicted.size());
+	}
+
+	@Test
+	void readsWhileWriterAndSweeperRun() throws InterruptedException {
+		int total = 200_000;
+		SegmentedEventLog<Long> log = new SegmentedEventLog<>(1_000, Long::longValue);
+		CountDownLatch done = new CountDownLatch(1);
+		Thread writer = new Thread(() -> {
+			for (long i = 0; i < total; i++) {
+				log.add(i);
+			}
+			done.countDown();
+		});
+		writer.start();
+		while (done.getCount() > 0) {
+			log.trimTo(5_000);
+			List<Long> snapshot = log.snapshot();
+			for (int i = 1; i < snapshot.size(); i++) {
+				assertTrue(snapshot.get(i - 1) < snapshot.get(i));
+			}
+		}
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+
+		log.trimTo(5_000);
+		List<Long> snapshot = log.snapshot();
+		assertEquals(5_000, snapshot.size());
+		assertEquals(Long.valueOf(total - 1), snapshot.get(snapshot.size() - 1));
+	}
+
+	@Test
+	void lateElementsAreKeptOrEvictedWhileTheSweeperRuns() throws InterruptedException {
+		int total = 300_000;
+		Set<Long> evicted = ConcurrentHashMap.newKeySet();
+		AtomicInteger evictedTwice = new AtomicInteger();
+		// Every third element is late and lands in an older segment, often the one being dropped
+		SegmentedEventLog<Long> log = new SegmentedEventLog<>(10, element -> element / 2 - (element % 3 == 0 ? 20 : 0),
+				element -> {
+					if (!evicted.add(element)) {
+						evictedTwice.incrementAndGet();
+					}
+				});
+		AtomicLong written = new AtomicLong();
+		CountDownLatch done = new CountDownLatch(1);
+		Thread writer = new Thread(() -> {
+			for (long i = 0; i < total; i++) {
+				log.add(i);
+				written.lazySet(i);
+			}
+			done.countDown();
+		});
+		writer.start();
+		while (done.getCount() > 0) {
+			log.expireBefore(written.get() / 2 - 10);
+			log.trimTo(100);
+		}
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+
+		Set<Long> kept = new HashSet<>(log.snapshot());
+		assertEquals(log.size(), kept.size());
+		assertEquals(0, evictedTwice.get());
+		for (long i = 0; i < total; i++) {
+			assertTrue(kept.contains(i) != evicted.contains(i), "element " + i);
+		}
+	}
+}
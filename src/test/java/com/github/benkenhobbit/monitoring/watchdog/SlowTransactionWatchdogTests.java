@@ -0,0 +1,124 @@
+package com.github.benkenhobbit.monitoring.watchdog;
+
+import com.github.benkenhobbit.monitoring.correlation.TransactionContext;
+import com.github.benkenhobbit.monitoring.model.StackProfile;
+import com.github.benkenhobbit.monitoring.registry.MonitoredThread;
+import com.github.benkenhobbit.monitoring.registry.ThreadRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlowTransactionWatchdogTests {
+
+	private final ThreadRegistry threadRegistry = new ThreadRegistry(thread -> {
+	});
+
+	/**
+	 * Runs one monitored invocation of the given method until released, then takes its profile.
+	 */
+	private Thread startInvocation(int methodId, CountDownLatch started, CountDownLatch release,
+								   AtomicReference<StackProfile> profile) {
+		Thread thread = new Thread(() -> {
+			MonitoredThread monitoredThread = threadRegistry.current();
+			TransactionContext.Frame frame = monitoredThread.getContext().pushRoot(1, true, System.currentTimeMillis());
+			frame.setStartNanos(System.nanoTime() - 10_000_000_000L);
+			frame.setMethodId(methodId);
+			monitoredThread.publishRunning(frame);
+			started.countDown();
+			hangInDatabase(release);
+			profile.set(monitoredThread.takeProfile(frame.getInvocation()));
+			monitoredThread.getContext().pop();
+			monitoredThread.publishRunning(null);
+		});
+		thread.start();
+		return thread;
+	}
+
+	private static void hangInDatabase(CountDownLatch release) {
+		try {
+			release.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	void samplesSlowInvocations() throws Exception {
+		SlowTransactionWatchdog watchdog = new SlowTransactionWatchdog(threadRegistry, id -> "method-" + id,
+				60_000, Map.of("method-1", 1_000L), 50, 64);
+		CountDownLatch started = new CountDownLatch(2);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicReference<StackProfile> slowProfile = new AtomicReference<>();
+		AtomicReference<StackProfile> fastProfile = new AtomicReference<>();
+		// Both started 10 s ago: only method-1 has a lower threshold than that
+		Thread slow = startInvocation(1, started, release, slowProfile);
+		Thread fast = startInvocation(2, started, release, fastProfile);
+		started.await();
+
+		watchdog.scan();
+		watchdog.scan();
+		release.countDown();
+		slow.join();
+		fast.join();
+
+		StackProfile profile = slowProfile.get();
+		assertEquals(2, profile.getSamples());
+		assertEquals(50, profile.getIntervalMillis());
+		String stack = profile.getStacks().keySet().iterator().next();
+		assertTrue(stack.contains(SlowTransactionWatchdogTests.class.getName() + ".hangInDatabase;"));
+		assertNull(fastProfile.get());
+	}
+
+	@Test
+	void keepsTheProfileOfASlowCallAcrossNestedCalls() {
+		SlowTransactionWatchdog watchdog = new SlowTransactionWatchdog(threadRegistry, id -> "method-" + id,
+				60_000, Map.of("method-1", 1_000L), 50, 64);
+		MonitoredThread monitoredThread = threadRegistry.current();
+		TransactionContext context = monitoredThread.getContext();
+		TransactionContext.Frame outer = context.pushRoot(1, true, System.currentTimeMillis());
+		outer.setStartNanos(System.nanoTime() - 10_000_000_000L);
+		outer.setMethodId(1);
+		monitoredThread.publishRunning(outer);
+		watchdog.scan();
+
+		// A fast nested call, then a slow one: the outer call keeps being sampled meanwhile
+		TransactionContext.Frame fast = context.pushNested(System.currentTimeMillis());
+		fast.setStartNanos(System.nanoTime());
+		fast.setMethodId(2);
+		monitoredThread.publishRunning(fast);
+		watchdog.scan();
+		assertNull(monitoredThread.takeProfile(fast.getInvocation()));
+		context.pop();
+		TransactionContext.Frame slow = context.pushNested(System.currentTimeMillis());
+		slow.setStartNanos(System.nanoTime() - 5_000_000_000L);
+		slow.setMethodId(1);
+		monitoredThread.publishRunning(slow);
+		watchdog.scan();
+		watchdog.scan();
+		StackProfile nestedProfile = monitoredThread.takeProfile(slow.getInvocation());
+		context.pop();
+		monitoredThread.publishRunning(outer);
+		watchdog.scan();
+		StackProfile outerProfile = monitoredThread.takeProfile(outer.getInvocation());
+		context.pop();
+		monitoredThread.publishRunning(null);
+
+		assertEquals(2, nestedProfile.getSamples());
+		assertEquals(5, outerProfile.getSamples());
+		assertNull(monitoredThread.takeProfile(outer.getInvocation()));
+	}
+
+	@Test
+	void parsesMethodThresholds() {
+		assertEquals(Map.of("a.B.c", 200L, "a.B.d", 50L), SlowTransactionWatchdog.parseThresholds("a.B.c=200, a.B.d=50"));
+		assertTrue(SlowTransactionWatchdog.parseThresholds("").isEmpty());
+		assertThrows(IllegalArgumentException.class, () -> SlowTransactionWatchdog.parseThresholds("a.B.c"));
+	}
+}